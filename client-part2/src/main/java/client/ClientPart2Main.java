@@ -1,10 +1,16 @@
 package client;
 
 import client.connection.ConnectionPool;
+import client.metrics.LatencyHistogram;
+import client.metrics.LiveMetrics;
 import client.metrics.Metrics;
 import client.metrics.PerMessageRecorder;
+import client.metrics.ProcessStats;
+import client.sender.LoadProfile;
 import client.sender.MessageGenerator;
+import client.sender.OpenLoopPacer;
 import client.sender.SenderWorker;
+import client.sender.WorkerThreads;
 import model.ChatMessage;
 
 import java.nio.file.Path;
@@ -17,7 +23,11 @@ import static client.config.Constants.*;
  * Entry point for the load-test client (Part 2). Runs warmup phase (32 threads × 1000
  * messages)
  * then main phase (50 workers until 500K total messages), and prints
- * performance metrics and per-message statistics.
+ * performance metrics and per-message statistics. Main-phase workers run on
+ * platform or virtual threads ({@code WORKER_MODE}). In the open-loop load
+ * mode an {@link OpenLoopPacer} releases main-phase messages on a rate schedule.
+ * During the main phase {@link LiveMetrics} prints a ticker line and serves
+ * the live counters over JMX and HTTP.
  */
 public class ClientPart2Main {
 
@@ -26,9 +36,13 @@ public class ClientPart2Main {
         Metrics warmupMetrics = new Metrics();
         warmupPhase(warmupMetrics);
         Metrics mainMetrics = new Metrics();
-        mainPhase(mainMetrics);
+        long droppedRows = mainPhase(mainMetrics);
         long totalDurationMs = System.currentTimeMillis() - totalStartMs;
         printPerformanceMetrics(warmupMetrics, mainMetrics, totalDurationMs);
+        if (droppedRows > 0) {
+            System.err.println("Per-message results incomplete: " + droppedRows + " rows not written");
+            System.exit(1);
+        }
     }
 
     private static void warmupPhase(Metrics runMetrics) throws Exception {
@@ -67,33 +81,71 @@ public class ClientPart2Main {
                 .println("Warmup - Success: " + success + ", Failure: " + failure + ", Total: " + (success + failure));
     }
 
-    private static void mainPhase(Metrics mainMetrics) throws Exception {
-        System.out.println("Main phase: starting (messages=" + MAIN_MESSAGES + ", workers=" + NUM_WORKERS + ")");
+    /** Runs the main phase and writes its results; returns the per-message rows missing from the result file. */
+    private static long mainPhase(Metrics mainMetrics) throws Exception {
+        WorkerThreads workerThreads = WorkerThreads.forMode(WORKER_MODE, "sender-");
+        System.out.println("Main phase: starting (messages=" + MAIN_MESSAGES + ", workers=" + NUM_WORKERS
+                + " " + workerThreads.getMode() + " threads, batch size=" + BATCH_SIZE + ")");
         BlockingQueue<ChatMessage> messageQueue = new LinkedBlockingQueue<>();
+        // open loop: the generator feeds the pacer, which releases messages to the workers on schedule
+        OpenLoopPacer pacer = null;
+        BlockingQueue<ChatMessage> sendQueue = messageQueue;
+        if (LOAD_MODE_OPEN.equals(LOAD_MODE)) {
+            LoadProfile profile = new LoadProfile(LOAD_PROFILE, TARGET_RATE, PROFILE_SECONDS, PROFILE_STEPS,
+                    PROFILE_SPIKE_AT, PROFILE_SPIKE_FACTOR);
+            sendQueue = new LinkedBlockingQueue<>();
+            pacer = new OpenLoopPacer(messageQueue, sendQueue, MAIN_MESSAGES, profile, mainMetrics);
+            System.out.println("Main phase: open loop, " + profile);
+        } else if (!LOAD_MODE_CLOSED.equals(LOAD_MODE)) {
+            throw new IllegalArgumentException("Unknown load mode: " + LOAD_MODE);
+        }
         ConnectionPool pool = new ConnectionPool(HOST, PORT, POOL_SIZE, MAX_PER_ROOM, mainMetrics);
         PerMessageRecorder perMessageRecorder = new PerMessageRecorder();
 
-        System.out.println("Main phase: pre-warming connection pool (" + NUM_WORKERS + " connections)...");
-        pool.preWarm(NUM_WORKERS, ROOM_COUNT);
+        int warmConnections = Math.min(NUM_WORKERS, POOL_SIZE);
+        System.out.println("Main phase: pre-warming connection pool (" + warmConnections + " connections)...");
+        pool.preWarm(warmConnections, ROOM_COUNT);
 
         Thread generator = new Thread(new MessageGenerator(MAIN_MESSAGES, messageQueue));
         Thread[] workers = new Thread[NUM_WORKERS];
         for (int i = 0; i < NUM_WORKERS; i++) {
-            workers[i] = new Thread(new SenderWorker(messageQueue, pool, mainMetrics, perMessageRecorder,
-                    MAX_RETRIES, BACKOFF_DELAY_MS, EXIT_ON_POISON));
+            workers[i] = workerThreads.newThread(new SenderWorker(sendQueue, pool, mainMetrics,
+                    perMessageRecorder, MAX_RETRIES, BACKOFF_DELAY_MS, EXIT_ON_POISON, BATCH_SIZE));
         }
 
-        long startMs = System.currentTimeMillis();
-        generator.start();
-        for (int i = 0; i < workers.length; i++) {
-            workers[i].start();
-        }
-        generator.join();
-        for (int i = 0; i < NUM_WORKERS; i++) {
-            messageQueue.offer(SenderWorker.POISON);
+        BlockingQueue<ChatMessage> dispatchQueue = sendQueue;
+        LiveMetrics live = new LiveMetrics(mainMetrics, perMessageRecorder::getLatencyHistogram)
+                .gauge("queue_depth", "Messages waiting for a sender worker.", dispatchQueue::size)
+                .gauge("idle_connections", "Pooled connections not borrowed, by room.", "room", pool::idleCounts);
+        if (pacer != null) {
+            live.gauge("generated_ahead", "Generated messages not yet released by the pacer.", messageQueue::size);
         }
-        for (Thread w : workers) {
-            w.join();
+
+        ProcessStats processStats = new ProcessStats();
+        processStats.start();
+        long startMs = System.currentTimeMillis();
+        live.start(TICKER_SECONDS, METRICS_PORT);
+        try {
+            generator.start();
+            for (int i = 0; i < workers.length; i++) {
+                workers[i].start();
+            }
+            Thread pacerThread = pacer != null ? new Thread(pacer, "open-loop-pacer") : null;
+            if (pacerThread != null) {
+                pacerThread.start();
+            }
+            generator.join();
+            if (pacerThread != null) {
+                pacerThread.join();
+            }
+            for (int i = 0; i < NUM_WORKERS; i++) {
+                sendQueue.offer(SenderWorker.POISON);
+            }
+            for (Thread w : workers) {
+                w.join();
+            }
+        } finally {
+            live.close();
         }
         long durationMs = System.currentTimeMillis() - startMs;
 
@@ -103,19 +155,38 @@ public class ClientPart2Main {
         System.out.println("Main phase - Failure: " + failure);
         System.out.println("Main phase - Duration (ms): " + durationMs);
         System.out.println("Main phase - Throughput (msg/s): " + (durationMs > 0 ? (success * 1000L) / durationMs : 0));
+        LatencyHistogram latency = perMessageRecorder.getLatencyHistogram();
+        System.out.println("Main phase - Latency (us): p50=" + latency.valueAtPercentile(50)
+                + ", p99=" + latency.valueAtPercentile(99) + ", p99.9=" + latency.valueAtPercentile(99.9)
+                + ", max=" + latency.getMax() + " (" + latency.getTotalCount() + " acks)");
+        if (pacer != null) {
+            System.out.println("Main phase - Open loop: " + pacer.summary(durationMs));
+        }
+        System.out.println("Main phase - Client (" + workerThreads.getMode() + " workers): "
+                + processStats.summary(durationMs));
+        long bytesSent = mainMetrics.getBytesSent();
+        long attempts = success + failure;
+        System.out.println("Main phase - Wire format: " + WIRE_FORMAT + ", payload bytes sent: " + bytesSent
+                + " (" + (attempts > 0 ? bytesSent / attempts : 0) + " B/msg)");
+        if (COMPRESSION_ENABLED) {
+            System.out.println("Main phase - permessage-deflate (min " + COMPRESSION_MIN_BYTES + " B, "
+                    + (COMPRESSION_NO_CONTEXT_TAKEOVER ? "no " : "") + "context takeover) - "
+                    + mainMetrics.getCompression().summary());
+        }
 
-        Path csvPath = perMessageRecorder.writeToCsv();
-        System.out.println("Per-message metrics written to: " + csvPath.toAbsolutePath());
+        Path recordsPath = perMessageRecorder.writeRecords();
+        System.out.println("Per-message metrics written to: " + recordsPath.toAbsolutePath());
 
         Path statsPath = perMessageRecorder.writeStats(durationMs);
         System.out.println("Statistical analysis written to: " + statsPath.toAbsolutePath());
+        return perMessageRecorder.getDroppedRows();
     }
 
     private static void printPerformanceMetrics(Metrics warmupMetrics, Metrics mainMetrics, long totalDurationMs) {
         long totalSuccess = warmupMetrics.getSuccessCount() + mainMetrics.getSuccessCount();
         long totalFailure = warmupMetrics.getFailureCount() + mainMetrics.getFailureCount();
         long totalConnections = mainMetrics.getConnectionCreatedCount();
-        long reconnections = totalConnections - NUM_WORKERS;
+        long reconnections = totalConnections - Math.min(NUM_WORKERS, POOL_SIZE);
         if (reconnections < 0)
             reconnections = 0;
         long overallThroughput = totalDurationMs > 0 ? (totalSuccess * 1000L) / totalDurationMs : 0;
@@ -0,0 +1,197 @@
+package client.analysis;
+
+import client.metrics.LatencyHistogram;
+import client.metrics.ResultFileConverter;
+import client.metrics.ResultFileFormat;
+import client.metrics.StatsReport;
+import model.MessageType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+import static client.config.Constants.STATUS_CODE_OK;
+
+/**
+ * Offline analysis of a binary per-message result file
+ * (results/per_message_metrics.bin, written with
+ * {@code -Dclient.resultFormat=binary}). Memory-maps the records, splits them
+ * into one range per task and analyzes the ranges in parallel on all cores,
+ * then merges the partial histograms and counters. Prints the run parameters
+ * from the header, the same statistics as results/statistical_analysis.txt,
+ * and latency percentiles per window of send time.
+ *
+ * <pre>
+ * java client.analysis.ResultFileAnalyzer &lt;file.bin&gt; [--window-seconds N] [--duration-ms N]
+ * java client.analysis.ResultFileAnalyzer &lt;file.bin&gt; --csv &lt;out.csv&gt;
+ * </pre>
+ *
+ * Without --duration-ms, throughput per room uses the span from the first send
+ * to the last ack in the file, which is close to the main phase wall time.
+ */
+public final class ResultFileAnalyzer {
+    private static final int RECORD = ResultFileFormat.RECORD_BYTES;
+    /** Records per range; small enough for one mapping, large enough to amortize a task. */
+    private static final long RANGE_RECORDS = 1 << 22;
+    /** Precision of per-window histograms: 1 part in 64, about 14 KB each. */
+    private static final int WINDOW_PRECISION_BITS = 7;
+    private static final int TYPE_COUNT = MessageType.values().length;
+
+    private ResultFileAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ResultFileAnalyzer <file.bin> [--window-seconds N] [--duration-ms N]"
+                    + " | <file.bin> --csv <out.csv>");
+            System.exit(2);
+        }
+        Path file = Path.of(args[0]);
+        long windowMs = 10_000;
+        long durationMs = -1;
+        Path csv = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--window-seconds":
+                    windowMs = Math.max(1, (long) (Double.parseDouble(args[i + 1]) * 1000));
+                    break;
+                case "--duration-ms":
+                    durationMs = Long.parseLong(args[i + 1]);
+                    break;
+                case "--csv":
+                    csv = Path.of(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (csv != null) {
+            long rows = ResultFileConverter.toCsv(file, csv);
+            System.out.println("Wrote " + rows + " rows to " + csv.toAbsolutePath());
+            return;
+        }
+        for (String line : analyze(file, windowMs, durationMs)) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @param windowMs   width of the send-time windows for per-window percentiles
+     * @param durationMs run wall time for throughput per room, or -1 to use the
+     *                   span of the records
+     * @return report lines
+     */
+    public static List<String> analyze(Path file, long windowMs, long durationMs) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ResultFileFormat.Header header = ResultFileFormat.readHeader(channel);
+            long total = header.getRecordCount();
+            long ranges = (total + RANGE_RECORDS - 1) / RANGE_RECORDS;
+            Partial merged = LongStream.range(0, ranges).parallel()
+                    .mapToObj(range -> analyzeRange(channel, header, range * RANGE_RECORDS,
+                            Math.min(RANGE_RECORDS, total - range * RANGE_RECORDS), windowMs))
+                    .reduce(new Partial(), Partial::merge);
+
+            List<String> lines = new ArrayList<>();
+            lines.add("--- Run ---");
+            lines.add("file: " + file.toAbsolutePath() + " (format v" + header.getVersion() + ", " + total
+                    + " records)");
+            header.getProperties().forEach((key, value) -> lines.add(key + ": " + value));
+            long span = merged.lastMs >= merged.firstMs ? merged.lastMs - merged.firstMs : 0;
+            long statsDurationMs = durationMs >= 0 ? durationMs : span;
+            lines.add("duration for throughput (ms): " + statsDurationMs
+                    + (durationMs >= 0 ? "" : " (first send to last ack)"));
+            lines.addAll(StatsReport.lines(merged.latency, new TreeMap<>(merged.successByRoom), merged.countByType,
+                    statsDurationMs));
+            lines.add("Latency per " + windowMs / 1000.0 + " s window of send time (us):");
+            new TreeMap<>(merged.windows).forEach((window, w) -> lines.add(String.format(
+                    "  %8.1f s: messages %d, ok %d, p50 %d, p99 %d, p99.9 %d, max %d",
+                    window * windowMs / 1000.0, w.messages, w.latency.getTotalCount(),
+                    w.latency.valueAtPercentile(50), w.latency.valueAtPercentile(99),
+                    w.latency.valueAtPercentile(99.9), w.latency.getMax())));
+            return lines;
+        }
+    }
+
+    private static Partial analyzeRange(FileChannel channel, ResultFileFormat.Header header, long first, long count,
+            long windowMs) {
+        Partial partial = new Partial();
+        MappedByteBuffer map;
+        try {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, header.getHeaderBytes() + first * RECORD,
+                    count * RECORD);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        long baseTimeMs = header.getBaseTimeMs();
+        for (int offset = 0; offset < map.limit(); offset += RECORD) {
+            int sendOffsetMs = map.getInt(offset + ResultFileFormat.SEND_OFFSET_MS);
+            int latencyMs = map.getInt(offset + ResultFileFormat.LATENCY_MS);
+            int latencyMicros = map.getInt(offset + ResultFileFormat.LATENCY_MICROS);
+            int roomId = map.getInt(offset + ResultFileFormat.ROOM_ID);
+            int statusCode = Short.toUnsignedInt(map.getShort(offset + ResultFileFormat.STATUS_CODE));
+            int type = map.get(offset + ResultFileFormat.MESSAGE_TYPE);
+
+            long sendMs = baseTimeMs + sendOffsetMs;
+            partial.firstMs = Math.min(partial.firstMs, sendMs);
+            partial.lastMs = Math.max(partial.lastMs, latencyMs >= 0 ? sendMs + latencyMs : sendMs);
+            if (type >= 0 && type < TYPE_COUNT) {
+                partial.countByType[type]++;
+            }
+            if (statusCode == STATUS_CODE_OK) {
+                partial.successByRoom.merge(roomId, 1L, Long::sum);
+            }
+            partial.latency.record(latencyMicros);
+            Window window = partial.windows.computeIfAbsent(Math.floorDiv(sendOffsetMs, windowMs),
+                    w -> new Window());
+            window.messages++;
+            window.latency.record(latencyMicros);
+        }
+        return partial;
+    }
+
+    /** Statistics of one range of records; merged into one for the report. */
+    private static final class Partial {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<Integer, Long> successByRoom = new HashMap<>();
+        final long[] countByType = new long[TYPE_COUNT];
+        final Map<Long, Window> windows = new HashMap<>();
+        long firstMs = Long.MAX_VALUE;
+        long lastMs = Long.MIN_VALUE;
+
+        Partial merge(Partial other) {
+            Partial merged = new Partial();
+            for (Partial p : new Partial[] { this, other }) {
+                merged.latency.add(p.latency);
+                p.successByRoom.forEach((room, count) -> merged.successByRoom.merge(room, count, Long::sum));
+                for (int i = 0; i < TYPE_COUNT; i++) {
+                    merged.countByType[i] += p.countByType[i];
+                }
+                p.windows.forEach((key, window) -> merged.windows.computeIfAbsent(key, k -> new Window()).add(window));
+                merged.firstMs = Math.min(merged.firstMs, p.firstMs);
+                merged.lastMs = Math.max(merged.lastMs, p.lastMs);
+            }
+            return merged;
+        }
+    }
+
+    private static final class Window {
+        final LatencyHistogram latency = new LatencyHistogram(WINDOW_PRECISION_BITS);
+        long messages;
+
+        void add(Window other) {
+            latency.add(other.latency);
+            messages += other.messages;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package client.codec;
+
+import model.ChatMessage;
+import model.MessageType;
+import model.ServerResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client side of the server's compact binary encoding (subprotocol
+ * {@link client.config.Constants#BINARY_SUBPROTOCOL}): varint integers, varint
+ * length-prefixed UTF-8 strings, big-endian epoch-millis timestamps.
+ *
+ * <pre>
+ * chat message   flags:u8 (0) | fields
+ * batch          flags:u8 (1) | count:varint | count x fields
+ * fields         type:u8 | userId:varint | username:str | message:str | timestamp:i64 [| messageId:str]
+ * ack            kind:u8 (0)  | result
+ * result         status:u8 (0 OK, 1 ERROR, 2 RATE_LIMITED) | serverTimestamp:i64 | message:str [| messageId:str]
+ * broadcast      kind:u8 (1)  | roomId:varint | chat message
+ * batch ack      kind:u8 (2)  | count:varint | count x result
+ * </pre>
+ *
+ * Flag 2 marks a frame whose messages all carry a messageId; status bit 0x80
+ * marks a result that echoes one.
+ */
+public final class BinaryCodec {
+    private static final int KIND_ACK = 0;
+    private static final int KIND_BATCH_ACK = 2;
+    private static final int FLAG_BATCH = 1;
+    private static final int FLAG_MESSAGE_ID = 2;
+    private static final int STATUS_FLAG_MESSAGE_ID = 0x80;
+    private static final int STATUS_OK = 0;
+    private static final int STATUS_RATE_LIMITED = 2;
+
+    private BinaryCodec() {
+    }
+
+    /** Encodes a chat message; userId must be a decimal integer. */
+    public static byte[] encode(ChatMessage msg) {
+        byte[] username = msg.getUserName().getBytes(StandardCharsets.UTF_8);
+        byte[] message = msg.getMessage().getBytes(StandardCharsets.UTF_8);
+        byte[] messageId = messageIdBytes(msg);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + maxEncodedLength(username, message, messageId));
+        buffer.put((byte) (messageId != null ? FLAG_MESSAGE_ID : 0));
+        putMessage(buffer, msg, username, message, messageId);
+        return toArray(buffer);
+    }
+
+    /**
+     * Encodes the messages as one batch frame, answered by one batch ack. The
+     * frame carries messageIds only if every message has one.
+     */
+    public static byte[] encodeBatch(List<ChatMessage> msgs) {
+        boolean withIds = true;
+        for (ChatMessage msg : msgs) {
+            withIds &= msg.getMessageId() != null;
+        }
+        List<byte[]> strings = new ArrayList<>(msgs.size() * 3);
+        int capacity = 1 + 5;
+        for (ChatMessage msg : msgs) {
+            byte[] username = msg.getUserName().getBytes(StandardCharsets.UTF_8);
+            byte[] message = msg.getMessage().getBytes(StandardCharsets.UTF_8);
+            byte[] messageId = withIds ? messageIdBytes(msg) : null;
+            strings.add(username);
+            strings.add(message);
+            strings.add(messageId);
+            capacity += maxEncodedLength(username, message, messageId);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        buffer.put((byte) (withIds ? FLAG_BATCH | FLAG_MESSAGE_ID : FLAG_BATCH));
+        putVarint(buffer, msgs.size());
+        for (int i = 0; i < msgs.size(); i++) {
+            putMessage(buffer, msgs.get(i), strings.get(3 * i), strings.get(3 * i + 1), strings.get(3 * i + 2));
+        }
+        return toArray(buffer);
+    }
+
+    private static byte[] messageIdBytes(ChatMessage msg) {
+        String correlationId = msg.getCorrelationId();
+        return correlationId == null ? null : correlationId.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int maxEncodedLength(byte[] username, byte[] message, byte[] messageId) {
+        return 1 + 5 + 5 + username.length + 5 + message.length + 8 + (messageId == null ? 0 : 5 + messageId.length);
+    }
+
+    private static void putMessage(ByteBuffer buffer, ChatMessage msg, byte[] username, byte[] message,
+            byte[] messageId) {
+        buffer.put((byte) msg.getMessageType().ordinal());
+        putVarint(buffer, Integer.parseInt(msg.getUserId()));
+        putVarint(buffer, username.length);
+        buffer.put(username);
+        putVarint(buffer, message.length);
+        buffer.put(message);
+        buffer.putLong(msg.getTimestamp().toEpochMilli());
+        if (messageId != null) {
+            putVarint(buffer, messageId.length);
+            buffer.put(messageId);
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] frame = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, frame, 0, frame.length);
+        return frame;
+    }
+
+    /** True if the server frame is a batch ack. Does not move the buffer's position. */
+    public static boolean isBatchAck(ByteBuffer frame) {
+        return frame.hasRemaining() && (frame.get(frame.position()) & 0xFF) == KIND_BATCH_ACK;
+    }
+
+    /** Decodes a batch ack: one response per message of the batch, in order. */
+    public static List<ServerResponse> decodeBatchAck(ByteBuffer frame) {
+        frame.get();
+        int count = getVarint(frame);
+        List<ServerResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            responses.add(readResult(frame));
+        }
+        return responses;
+    }
+
+    /**
+     * Decodes a server frame.
+     *
+     * @return the ack, or null if the frame is a room broadcast
+     */
+    public static ServerResponse decodeAck(ByteBuffer frame) {
+        if ((frame.get() & 0xFF) != KIND_ACK) {
+            return null;
+        }
+        return readResult(frame);
+    }
+
+    private static ServerResponse readResult(ByteBuffer frame) {
+        int statusByte = frame.get() & 0xFF;
+        int code = statusByte & ~STATUS_FLAG_MESSAGE_ID;
+        String status = code == STATUS_OK ? "OK" : code == STATUS_RATE_LIMITED ? "RATE_LIMITED" : "ERROR";
+        Instant serverTimestamp = Instant.ofEpochMilli(frame.getLong());
+        String message = getString(frame);
+        String messageId = (statusByte & STATUS_FLAG_MESSAGE_ID) != 0 ? getString(frame) : null;
+        return new ServerResponse(status, serverTimestamp, message, messageId);
+    }
+
+    private static String getString(ByteBuffer frame) {
+        byte[] bytes = new byte[getVarint(frame)];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
@@ -23,10 +23,50 @@ public final class Constants {
     // --- Main phase ---
     public static final int TOTAL_MESSAGES = 500_000;
     public static final int MAIN_MESSAGES = TOTAL_MESSAGES - WARMUP_MESSAGES;
-    public static final int NUM_WORKERS = 400;
+    /** Sender workers in the main phase (-Dclient.workers); with virtual threads this can be tens of thousands. */
+    public static final int NUM_WORKERS = Integer.getInteger("client.workers", 400);
+    /** Messages per batch frame in the main phase (-Dclient.batchSize); 1 sends one frame per message. */
+    public static final int BATCH_SIZE = Integer.getInteger("client.batchSize", 1);
+    /** Tag each message with a messageId kept across retries (-Dclient.messageIds=false to send none). */
+    public static final boolean MESSAGE_IDS = Boolean.parseBoolean(System.getProperty("client.messageIds", "true"));
     public static final int MAX_PER_ROOM = 20;
     public static final int POOL_SIZE = ROOM_COUNT * MAX_PER_ROOM;
 
+    // --- Worker threads (-Dclient.workerMode=platform|virtual) ---
+    public static final String WORKER_MODE_PLATFORM = "platform";
+    /** Virtual threads need Java 21+; older JVMs fall back to platform threads. */
+    public static final String WORKER_MODE_VIRTUAL = "virtual";
+    public static final String WORKER_MODE = System.getProperty("client.workerMode", WORKER_MODE_PLATFORM);
+
+    // --- Load model (-Dclient.loadMode=closed|open) ---
+    /** Each worker sends its next message after the previous ack. */
+    public static final String LOAD_MODE_CLOSED = "closed";
+    /** Messages are released on a schedule, independently of acks; latency counts from the scheduled time. */
+    public static final String LOAD_MODE_OPEN = "open";
+    public static final String LOAD_MODE = System.getProperty("client.loadMode", LOAD_MODE_CLOSED);
+    /** Open-loop target rate in msg/s (-Dclient.rate); the peak rate of ramp and step profiles. */
+    public static final double TARGET_RATE = Double.parseDouble(System.getProperty("client.rate", "10000"));
+    /** Open-loop rate profile (-Dclient.profile=constant|ramp|step|spike). */
+    public static final String LOAD_PROFILE = System.getProperty("client.profile", "constant");
+    /** Ramp length, length of each step, or spike length, in seconds (-Dclient.profile.seconds). */
+    public static final double PROFILE_SECONDS = Double.parseDouble(System.getProperty("client.profile.seconds", "10"));
+    /** Number of equal steps up to TARGET_RATE (-Dclient.profile.steps). */
+    public static final int PROFILE_STEPS = Integer.getInteger("client.profile.steps", 5);
+    /** Seconds into the run the spike starts (-Dclient.profile.spikeAt). */
+    public static final double PROFILE_SPIKE_AT = Double.parseDouble(
+            System.getProperty("client.profile.spikeAt", "10"));
+    /** Spike rate as a multiple of TARGET_RATE (-Dclient.profile.spikeFactor). */
+    public static final double PROFILE_SPIKE_FACTOR = Double.parseDouble(
+            System.getProperty("client.profile.spikeFactor", "5"));
+    /** Seconds between open-loop progress lines. */
+    public static final long OPEN_LOOP_REPORT_SECONDS = 5;
+
+    // --- Live metrics (main phase) ---
+    /** Seconds between live console lines; 0 turns the ticker off. */
+    public static final int TICKER_SECONDS = Integer.getInteger("client.ticker.seconds", 1);
+    /** Loopback port of the live /metrics endpoint; 0 turns it off. */
+    public static final int METRICS_PORT = Integer.getInteger("client.metrics.port", 9464);
+
     // --- Retry / backoff ---
     public static final int MAX_RETRIES = 5;
     public static final long BACKOFF_DELAY_MS = 1000;
@@ -34,7 +74,6 @@ public final class Constants {
     // --- SenderWorker ---
     public static final int POISON_ROOM_ID = -1;
     public static final int EXIT_ON_POISON = 0;
-    public static final long PROGRESS_LOG_INTERVAL = 50_000;
     public static final int BACKOFF_BASE = 2;
 
     // --- MessageGenerator ---
@@ -48,14 +87,40 @@ public final class Constants {
     public static final String WEBSOCKET_PATH_PREFIX = "/chat/";
     /** Timeout when waiting for server ack in sendSync (ms). */
     public static final long ACK_TIMEOUT_MS = 5000;
+    /**
+     * Messages per connection that may await an ack at once (-Dclient.inFlight); acks are matched by messageId,
+     * so a window above 1 needs message IDs.
+     */
+    public static final int IN_FLIGHT_WINDOW = Integer.getInteger("client.inFlight", 1);
+
+    // --- Wire format (-Dclient.wireFormat=json|binary) ---
+    public static final String WIRE_FORMAT_JSON = "json";
+    public static final String WIRE_FORMAT_BINARY = "binary";
+    public static final String WIRE_FORMAT = System.getProperty("client.wireFormat", WIRE_FORMAT_JSON);
+    public static final String BINARY_SUBPROTOCOL = "chat.binary.v1";
+
+    // --- permessage-deflate (-Dclient.compression=true) ---
+    public static final boolean COMPRESSION_ENABLED = Boolean.getBoolean("client.compression");
+    /** Frames with a smaller payload are sent uncompressed. */
+    public static final int COMPRESSION_MIN_BYTES = Integer.getInteger("client.compression.minBytes", 128);
+    /** Reset the deflate window after every message on both sides. */
+    public static final boolean COMPRESSION_NO_CONTEXT_TAKEOVER = Boolean.getBoolean(
+            "client.compression.noContextTakeover");
 
     // --- Status codes for CSV (Part 3) ---
     public static final int STATUS_CODE_OK = 200;
     public static final int STATUS_CODE_ERROR = 400;
     public static final int STATUS_CODE_TIMEOUT = 504;
+    public static final int STATUS_CODE_RATE_LIMITED = 429;
 
     // --- Results / CSV (Part 3) ---
     public static final String RESULTS_DIR = "results";
     public static final String PER_MESSAGE_CSV = "per_message_metrics.csv";
+    public static final String PER_MESSAGE_BIN = "per_message_metrics.bin";
+    public static final String RESULT_FORMAT_CSV = "csv";
+    /** Fixed-width records with a header; see ResultFileFormat and client.analysis.ResultFileAnalyzer. */
+    public static final String RESULT_FORMAT_BINARY = "binary";
+    /** Per-message result file format (-Dclient.resultFormat=csv|binary). */
+    public static final String RESULT_FORMAT = System.getProperty("client.resultFormat", RESULT_FORMAT_CSV);
     public static final String STATS_TXT = "statistical_analysis.txt";
 }
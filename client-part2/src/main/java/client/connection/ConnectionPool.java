@@ -5,6 +5,7 @@ import static client.config.Constants.ROOM_ID_FIRST;
 import client.metrics.Metrics;
 
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -123,6 +124,13 @@ public class ConnectionPool {
         }
     }
 
+    /** Returns the number of idle (not borrowed) sessions per room id, in room order. */
+    public Map<Integer, Integer> idleCounts() {
+        Map<Integer, Integer> idle = new TreeMap<>();
+        availableByRoom.forEach((roomId, queue) -> idle.put(roomId, queue.size()));
+        return idle;
+    }
+
     private BlockingQueue<ConnectionSession> queueFor(int roomId) {
         return availableByRoom.computeIfAbsent(roomId, k -> new LinkedBlockingQueue<>());
     }
@@ -138,7 +146,7 @@ public class ConnectionPool {
         totalCount.incrementAndGet();
         roomCount(roomId).incrementAndGet();
         try {
-            ConnectionSession session = new ConnectionSession(host, port, roomId);
+            ConnectionSession session = new ConnectionSession(host, port, roomId, metrics);
             session.awaitOpen();
             if (metrics != null) {
                 metrics.recordConnectionCreated();
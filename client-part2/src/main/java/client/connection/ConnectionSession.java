@@ -1,49 +1,108 @@
 package client.connection;
 
 import static client.config.Constants.ACK_TIMEOUT_MS;
+import static client.config.Constants.BINARY_SUBPROTOCOL;
+import static client.config.Constants.COMPRESSION_ENABLED;
+import static client.config.Constants.COMPRESSION_MIN_BYTES;
+import static client.config.Constants.COMPRESSION_NO_CONTEXT_TAKEOVER;
 import static client.config.Constants.CONNECTION_TIMEOUT_SECONDS;
+import static client.config.Constants.IN_FLIGHT_WINDOW;
 import static client.config.Constants.WEBSOCKET_PATH_PREFIX;
+import static client.config.Constants.WIRE_FORMAT;
+import static client.config.Constants.WIRE_FORMAT_BINARY;
 
+import client.codec.BinaryCodec;
+import client.metrics.Metrics;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import model.ChatMessage;
 import model.ServerResponse;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.Protocol;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Single WebSocket connection to /chat/{roomId}. Sends JSON-serialized
- * {@link model.ChatMessage}.
- * Connection is reusable; marked closed only on onClose/onError. Server echoes
- * valid messages
+ * Single WebSocket connection to /chat/{roomId}. Sends {@link model.ChatMessage}
+ * as JSON text frames, or as binary frames when {@code WIRE_FORMAT} is binary
+ * (negotiated through the {@code BINARY_SUBPROTOCOL} subprotocol). Offers
+ * permessage-deflate when {@code COMPRESSION_ENABLED}. Several messages can go
+ * out as one batch frame, answered by one batch ack with a status per message.
+ * Connection is reusable; marked closed only on onClose/onError. Server acks
+ * valid messages, fans TEXT out to the rest of the room,
  * and does not close on LEAVE.
+ * Messages with a messageId are matched to their ack by the correlation id
+ * the server echoes (messageId plus attempt number, see
+ * {@link ChatMessage#getCorrelationId()}), so up to {@code IN_FLIGHT_WINDOW} of
+ * them can await an ack at once and a late ack of an earlier attempt completes
+ * nothing. The same holds for the messages of a batch. Messages without one
+ * are matched to acks in arrival order.
  */
 public class ConnectionSession {
+    private static final TypeReference<List<ServerResponse>> RESPONSE_LIST = new TypeReference<>() {
+    };
 
     private final WebSocketClient client;
     private final CountDownLatch connectedLatch;
     private final ObjectMapper objectMapper;
     private final int roomId;
     private final BlockingQueue<ServerResponse> responseQueue;
+    private final BlockingQueue<List<ServerResponse>> batchResponseQueue;
+    private final Map<String, PendingAck> pending;
+    private final Semaphore window;
+    private final boolean binary;
+    private final Metrics metrics;
 
     private volatile boolean closed;
 
     public ConnectionSession(String host, int port, int roomId) throws Exception {
+        this(host, port, roomId, null);
+    }
+
+    /**
+     * @param metrics optional; payload bytes of every sent frame and the
+     *                messages awaiting an ack are reported here when non-null
+     */
+    public ConnectionSession(String host, int port, int roomId, Metrics metrics) throws Exception {
         this.roomId = roomId;
+        this.metrics = metrics;
+        this.binary = WIRE_FORMAT_BINARY.equals(WIRE_FORMAT);
         this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
         this.connectedLatch = new CountDownLatch(1);
         this.responseQueue = new LinkedBlockingQueue<>();
+        this.batchResponseQueue = new LinkedBlockingQueue<>();
+        this.pending = new ConcurrentHashMap<>();
+        this.window = new Semaphore(IN_FLIGHT_WINDOW);
         this.closed = false;
 
         String path = WEBSOCKET_PATH_PREFIX + roomId;
         URI uri = new URI("ws", null, host, port, path, null, null);
-        this.client = new WebSocketClient(uri) {
+        List<IExtension> extensions = COMPRESSION_ENABLED
+                ? Collections.singletonList(new MeasuredDeflateExtension(COMPRESSION_MIN_BYTES,
+                        COMPRESSION_NO_CONTEXT_TAKEOVER, metrics != null ? metrics.getCompression() : null))
+                : Collections.emptyList();
+        Draft_6455 draft = binary
+                ? new Draft_6455(extensions, Collections.singletonList(new Protocol(BINARY_SUBPROTOCOL)))
+                : new Draft_6455(extensions);
+        this.client = new WebSocketClient(uri, draft) {
             @Override
             public void onOpen(ServerHandshake handshake) {
                 connectedLatch.countDown();
@@ -52,8 +111,31 @@ public class ConnectionSession {
             @Override
             public void onMessage(String message) {
                 try {
+                    // a batch ack is a JSON array of responses
+                    if (message.startsWith("[")) {
+                        onBatchAck(objectMapper.readValue(message, RESPONSE_LIST));
+                        return;
+                    }
                     ServerResponse response = objectMapper.readValue(message, ServerResponse.class);
-                    responseQueue.offer(response);
+                    // room broadcasts from other members have no status; only acks are queued
+                    if (response.getStatus() != null) {
+                        onAck(response);
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                try {
+                    if (BinaryCodec.isBatchAck(bytes)) {
+                        onBatchAck(BinaryCodec.decodeBatchAck(bytes));
+                        return;
+                    }
+                    ServerResponse response = BinaryCodec.decodeAck(bytes);
+                    if (response != null) {
+                        onAck(response);
+                    }
                 } catch (Exception ignored) {
                 }
             }
@@ -62,12 +144,14 @@ public class ConnectionSession {
             public void onClose(int code, String reason, boolean remote) {
                 closed = true;
                 connectedLatch.countDown();
+                failPending();
             }
 
             @Override
             public void onError(Exception ex) {
                 closed = true;
                 connectedLatch.countDown();
+                failPending();
             }
         };
         client.connect();
@@ -79,8 +163,8 @@ public class ConnectionSession {
     }
 
     /**
-     * Sends a message on this connection. Serializes to JSON and sends over
-     * WebSocket.
+     * Sends a message on this connection. Serializes to JSON (or the binary
+     * encoding) and sends over WebSocket.
      *
      * @param msg the message to send (JOIN, TEXT, or LEAVE)
      * @throws IllegalStateException if connection is closed
@@ -90,31 +174,277 @@ public class ConnectionSession {
         if (closed || !client.isOpen()) {
             throw new IllegalStateException("Connection is closed");
         }
-        String json = objectMapper.writeValueAsString(msg);
-        client.send(json);
+        write(msg);
     }
 
     /**
      * Sends a message and blocks until server ack is received (or timeout).
      * Returns send time, ack time, and server status for latency/metrics.
+     * A message with a messageId waits for the ack carrying its correlation id;
+     * one without takes the next ack without an id.
      *
      * @param msg the message to send
      * @return SendResult with sendTimeMs, ackTimeMs (-1 if timeout), and status
-     *         ("OK", "ERROR", "TIMEOUT")
+     *         ("OK", "ERROR", "RATE_LIMITED", "TIMEOUT")
      */
     public SendResult sendSync(ChatMessage msg) throws Exception {
         if (closed || !client.isOpen()) {
             throw new IllegalStateException("Connection is closed");
         }
+        if (msg.getMessageId() != null) {
+            return sendAsync(msg).get();
+        }
         long sendTimeMs = System.currentTimeMillis();
-        String json = objectMapper.writeValueAsString(msg);
-        client.send(json);
-        ServerResponse response = responseQueue.poll(ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        long sendNanos = System.nanoTime();
+        ServerResponse response;
+        addInFlight(1);
+        try {
+            write(msg);
+            response = responseQueue.poll(ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            addInFlight(-1);
+        }
         if (response == null) {
             return new SendResult(sendTimeMs, -1, "TIMEOUT");
         }
+        long ackNanos = System.nanoTime();
+        long ackTimeMs = System.currentTimeMillis();
+        return new SendResult(sendTimeMs, ackTimeMs, response.getStatus(), sendNanos, ackNanos);
+    }
+
+    /**
+     * Sends a message that carries a messageId without waiting for its ack.
+     * Blocks while {@code IN_FLIGHT_WINDOW} messages of this connection await an
+     * ack. The future completes with the ack time taken when the ack arrives, or
+     * with "TIMEOUT" after {@code ACK_TIMEOUT_MS}; it completes exceptionally if
+     * the connection closes first. An ack arriving after the timeout is dropped,
+     * and does not match a retry, which is sent with the next attempt number.
+     *
+     * @param msg the message to send; must have a messageId
+     * @throws IllegalStateException if connection is closed
+     * @throws Exception             if serialization or send fails
+     */
+    public CompletableFuture<SendResult> sendAsync(ChatMessage msg) throws Exception {
+        String correlationId = msg.getCorrelationId();
+        if (correlationId == null) {
+            throw new IllegalArgumentException("sendAsync requires a messageId");
+        }
+        if (closed || !client.isOpen()) {
+            throw new IllegalStateException("Connection is closed");
+        }
+        if (!window.tryAcquire(ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            return CompletableFuture.completedFuture(new SendResult(System.currentTimeMillis(), -1, "TIMEOUT"));
+        }
+        PendingAck ack = expectAck(correlationId, System.currentTimeMillis(), System.nanoTime());
+        ack.future.whenComplete((result, error) -> window.release());
+        try {
+            write(msg);
+        } catch (Exception e) {
+            ack.future.completeExceptionally(e);
+            throw e;
+        }
+        return ack.future.completeOnTimeout(new SendResult(ack.sendTimeMs, -1, "TIMEOUT"), ACK_TIMEOUT_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /** Registers a message awaiting the ack with this correlation id; it leaves the map once completed. */
+    private PendingAck expectAck(String correlationId, long sendTimeMs, long sendNanos) {
+        PendingAck ack = new PendingAck(sendTimeMs, sendNanos);
+        pending.put(correlationId, ack);
+        addInFlight(1);
+        ack.future.whenComplete((result, error) -> {
+            pending.remove(correlationId, ack);
+            addInFlight(-1);
+        });
+        return ack;
+    }
+
+    /**
+     * Completes the futures of a batch ack whose results all echo a correlation
+     * id, or queues it for the in-order path of batches sent without ids.
+     */
+    private void onBatchAck(List<ServerResponse> responses) {
+        for (ServerResponse response : responses) {
+            if (response.getMessageId() == null) {
+                batchResponseQueue.offer(responses);
+                return;
+            }
+        }
+        for (ServerResponse response : responses) {
+            onAck(response);
+        }
+    }
+
+    /** Completes the future waiting on this ack, or queues it for the in-order sendSync path. */
+    private void onAck(ServerResponse response) {
+        String correlationId = response.getMessageId();
+        if (correlationId == null) {
+            responseQueue.offer(response);
+            return;
+        }
+        PendingAck ack = pending.get(correlationId);
+        if (ack != null) {
+            long ackNanos = System.nanoTime();
+            ack.future.complete(new SendResult(ack.sendTimeMs, System.currentTimeMillis(), response.getStatus(),
+                    ack.sendNanos, ackNanos));
+        }
+    }
+
+    private void failPending() {
+        IllegalStateException closedException = new IllegalStateException("Connection is closed");
+        for (PendingAck ack : pending.values()) {
+            ack.future.completeExceptionally(closedException);
+        }
+    }
+
+    /** A sent message awaiting the ack that carries its correlation id. */
+    private static final class PendingAck {
+        final long sendTimeMs;
+        final long sendNanos;
+        final CompletableFuture<SendResult> future = new CompletableFuture<>();
+
+        PendingAck(long sendTimeMs, long sendNanos) {
+            this.sendTimeMs = sendTimeMs;
+            this.sendNanos = sendNanos;
+        }
+    }
+
+    /**
+     * Sends the messages as one batch frame without waiting for the batch ack.
+     *
+     * @throws IllegalStateException if connection is closed
+     */
+    public void sendBatch(List<ChatMessage> msgs) throws Exception {
+        if (closed || !client.isOpen()) {
+            throw new IllegalStateException("Connection is closed");
+        }
+        writeBatch(msgs);
+    }
+
+    /**
+     * Sends the messages as one batch frame and blocks until the batch ack is
+     * received (or timeout). When every message has a messageId, each result is
+     * matched by its correlation id, so a batch ack arriving after its batch
+     * timed out is not credited to a later batch or retry.
+     *
+     * @param msgs messages of this connection's room
+     * @return one SendResult per message, in order; "TIMEOUT" for messages whose
+     *         ack did not arrive, all "ERROR" if an ack without ids does not
+     *         match the batch
+     */
+    public List<SendResult> sendBatchSync(List<ChatMessage> msgs) throws Exception {
+        if (closed || !client.isOpen()) {
+            throw new IllegalStateException("Connection is closed");
+        }
+        long sendTimeMs = System.currentTimeMillis();
+        long sendNanos = System.nanoTime();
+        boolean withIds = true;
+        for (ChatMessage msg : msgs) {
+            withIds &= msg.getMessageId() != null;
+        }
+        if (withIds) {
+            return sendBatchCorrelated(msgs, sendTimeMs, sendNanos);
+        }
+        List<ServerResponse> responses;
+        addInFlight(msgs.size());
+        try {
+            writeBatch(msgs);
+            responses = batchResponseQueue.poll(ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            addInFlight(-msgs.size());
+        }
+        List<SendResult> results = new ArrayList<>(msgs.size());
+        if (responses == null || responses.size() != msgs.size()) {
+            String status = responses == null ? "TIMEOUT" : "ERROR";
+            for (int i = 0; i < msgs.size(); i++) {
+                results.add(new SendResult(sendTimeMs, -1, status));
+            }
+            return results;
+        }
+        long ackNanos = System.nanoTime();
         long ackTimeMs = System.currentTimeMillis();
-        return new SendResult(sendTimeMs, ackTimeMs, response.getStatus());
+        for (ServerResponse response : responses) {
+            results.add(new SendResult(sendTimeMs, ackTimeMs, response.getStatus(), sendNanos, ackNanos));
+        }
+        return results;
+    }
+
+    private List<SendResult> sendBatchCorrelated(List<ChatMessage> msgs, long sendTimeMs, long sendNanos)
+            throws Exception {
+        List<PendingAck> acks = new ArrayList<>(msgs.size());
+        for (ChatMessage msg : msgs) {
+            acks.add(expectAck(msg.getCorrelationId(), sendTimeMs, sendNanos));
+        }
+        SendResult timeout = new SendResult(sendTimeMs, -1, "TIMEOUT");
+        List<SendResult> results = new ArrayList<>(msgs.size());
+        try {
+            writeBatch(msgs);
+            long deadline = sendNanos + TimeUnit.MILLISECONDS.toNanos(ACK_TIMEOUT_MS);
+            for (PendingAck ack : acks) {
+                try {
+                    results.add(ack.future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    results.add(timeout);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } finally {
+            // leaves the map any ack still pending, so a late one completes nothing
+            for (PendingAck ack : acks) {
+                ack.future.complete(timeout);
+            }
+        }
+        return results;
+    }
+
+    private void writeBatch(List<ChatMessage> msgs) throws Exception {
+        if (binary) {
+            byte[] frame = BinaryCodec.encodeBatch(msgs);
+            client.send(frame);
+            recordBytesSent(frame.length);
+        } else {
+            String json = objectMapper.writeValueAsString(msgs);
+            client.send(json);
+            recordBytesSent(utf8Length(json));
+        }
+    }
+
+    private void write(ChatMessage msg) throws Exception {
+        if (binary) {
+            byte[] frame = BinaryCodec.encode(msg);
+            client.send(frame);
+            recordBytesSent(frame.length);
+        } else {
+            String json = objectMapper.writeValueAsString(msg);
+            client.send(json);
+            recordBytesSent(utf8Length(json));
+        }
+    }
+
+    private void recordBytesSent(int bytes) {
+        if (metrics != null) {
+            metrics.recordBytesSent(bytes);
+        }
+    }
+
+    private void addInFlight(int messages) {
+        if (metrics != null) {
+            metrics.addInFlight(messages);
+        }
+    }
+
+    private static int utf8Length(String s) {
+        int length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800 && !Character.isSurrogate(c)) {
+                length += 2;
+            } else if (c >= 0x80) {
+                length += 1;
+            }
+        }
+        return length;
     }
 
     /** Returns true if this connection is still open and usable for sending. */
@@ -0,0 +1,70 @@
+package client.connection;
+
+import client.metrics.CompressionMetrics;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+/**
+ * permessage-deflate with a minimum payload size and context-takeover settings,
+ * reporting compression ratio and time per frame to {@link CompressionMetrics}.
+ */
+public class MeasuredDeflateExtension extends PerMessageDeflateExtension {
+    private final int minBytes;
+    private final boolean noContextTakeover;
+    private final CompressionMetrics metrics;
+
+    /**
+     * @param minBytes          payloads smaller than this are sent uncompressed
+     * @param noContextTakeover when true, both sides reset the deflate window
+     *                          after each message (less memory, lower ratio)
+     * @param metrics           optional; receives per-frame measurements when
+     *                          non-null
+     */
+    public MeasuredDeflateExtension(int minBytes, boolean noContextTakeover, CompressionMetrics metrics) {
+        this.minBytes = minBytes;
+        this.noContextTakeover = noContextTakeover;
+        this.metrics = metrics;
+        setThreshold(minBytes);
+        setClientNoContextTakeover(noContextTakeover);
+        setServerNoContextTakeover(noContextTakeover);
+    }
+
+    @Override
+    public void encodeFrame(Framedata inputFrame) {
+        if (metrics == null || !(inputFrame instanceof DataFrame)) {
+            super.encodeFrame(inputFrame);
+            return;
+        }
+        int rawBytes = inputFrame.getPayloadData().remaining();
+        long start = System.nanoTime();
+        super.encodeFrame(inputFrame);
+        long nanos = System.nanoTime() - start;
+        if (rawBytes < minBytes) {
+            metrics.recordBelowThreshold();
+        } else {
+            metrics.recordDeflate(rawBytes, inputFrame.getPayloadData().remaining(), nanos);
+        }
+    }
+
+    @Override
+    public void decodeFrame(Framedata inputFrame) throws InvalidDataException {
+        if (metrics == null || !inputFrame.isRSV1()) {
+            super.decodeFrame(inputFrame);
+            return;
+        }
+        int compressedBytes = inputFrame.getPayloadData().remaining();
+        long start = System.nanoTime();
+        super.decodeFrame(inputFrame);
+        long nanos = System.nanoTime() - start;
+        metrics.recordInflate(compressedBytes, inputFrame.getPayloadData().remaining(), nanos);
+    }
+
+    /** Each connection's draft gets its own copy; the base class would drop the settings. */
+    @Override
+    public IExtension copyInstance() {
+        return new MeasuredDeflateExtension(minBytes, noContextTakeover, metrics);
+    }
+}
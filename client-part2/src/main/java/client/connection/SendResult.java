@@ -2,17 +2,31 @@ package client.connection;
 
 /**
  * Result of sendSync: send time, ack time (or -1 if timeout/failure), and
- * server status string ("OK", "ERROR", or "TIMEOUT").
+ * server status string ("OK", "ERROR", "RATE_LIMITED", or "TIMEOUT").
+ * Acked results also carry System.nanoTime readings for microsecond latency.
  */
 public final class SendResult {
     private final long sendTimeMs;
     private final long ackTimeMs;
     private final String status;
+    private final long sendNanos;
+    private final long ackNanos;
 
+    /** A result without an ack (timeout or failure). */
     public SendResult(long sendTimeMs, long ackTimeMs, String status) {
+        this(sendTimeMs, ackTimeMs, status, 0, -1);
+    }
+
+    /**
+     * @param sendNanos System.nanoTime before the send
+     * @param ackNanos  System.nanoTime when the ack arrived
+     */
+    public SendResult(long sendTimeMs, long ackTimeMs, String status, long sendNanos, long ackNanos) {
         this.sendTimeMs = sendTimeMs;
         this.ackTimeMs = ackTimeMs;
         this.status = status;
+        this.sendNanos = sendNanos;
+        this.ackNanos = ackNanos;
     }
 
     public long getSendTimeMs() {
@@ -24,11 +38,26 @@ public final class SendResult {
         return ackTimeMs;
     }
 
-    /** "OK", "ERROR", or "TIMEOUT". */
+    /** "OK", "ERROR", "RATE_LIMITED", or "TIMEOUT". */
     public String getStatus() {
         return status;
     }
 
+    /** System.nanoTime when the ack arrived; only meaningful if {@link #hasAck()}. */
+    public long getAckNanos() {
+        return ackNanos;
+    }
+
+    /** True if an ack was received. */
+    public boolean hasAck() {
+        return ackTimeMs >= 0;
+    }
+
+    /** Microseconds from send to ack, or -1 if no ack was received. */
+    public long getLatencyMicros() {
+        return hasAck() ? (ackNanos - sendNanos) / 1000 : -1;
+    }
+
     public boolean isSuccess() {
         return "OK".equals(status);
     }
@@ -0,0 +1,45 @@
+package client.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/** Streams per-message rows as fixed-width {@link ResultFileFormat} records. */
+final class BinaryResultWriter extends ResultFileWriter {
+
+    /**
+     * Creates the file and puts the header in the buffer; call {@link #start}
+     * to stream chunks handed over by {@link RecordColumns}.
+     *
+     * @param baseTimeMs   base time of the {@link RecordColumns} chunks to be written
+     * @param baseNanoTime System.nanoTime taken with baseTimeMs
+     * @param properties   run parameters and clock info for the header
+     * @throws java.io.UncheckedIOException if the file cannot be created
+     */
+    BinaryResultWriter(Path file, long baseTimeMs, long baseNanoTime, Map<String, String> properties) {
+        super(file, "binary-result-writer");
+        put(ResultFileFormat.header(baseTimeMs, baseNanoTime, properties));
+    }
+
+    @Override
+    void writeRows(RecordColumns.Chunk chunk) throws IOException {
+        for (int row = 0; row < chunk.size; row++) {
+            reserve(ResultFileFormat.RECORD_BYTES);
+            putInt(chunk.sendOffsetMs[row]);
+            putInt(chunk.latencyMs[row]);
+            putInt(chunk.latencyMicros[row]);
+            putInt(chunk.roomId[row]);
+            buffer[position++] = (byte) chunk.statusCode[row];
+            buffer[position++] = (byte) (chunk.statusCode[row] >>> 8);
+            buffer[position++] = chunk.type[row];
+            buffer[position++] = 0;
+        }
+    }
+
+    private void putInt(int value) {
+        buffer[position++] = (byte) value;
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,61 @@
+package client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * permessage-deflate counters for a run: payload bytes before and after
+ * compression, frames left uncompressed because they were below the size
+ * threshold, and time spent deflating and inflating. Updated by
+ * {@link client.connection.MeasuredDeflateExtension} on the connections'
+ * read and write threads.
+ */
+public class CompressionMetrics {
+    private final AtomicLong framesCompressed = new AtomicLong(0);
+    private final AtomicLong framesBelowThreshold = new AtomicLong(0);
+    private final AtomicLong bytesBeforeDeflate = new AtomicLong(0);
+    private final AtomicLong bytesAfterDeflate = new AtomicLong(0);
+    private final AtomicLong deflateNanos = new AtomicLong(0);
+    private final AtomicLong framesInflated = new AtomicLong(0);
+    private final AtomicLong bytesBeforeInflate = new AtomicLong(0);
+    private final AtomicLong bytesAfterInflate = new AtomicLong(0);
+    private final AtomicLong inflateNanos = new AtomicLong(0);
+
+    /** Records one outbound frame that was compressed. */
+    public void recordDeflate(long rawBytes, long compressedBytes, long nanos) {
+        framesCompressed.incrementAndGet();
+        bytesBeforeDeflate.addAndGet(rawBytes);
+        bytesAfterDeflate.addAndGet(compressedBytes);
+        deflateNanos.addAndGet(nanos);
+    }
+
+    /** Records one outbound frame sent uncompressed because it was below the threshold. */
+    public void recordBelowThreshold() {
+        framesBelowThreshold.incrementAndGet();
+    }
+
+    /** Records one inbound frame that was decompressed. */
+    public void recordInflate(long compressedBytes, long rawBytes, long nanos) {
+        framesInflated.incrementAndGet();
+        bytesBeforeInflate.addAndGet(compressedBytes);
+        bytesAfterInflate.addAndGet(rawBytes);
+        inflateNanos.addAndGet(nanos);
+    }
+
+    /** Returns a one-line summary: ratios (compressed / raw) and mean microseconds per frame. */
+    public String summary() {
+        return "outbound: " + framesCompressed.get() + " compressed frames, ratio "
+                + ratio(bytesAfterDeflate.get(), bytesBeforeDeflate.get())
+                + ", " + perFrameMicros(deflateNanos.get(), framesCompressed.get()) + " us/frame, "
+                + framesBelowThreshold.get() + " below threshold; inbound: " + framesInflated.get()
+                + " compressed frames, ratio " + ratio(bytesBeforeInflate.get(), bytesAfterInflate.get())
+                + ", " + perFrameMicros(inflateNanos.get(), framesInflated.get()) + " us/frame";
+    }
+
+    private static String ratio(long compressed, long raw) {
+        return raw > 0 ? String.format("%.3f", (double) compressed / raw) : "n/a";
+    }
+
+    private static String perFrameMicros(long nanos, long frames) {
+        return frames > 0 ? String.format("%.2f", nanos / 1000.0 / frames) : "n/a";
+    }
+}
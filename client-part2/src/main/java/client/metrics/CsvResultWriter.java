@@ -0,0 +1,84 @@
+package client.metrics;
+
+import model.MessageType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Streams the per-message CSV, formatting numbers by hand. The output is the
+ * same as formatting each row with {@code "%d,%d,%s,%d,%d,%d"} and the
+ * platform line separator.
+ */
+final class CsvResultWriter extends ResultFileWriter {
+    static final String HEADER = "sendTimestamp,ackTimestamp,messageType,latency,statusCode,roomId";
+    /** Longest row: two 20-char longs, the longest type name, three 11-char ints, separators. */
+    private static final int MAX_ROW_BYTES = 128;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] TYPE_NAMES = typeNames();
+
+    private final long baseTimeMs;
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Creates the file and puts the header in the buffer; call {@link #start}
+     * to stream chunks handed over by {@link RecordColumns}.
+     *
+     * @param baseTimeMs base time of the {@link RecordColumns} chunks to be written
+     * @throws java.io.UncheckedIOException if the file cannot be created
+     */
+    CsvResultWriter(Path file, long baseTimeMs) {
+        super(file, "csv-result-writer");
+        this.baseTimeMs = baseTimeMs;
+        put(HEADER.getBytes(StandardCharsets.US_ASCII));
+        put(LINE_SEPARATOR);
+    }
+
+    @Override
+    void writeRows(RecordColumns.Chunk chunk) throws IOException {
+        for (int row = 0; row < chunk.size; row++) {
+            reserve(MAX_ROW_BYTES);
+            long sendTimestamp = baseTimeMs + chunk.sendOffsetMs[row];
+            int latencyMs = chunk.latencyMs[row];
+            writeLong(sendTimestamp);
+            buffer[position++] = ',';
+            writeLong(latencyMs >= 0 ? sendTimestamp + latencyMs : -1);
+            buffer[position++] = ',';
+            put(TYPE_NAMES[chunk.type[row]]);
+            buffer[position++] = ',';
+            writeLong(latencyMs);
+            buffer[position++] = ',';
+            writeLong(chunk.statusCode[row]);
+            buffer[position++] = ',';
+            writeLong(chunk.roomId[row]);
+            put(LINE_SEPARATOR);
+        }
+    }
+
+    /** Appends the decimal form of value; works on the negative value so Long.MIN_VALUE is handled too. */
+    private void writeLong(long value) {
+        if (value < 0) {
+            buffer[position++] = '-';
+        } else {
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' - (value % 10));
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            buffer[position++] = digits[--count];
+        }
+    }
+
+    private static byte[][] typeNames() {
+        MessageType[] types = MessageType.values();
+        byte[][] names = new byte[types.length][];
+        for (MessageType type : types) {
+            names[type.ordinal()] = type.name().getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,175 @@
+package client.metrics;
+
+/**
+ * Fixed-size latency histogram in microseconds, with the bucket layout of
+ * HdrHistogram: with the default precision, values below 2048 µs are counted
+ * exactly and larger values with a relative error below 0.1%, up to
+ * {@link #MAX_MICROS} (about 71 minutes); larger values are clamped. Memory is
+ * the same whatever the number of recorded values. Not thread-safe;
+ * {@link LatencyRecorder} records from many threads and merges into one of
+ * these.
+ */
+public final class LatencyHistogram {
+    /** Default sub-buckets per power of two: 2^11, so precision is 1 part in 1024. */
+    public static final int DEFAULT_PRECISION_BITS = 11;
+    /** Largest value told apart from larger ones: 2^32 - 1 µs. */
+    public static final long MAX_MICROS = (1L << 32) - 1;
+    static final int DEFAULT_COUNTS_LENGTH = countsLength(DEFAULT_PRECISION_BITS);
+
+    private final int precisionBits;
+    private final long[] counts;
+    private long totalCount;
+    private long sum;
+
+    /** Creates a histogram with {@link #DEFAULT_PRECISION_BITS}. */
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits log2 of the sub-buckets per power of two, 2 to 16;
+     *                      values are exact below 2^precisionBits µs and within
+     *                      1 part in 2^(precisionBits - 1) above. Memory is
+     *                      about 2^(precisionBits - 1) * (34 - precisionBits) * 8
+     *                      bytes.
+     */
+    public LatencyHistogram(int precisionBits) {
+        if (precisionBits < 2 || precisionBits > 16) {
+            throw new IllegalArgumentException("precisionBits must be 2 to 16: " + precisionBits);
+        }
+        this.precisionBits = precisionBits;
+        this.counts = new long[countsLength(precisionBits)];
+    }
+
+    /** Counts one latency; negative values are ignored, values above MAX_MICROS are clamped. */
+    public void record(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        long value = Math.min(micros, MAX_MICROS);
+        counts[countsIndex(value, precisionBits)]++;
+        totalCount++;
+        sum += value;
+    }
+
+    /**
+     * Adds all counts of another histogram of the same precision to this one.
+     *
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void add(LatencyHistogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Cannot add histograms of different precision");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+    }
+
+    /**
+     * Returns a histogram of the values recorded since an earlier snapshot of
+     * the same recording.
+     *
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public LatencyHistogram since(LatencyHistogram earlier) {
+        if (earlier.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Cannot subtract histograms of different precision");
+        }
+        LatencyHistogram delta = new LatencyHistogram(precisionBits);
+        for (int i = 0; i < counts.length; i++) {
+            delta.counts[i] = counts[i] - earlier.counts[i];
+        }
+        delta.totalCount = totalCount - earlier.totalCount;
+        delta.sum = sum - earlier.sum;
+        return delta;
+    }
+
+    /** Adds a count to one slot; used by {@link LatencyRecorder} when merging its stripes. */
+    void addAt(int index, long count, long sumOfValues) {
+        counts[index] += count;
+        totalCount += count;
+        sum += sumOfValues;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /** Returns the exact mean of the recorded values, or 0 if there are none. */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /** Returns the smallest recorded value (to the bucket precision), or 0 if there are none. */
+    public long getMin() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                return lowestValueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the largest recorded value (to the bucket precision), or 0 if there are none. */
+    public long getMax() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return highestValueAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the value at or below which the given percentage of recorded
+     * values fall, as the highest value of its bucket; 0 if there are none.
+     *
+     * @param percentile 0 to 100
+     */
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueAt(i);
+            }
+        }
+        return getMax();
+    }
+
+    /** Index of the slot counting value (0 to MAX_MICROS). */
+    static int countsIndex(long value, int precisionBits) {
+        int halfBits = precisionBits - 1;
+        int bucket = 64 - Long.numberOfLeadingZeros(value | ((1L << precisionBits) - 1)) - precisionBits;
+        int subBucket = (int) (value >>> bucket);
+        return ((bucket + 1) << halfBits) + (subBucket - (1 << halfBits));
+    }
+
+    private static int countsLength(int precisionBits) {
+        return countsIndex(MAX_MICROS, precisionBits) + 1;
+    }
+
+    private long lowestValueAt(int index) {
+        int halfBits = precisionBits - 1;
+        int halfCount = 1 << halfBits;
+        int bucket = (index >> halfBits) - 1;
+        int subBucket = (index & (halfCount - 1)) + halfCount;
+        if (bucket < 0) {
+            subBucket -= halfCount;
+            bucket = 0;
+        }
+        return (long) subBucket << bucket;
+    }
+
+    private long highestValueAt(int index) {
+        int bucket = Math.max((index >> (precisionBits - 1)) - 1, 0);
+        return lowestValueAt(index) + (1L << bucket) - 1;
+    }
+}
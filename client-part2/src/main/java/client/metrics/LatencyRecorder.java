@@ -0,0 +1,66 @@
+package client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency recording into a fixed set of {@link LatencyHistogram}
+ * stripes. Each thread records into the stripe picked by its thread id, so
+ * sender threads rarely touch the same counters, and memory stays fixed
+ * however many threads (including virtual ones) or values there are.
+ * {@link #snapshot()} merges the stripes into one histogram.
+ */
+public final class LatencyRecorder {
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    public LatencyRecorder() {
+        int wanted = Math.min(MAX_STRIPES, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+        int count = Integer.highestOneBit(wanted - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = count - 1;
+    }
+
+    /** Counts one latency in microseconds; negative values are ignored. */
+    public void record(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        long value = Math.min(micros, LatencyHistogram.MAX_MICROS);
+        Stripe stripe = stripes[(int) mix(Thread.currentThread().getId()) & mask];
+        stripe.counts.incrementAndGet(
+                LatencyHistogram.countsIndex(value, LatencyHistogram.DEFAULT_PRECISION_BITS));
+        stripe.sum.addAndGet(value);
+    }
+
+    /** Returns a histogram of everything recorded so far; recording may continue meanwhile. */
+    public LatencyHistogram snapshot() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < LatencyHistogram.DEFAULT_COUNTS_LENGTH; i++) {
+                long count = stripe.counts.get(i);
+                if (count != 0) {
+                    merged.addAt(i, count, 0);
+                }
+            }
+            merged.addAt(0, 0, stripe.sum.get());
+        }
+        return merged;
+    }
+
+    /** Spreads sequential thread ids over the stripes. */
+    private static long mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private static final class Stripe {
+        final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.DEFAULT_COUNTS_LENGTH);
+        final AtomicLong sum = new AtomicLong();
+    }
+}
@@ -0,0 +1,325 @@
+package client.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live view of a running phase: the {@link Metrics} counters, gauges
+ * registered by name (queue depth, idle connections per room, ...), and the
+ * throughput and p50/p99 latency of the last second, taken once a second from
+ * the difference of two snapshots. The same values are printed as a console
+ * ticker line, exported over JMX as {@value #OBJECT_NAME} and served in
+ * Prometheus text format at {@code http://127.0.0.1:<port>/metrics}, so a bad
+ * run can be stopped early.
+ * Register gauges before {@link #start(int, int)}; {@link #close()} stops the
+ * ticker and both exports.
+ */
+public final class LiveMetrics implements LiveMetricsMXBean, AutoCloseable {
+    public static final String OBJECT_NAME = "client:type=LiveMetrics";
+    private static final String PREFIX = "loadtest_";
+    private static final long TICK_MS = 1000;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Metrics metrics;
+    private final Supplier<LatencyHistogram> latencies;
+    private final List<Gauge> gauges = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+
+    private Thread thread;
+    private HttpServer http;
+    private ObjectName objectName;
+    private int tickerSeconds;
+
+    // written by the tick thread only
+    private long lastTickNanos = startNanos;
+    private long lastSuccess;
+    private LatencyHistogram lastLatencies;
+
+    private volatile long throughput;
+    private volatile long p50Micros;
+    private volatile long p99Micros;
+
+    /**
+     * @param metrics   counters of the phase
+     * @param latencies snapshot of all latencies recorded so far, e.g.
+     *                  {@link PerMessageRecorder#getLatencyHistogram()}
+     */
+    public LiveMetrics(Metrics metrics, Supplier<LatencyHistogram> latencies) {
+        this.metrics = metrics;
+        this.latencies = latencies;
+    }
+
+    /**
+     * Registers a gauge, exported as {@code loadtest_<name>}.
+     *
+     * @param name  short name, also used on the ticker line
+     * @param help  one-line description for the Prometheus export
+     * @param value read on every tick and scrape
+     */
+    public LiveMetrics gauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, null, () -> Map.of("", value.getAsLong())));
+        return this;
+    }
+
+    /**
+     * Registers a gauge with one value per label value, e.g. per room. The
+     * ticker line shows the total over all label values.
+     *
+     * @param label  label name, e.g. {@code room}
+     * @param values read on every tick and scrape
+     */
+    public LiveMetrics gauge(String name, String help, String label,
+            Supplier<? extends Map<?, ? extends Number>> values) {
+        gauges.add(new Gauge(name, help, label, values));
+        return this;
+    }
+
+    /**
+     * Starts the one-second tick and the exports. A failed JMX registration or
+     * HTTP bind is reported and the run goes on without that export.
+     *
+     * @param tickerSeconds seconds between console lines; 0 prints none
+     * @param httpPort      loopback port of the {@code /metrics} endpoint; 0 serves none
+     */
+    public void start(int tickerSeconds, int httpPort) {
+        this.tickerSeconds = tickerSeconds;
+        this.lastLatencies = latencies.get();
+        registerJmx();
+        if (httpPort > 0) {
+            startHttp(httpPort);
+        }
+        thread = new Thread(this::runTicks, "live-metrics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops the tick thread, the HTTP endpoint and the JMX registration. */
+    @Override
+    public void close() throws InterruptedException {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+        if (http != null) {
+            http.stop(0);
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ignored) {
+            }
+        }
+    }
+
+    private void runTicks() {
+        long next = System.currentTimeMillis();
+        for (long tick = 1; ; tick++) {
+            next += TICK_MS;
+            try {
+                Thread.sleep(Math.max(0, next - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                return;
+            }
+            tick();
+            if (tickerSeconds > 0 && tick % tickerSeconds == 0) {
+                System.out.println(tickerLine());
+            }
+        }
+    }
+
+    /** Takes the throughput and percentiles of the interval since the previous tick. */
+    private void tick() {
+        long now = System.nanoTime();
+        long success = metrics.getSuccessCount();
+        LatencyHistogram snapshot = latencies.get();
+        LatencyHistogram interval = snapshot.since(lastLatencies);
+        long elapsed = Math.max(1, now - lastTickNanos);
+        throughput = (success - lastSuccess) * NANOS_PER_SECOND / elapsed;
+        p50Micros = interval.getTotalCount() > 0 ? interval.valueAtPercentile(50) : 0;
+        p99Micros = interval.getTotalCount() > 0 ? interval.valueAtPercentile(99) : 0;
+        lastTickNanos = now;
+        lastSuccess = success;
+        lastLatencies = snapshot;
+    }
+
+    private String tickerLine() {
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("Live [").append((System.nanoTime() - startNanos) / NANOS_PER_SECOND).append("s] ")
+                .append(throughput).append(" msg/s, p50=").append(p50Micros)
+                .append(" us, p99=").append(p99Micros)
+                .append(" us | ok=").append(metrics.getSuccessCount())
+                .append(", failed=").append(metrics.getFailureCount())
+                .append(", retries=").append(metrics.getRetryCount())
+                .append(", in-flight=").append(metrics.getInFlight());
+        for (Gauge gauge : gauges) {
+            long total = 0;
+            for (Number value : gauge.values.get().values()) {
+                total += value.longValue();
+            }
+            sb.append(", ").append(gauge.name).append('=').append(total);
+        }
+        return sb.toString();
+    }
+
+    /** Returns all values in Prometheus text exposition format. */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(2048);
+        header(out, "messages_total", "counter", "Messages finished, by outcome.");
+        sample(out, "messages_total", "status", "success", metrics.getSuccessCount());
+        sample(out, "messages_total", "status", "failure", metrics.getFailureCount());
+
+        header(out, "retries_total", "counter", "Send attempts repeating an earlier attempt of the same message.");
+        sample(out, "retries_total", null, null, metrics.getRetryCount());
+
+        header(out, "in_flight", "gauge", "Messages sent and awaiting an ack.");
+        sample(out, "in_flight", null, null, metrics.getInFlight());
+
+        header(out, "throughput", "gauge", "Acknowledged messages per second over the last second.");
+        sample(out, "throughput", null, null, throughput);
+
+        header(out, "latency_last_second_micros", "gauge", "Ack latency quantiles over the last second.");
+        sample(out, "latency_last_second_micros", "quantile", "0.5", p50Micros);
+        sample(out, "latency_last_second_micros", "quantile", "0.99", p99Micros);
+
+        for (Gauge gauge : gauges) {
+            header(out, gauge.name, "gauge", gauge.help);
+            for (Map.Entry<?, ? extends Number> e : gauge.values.get().entrySet()) {
+                sample(out, gauge.name, gauge.label, String.valueOf(e.getKey()), e.getValue().longValue());
+            }
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long sample) {
+        out.append(PREFIX).append(name);
+        if (label != null) {
+            out.append('{').append(label).append("=\"").append(value).append("\"}");
+        }
+        out.append(' ').append(sample).append('\n');
+    }
+
+    private void registerJmx() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            System.err.println("Live metrics: JMX registration failed (" + e.getMessage() + ")");
+        }
+    }
+
+    private void startHttp(int port) {
+        try {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            http.createContext("/metrics", this::serve);
+            http.start();
+            System.out.println("Live metrics: http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException e) {
+            http = null;
+            System.err.println("Live metrics: cannot serve on port " + port + " (" + e.getMessage()
+                    + "); set client.metrics.port to another port or 0");
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return metrics.getSuccessCount();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return metrics.getFailureCount();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return metrics.getRetryCount();
+    }
+
+    @Override
+    public long getInFlight() {
+        return metrics.getInFlight();
+    }
+
+    @Override
+    public long getThroughput() {
+        return throughput;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return p50Micros;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return p99Micros;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Gauge gauge : gauges) {
+            for (Map.Entry<?, ? extends Number> e : gauge.values.get().entrySet()) {
+                String key = gauge.label == null ? gauge.name
+                        : gauge.name + "{" + gauge.label + "=\"" + e.getKey() + "\"}";
+                values.put(key, e.getValue().longValue());
+            }
+        }
+        return values;
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String help;
+        final String label;
+        final Supplier<? extends Map<?, ? extends Number>> values;
+
+        Gauge(String name, String help, String label, Supplier<? extends Map<?, ? extends Number>> values) {
+            this.name = name;
+            this.help = help;
+            this.label = label;
+            this.values = values;
+        }
+    }
+}
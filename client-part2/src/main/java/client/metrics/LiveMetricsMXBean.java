@@ -0,0 +1,30 @@
+package client.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LiveMetrics}, registered as {@value LiveMetrics#OBJECT_NAME}.
+ * Rates and percentiles cover the last completed one-second tick.
+ */
+public interface LiveMetricsMXBean {
+
+    long getSuccessCount();
+
+    long getFailureCount();
+
+    long getRetryCount();
+
+    long getInFlight();
+
+    /** Acknowledged messages per second over the last tick. */
+    long getThroughput();
+
+    /** Median latency in microseconds of the acks in the last tick; 0 without acks. */
+    long getLatencyP50Micros();
+
+    /** 99th percentile latency in microseconds of the acks in the last tick; 0 without acks. */
+    long getLatencyP99Micros();
+
+    /** Current value of every registered gauge, labelled gauges as {@code name{label="value"}}. */
+    Map<String, Long> getGauges();
+}
@@ -1,43 +1,86 @@
 package client.metrics;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Thread-safe counters for load-test run: successful sends, failed sends, and
- * total WebSocket connections created. Updated by SenderWorker and ConnectionPool.
+ * Thread-safe counters for load-test run: successful sends, failed sends,
+ * retries, messages awaiting an ack, total WebSocket connections created and
+ * payload bytes sent. Updated by SenderWorker, ConnectionPool and
+ * ConnectionSession. Counters are striped ({@link LongAdder}), so hundreds of
+ * sender threads do not contend on them; {@link LiveMetrics} reads them during
+ * the run.
  */
 public class Metrics {
-    private final AtomicLong successCount = new AtomicLong(0);
-    private final AtomicLong failureCount = new AtomicLong(0);
-    private final AtomicLong connectionCreatedCount = new AtomicLong(0);
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder connectionCreatedCount = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final CompressionMetrics compression = new CompressionMetrics();
 
     /** Increments the count of successfully sent messages. */
     public void recordSuccess() {
-        successCount.incrementAndGet();
+        successCount.increment();
     }
 
     /** Increments the count of messages that failed after all retries. */
     public void recordFailure() {
-        failureCount.incrementAndGet();
+        failureCount.increment();
+    }
+
+    /** Adds send attempts that repeat an earlier attempt of the same messages. */
+    public void recordRetries(int messages) {
+        retryCount.add(messages);
+    }
+
+    /** Adds (or, with a negative count, removes) messages sent and awaiting an ack. */
+    public void addInFlight(int messages) {
+        inFlight.add(messages);
     }
 
     /** Increments the count of WebSocket connections created (including reconnections). */
     public void recordConnectionCreated() {
-        connectionCreatedCount.incrementAndGet();
+        connectionCreatedCount.increment();
+    }
+
+    /** Adds the payload size of a sent frame (before WebSocket framing). */
+    public void recordBytesSent(long bytes) {
+        bytesSent.add(bytes);
     }
 
     /** Returns the number of successfully sent messages. */
     public long getSuccessCount() {
-        return successCount.get();
+        return successCount.sum();
     }
 
     /** Returns the number of failed messages. */
     public long getFailureCount() {
-        return failureCount.get();
+        return failureCount.sum();
+    }
+
+    /** Returns the number of retried send attempts, counting each message of a batch. */
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    /** Returns the number of messages currently sent and awaiting an ack. */
+    public long getInFlight() {
+        return inFlight.sum();
     }
 
     /** Returns the total number of connections ever created by the pool(s) using this metrics. */
     public long getConnectionCreatedCount() {
-        return connectionCreatedCount.get();
+        return connectionCreatedCount.sum();
+    }
+
+    /** Returns the permessage-deflate counters of the connections reporting here. */
+    public CompressionMetrics getCompression() {
+        return compression;
+    }
+
+    /** Returns the total payload bytes of all frames sent, including retries. */
+    public long getBytesSent() {
+        return bytesSent.sum();
     }
 }
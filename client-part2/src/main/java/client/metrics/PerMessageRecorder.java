@@ -6,74 +6,157 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
-import static client.config.Constants.PER_MESSAGE_CSV;
-import static client.config.Constants.RESULTS_DIR;
-import static client.config.Constants.STATUS_CODE_OK;
-import static client.config.Constants.STATS_TXT;
+import static client.config.Constants.*;
 
 /**
  * Records per-message metrics: sendTimestamp, ackTimestamp, messageType,
- * latency, statusCode, roomId. Writes to CSV and writes statistical analysis
- * to a result file.
+ * latency, statusCode, roomId. Writes to CSV (or the binary
+ * {@link ResultFileFormat} when {@code RESULT_FORMAT} is binary) and writes
+ * statistical analysis to a result file. Rows are kept as primitive columns in
+ * {@link RecordColumns} and streamed to the file by a background
+ * {@link ResultFileWriter} while the run goes on; if the JVM shuts down early,
+ * the rows recorded so far are still written. Latencies go into a
+ * {@link LatencyRecorder} with microsecond resolution, and rooms and types
+ * into counters, so the statistics take fixed memory and never sort the rows.
  */
 public class PerMessageRecorder {
-    private final ConcurrentLinkedQueue<PerMessageRecord> records = new ConcurrentLinkedQueue<>();
+    private final ResultFileWriter writer;
+    private final RecordColumns records;
+    private final Thread shutdownFlush;
+    private Path recordsFile;
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final Map<Integer, LongAdder> successByRoom = new ConcurrentHashMap<>();
+    private final LongAdder[] countByType = new LongAdder[MessageType.values().length];
+
+    /**
+     * Creates results/per_message_metrics.csv, or per_message_metrics.bin for
+     * the binary format (and the results dir if needed), and starts streaming
+     * rows into it.
+     *
+     * @throws UncheckedIOException if the file cannot be created
+     */
+    public PerMessageRecorder() {
+        for (int i = 0; i < countByType.length; i++) {
+            countByType[i] = new LongAdder();
+        }
+        Path dir = Path.of(RESULTS_DIR);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long baseTimeMs = System.currentTimeMillis();
+        long baseNanoTime = System.nanoTime();
+        if (RESULT_FORMAT_BINARY.equals(RESULT_FORMAT)) {
+            this.writer = new BinaryResultWriter(dir.resolve(PER_MESSAGE_BIN), baseTimeMs, baseNanoTime,
+                    runProperties(baseTimeMs, baseNanoTime));
+        } else if (RESULT_FORMAT_CSV.equals(RESULT_FORMAT)) {
+            this.writer = new CsvResultWriter(dir.resolve(PER_MESSAGE_CSV), baseTimeMs);
+        } else {
+            throw new IllegalArgumentException("Unknown result format: " + RESULT_FORMAT);
+        }
+        this.records = new RecordColumns(baseTimeMs, writer);
+        writer.start();
+        this.shutdownFlush = new Thread(this::writeRecords, "result-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownFlush);
+    }
 
     /**
      * @param sendTimestamp ms before send
      * @param ackTimestamp  ms when ack received, or -1 if not received
+     * @param latencyMicros send-to-ack time from System.nanoTime, or -1 if no
+     *                      ack; the CSV keeps ms as ackTimestamp - sendTimestamp
      */
-    public void record(long sendTimestamp, long ackTimestamp, MessageType messageType, long latencyMs,
+    public void record(long sendTimestamp, long ackTimestamp, MessageType messageType, long latencyMicros,
             int statusCode, int roomId) {
-        records.add(new PerMessageRecord(sendTimestamp, ackTimestamp, messageType, latencyMs, statusCode, roomId));
+        long latencyMs = ackTimestamp >= 0 ? ackTimestamp - sendTimestamp : -1;
+        records.add(sendTimestamp, messageType, latencyMs, latencyMicros, statusCode, roomId);
+        latencies.record(latencyMicros);
+        if (statusCode == STATUS_CODE_OK) {
+            successByRoom.computeIfAbsent(roomId, id -> new LongAdder()).increment();
+        }
+        countByType[messageType.ordinal()].increment();
     }
 
-    public List<PerMessageRecord> getRecords() {
-        return new ArrayList<>(records);
+    /** Returns a histogram of the latencies recorded so far, in microseconds. */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencies.snapshot();
     }
 
     /**
-     * Writes all records to results/per_message_metrics.csv. Creates results
-     * dir if needed.
+     * Finishes the per-message result file: hands the last rows to the writer
+     * and waits until everything is on disk. Rows recorded afterwards are not
+     * written. Rows the writer dropped, having fallen too far behind, are
+     * reported on stderr. Safe to call more than once.
+     *
+     * @return the CSV or binary result file
+     * @throws UncheckedIOException if writing the file failed
      */
-    public Path writeToCsv() {
-        Path dir = Path.of(RESULTS_DIR);
-        try {
-            Files.createDirectories(dir);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
-        Path file = dir.resolve(PER_MESSAGE_CSV);
-        List<String> lines = new ArrayList<>();
-        lines.add("sendTimestamp,ackTimestamp,messageType,latency,statusCode,roomId");
-        for (PerMessageRecord r : records) {
-            lines.add(String.format("%d,%d,%s,%d,%d,%d",
-                    r.getSendTimestamp(),
-                    r.getAckTimestamp(),
-                    r.getMessageType(),
-                    r.getLatencyMs(),
-                    r.getStatusCode(),
-                    r.getRoomId()));
+    public synchronized Path writeRecords() {
+        if (recordsFile == null) {
+            records.flush();
+            recordsFile = writer.close();
+            long dropped = writer.getDroppedRows();
+            if (dropped > 0) {
+                System.err.println("Per-message metrics: " + dropped + " rows not written");
+            }
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+            } catch (IllegalStateException ignored) {
+                // already shutting down
+            }
         }
-        try {
-            Files.write(file, lines);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        return recordsFile;
+    }
+
+    /** Run parameters and clock info for the binary file header. */
+    private static Map<String, String> runProperties(long baseTimeMs, long baseNanoTime) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("host", HOST + ":" + PORT);
+        properties.put("rooms", String.valueOf(ROOM_COUNT));
+        properties.put("messages", String.valueOf(MAIN_MESSAGES));
+        properties.put("workers", String.valueOf(NUM_WORKERS));
+        properties.put("workerMode", WORKER_MODE);
+        properties.put("batchSize", String.valueOf(BATCH_SIZE));
+        properties.put("inFlight", String.valueOf(IN_FLIGHT_WINDOW));
+        properties.put("messageIds", String.valueOf(MESSAGE_IDS));
+        properties.put("wireFormat", WIRE_FORMAT);
+        properties.put("compression", String.valueOf(COMPRESSION_ENABLED));
+        properties.put("loadMode", LOAD_MODE);
+        if (LOAD_MODE_OPEN.equals(LOAD_MODE)) {
+            properties.put("rate", String.valueOf(TARGET_RATE));
+            properties.put("profile", LOAD_PROFILE);
         }
-        return file;
+        properties.put("maxRetries", String.valueOf(MAX_RETRIES));
+        properties.put("ackTimeoutMs", String.valueOf(ACK_TIMEOUT_MS));
+        properties.put("clock.wall", "System.currentTimeMillis");
+        properties.put("clock.latency", "System.nanoTime");
+        properties.put("clock.baseTime", Instant.ofEpochMilli(baseTimeMs).toString());
+        properties.put("clock.timezone", TimeZone.getDefault().getID());
+        properties.put("java.version", System.getProperty("java.version"));
+        properties.put("cores", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        return properties;
+    }
+
+    /** Rows recorded but missing from the result file; non-zero means the run's records are incomplete. */
+    public long getDroppedRows() {
+        return writer.getDroppedRows();
     }
 
     /**
      * Computes statistical analysis and writes to results/statistical_analysis.txt:
      * latency (mean, median, 95th, 99th, min, max), throughput per room, and
-     * message type distribution.
+     * message type distribution; see {@link StatsReport}. Ends with the
+     * number of rows missing from the result file.
      *
      * @param totalDurationMs main phase wall time in ms (used for throughput per room)
      * @return path to the written file
@@ -86,73 +169,14 @@ public class PerMessageRecorder {
             throw new UncheckedIOException(e);
         }
         Path file = dir.resolve(STATS_TXT);
-        List<String> lines = new ArrayList<>();
-
-        List<PerMessageRecord> all = getRecords();
-        if (all.isEmpty()) {
-            lines.add("--- Statistical Analysis --- (no records)");
-            try {
-                Files.write(file, lines);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-            return file;
+        Map<Integer, Long> successCountByRoom = new TreeMap<>();
+        successByRoom.forEach((roomId, count) -> successCountByRoom.put(roomId, count.sum()));
+        long[] typeCounts = new long[countByType.length];
+        for (int i = 0; i < typeCounts.length; i++) {
+            typeCounts[i] = countByType[i].sum();
         }
-
-        List<Long> latencies = all.stream()
-                .mapToLong(PerMessageRecord::getLatencyMs)
-                .filter(l -> l >= 0)
-                .boxed()
-                .toList();
-
-        lines.add("");
-        lines.add("--- Statistical Analysis ---");
-
-        if (latencies.isEmpty()) {
-            lines.add("Response time (ms): no successful responses");
-        } else {
-            List<Long> sorted = new ArrayList<>(latencies);
-            Collections.sort(sorted);
-            int n = sorted.size();
-            long sum = sorted.stream().mapToLong(Long::longValue).sum();
-            double mean = (double) sum / n;
-            long median = sorted.get((n - 1) / 2);
-            if (n % 2 == 0)
-                median = (median + sorted.get(n / 2)) / 2;
-            long p95 = sorted.get((int) Math.min(Math.round(0.95 * (n - 1)), n - 1));
-            long p99 = sorted.get((int) Math.min(Math.round(0.99 * (n - 1)), n - 1));
-            long min = sorted.get(0);
-            long max = sorted.get(n - 1);
-
-            lines.add("Response time (ms) - Mean: " + String.format("%.2f", mean)
-                    + ", Median: " + median
-                    + ", 95th percentile: " + p95
-                    + ", 99th percentile: " + p99
-                    + ", Min: " + min
-                    + ", Max: " + max);
-        }
-
-        double durationSec = totalDurationMs / 1000.0;
-        if (durationSec > 0) {
-            Map<Integer, Long> successCountByRoom = all.stream()
-                    .filter(r -> r.getStatusCode() == STATUS_CODE_OK)
-                    .collect(Collectors.groupingBy(PerMessageRecord::getRoomId, Collectors.counting()));
-            lines.add("Throughput per room (msg/s):");
-            successCountByRoom.entrySet().stream()
-                    .sorted(Map.Entry.comparingByKey())
-                    .forEach(e -> lines.add("  room " + e.getKey() + ": "
-                            + String.format("%.2f", e.getValue() / durationSec)));
-        }
-
-        Map<MessageType, Long> countByType = all.stream()
-                .collect(Collectors.groupingBy(r -> r.getMessageType(), Collectors.counting()));
-        long total = all.size();
-        lines.add("Message type distribution:");
-        countByType.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(e -> lines.add("  " + e.getKey() + ": " + e.getValue()
-                        + " (" + String.format("%.1f", 100.0 * e.getValue() / total) + "%)"));
-
+        List<String> lines = StatsReport.lines(latencies.snapshot(), successCountByRoom, typeCounts, totalDurationMs);
+        lines.add("Per-message rows not written: " + getDroppedRows());
         try {
             Files.write(file, lines);
         } catch (IOException e) {
@@ -0,0 +1,53 @@
+package client.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Client-side thread count and CPU use over one phase, so a run can show that
+ * the client was not the bottleneck. Thread counts cover platform (OS) threads
+ * only; virtual threads are not counted by the JVM.
+ * Call {@link #start()} when the phase begins and {@link #summary(long)} when
+ * it ends.
+ */
+public final class ProcessStats {
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final int cores = Runtime.getRuntime().availableProcessors();
+    private long startCpuNanos;
+
+    /** Resets the peak thread count and records the process CPU time so far. */
+    public void start() {
+        threads.resetPeakThreadCount();
+        startCpuNanos = processCpuNanos();
+    }
+
+    /**
+     * Returns live and peak thread counts and the average CPU use since
+     * {@link #start()}, as a share of all cores.
+     *
+     * @param durationMs wall time of the phase
+     */
+    public String summary(long durationMs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("threads live=").append(threads.getThreadCount())
+                .append(", peak=").append(threads.getPeakThreadCount());
+        long cpuNanos = processCpuNanos();
+        if (cpuNanos < 0 || startCpuNanos < 0) {
+            return sb.append(", CPU unavailable").toString();
+        }
+        long usedMs = (cpuNanos - startCpuNanos) / 1_000_000;
+        long percent = durationMs > 0 ? usedMs * 100 / (durationMs * cores) : 0;
+        return sb.append(", CPU time ").append(usedMs).append(" ms (avg ").append(percent)
+                .append("% of ").append(cores).append(" cores)").toString();
+    }
+
+    /** Returns the CPU time of this JVM in nanoseconds, or -1 if the platform does not report it. */
+    private long processCpuNanos() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+}
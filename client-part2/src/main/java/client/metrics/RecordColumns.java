@@ -0,0 +1,118 @@
+package client.metrics;
+
+import model.MessageType;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-message records kept as primitive columns in fixed-size chunks, about
+ * 19 bytes a row instead of one object per message: send time as an int ms
+ * offset from the store's base time, latency as int ms (the ack time is send
+ * time plus latency) and as int µs, type ordinal as a byte, status code as a
+ * short and room id as an int. Recording writes into the current chunk of the calling
+ * thread's stripe. A full chunk is handed to the {@link ChunkSink}, which
+ * returns an empty one, so chunks rotate between recording and writing; the
+ * sink allocates a bounded number of them, so memory stays bounded. Stripes are picked by thread id, so memory does not
+ * grow with the number of (virtual) threads.
+ */
+final class RecordColumns {
+    /** Rows per chunk. */
+    static final int CHUNK_ROWS = 8192;
+    private static final int MAX_STRIPES = 64;
+
+    /** Takes full chunks from recording threads. */
+    interface ChunkSink {
+        /**
+         * Takes ownership of a chunk of rows and returns an empty chunk for
+         * recording to continue in, which may be the same chunk if its rows
+         * were dropped. Called with a stripe lock held, after the ack was
+         * timed; may wait for the writer to free a chunk.
+         */
+        Chunk exchange(Chunk full);
+    }
+
+    private final long baseTimeMs;
+    private final ChunkSink sink;
+    private final Stripe[] stripes;
+    private final int mask;
+
+    /**
+     * @param baseTimeMs send timestamps are stored as int offsets from this time,
+     *                   so they must lie within about 24 days of it
+     * @param sink       receives every chunk once it is full or flushed
+     */
+    RecordColumns(long baseTimeMs, ChunkSink sink) {
+        this.baseTimeMs = baseTimeMs;
+        this.sink = sink;
+        int wanted = Math.min(MAX_STRIPES, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+        int count = Integer.highestOneBit(wanted - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = count - 1;
+    }
+
+    long getBaseTimeMs() {
+        return baseTimeMs;
+    }
+
+    /**
+     * Appends one row.
+     *
+     * @param latencyMs     -1 if no ack was received
+     * @param latencyMicros -1 if no ack was received
+     */
+    void add(long sendTimestamp, MessageType messageType, long latencyMs, long latencyMicros, int statusCode,
+            int roomId) {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        Stripe stripe = stripes[(int) (h ^ (h >>> 32)) & mask];
+        stripe.lock.lock();
+        try {
+            Chunk chunk = stripe.current;
+            int row = chunk.size;
+            chunk.sendOffsetMs[row] = (int) (sendTimestamp - baseTimeMs);
+            chunk.latencyMs[row] = (int) Math.min(latencyMs, Integer.MAX_VALUE);
+            chunk.latencyMicros[row] = (int) Math.min(latencyMicros, Integer.MAX_VALUE);
+            chunk.type[row] = (byte) messageType.ordinal();
+            chunk.statusCode[row] = (short) statusCode;
+            chunk.roomId[row] = roomId;
+            chunk.size = row + 1;
+            if (chunk.size == CHUNK_ROWS) {
+                stripe.current = sink.exchange(chunk);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /** Hands every partly filled chunk to the sink. */
+    void flush() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                if (stripe.current.size > 0) {
+                    stripe.current = sink.exchange(stripe.current);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /** One chunk of rows; the sink reads {@code size} rows and resets size to 0 before returning it. */
+    static final class Chunk {
+        final int[] sendOffsetMs = new int[CHUNK_ROWS];
+        final int[] latencyMs = new int[CHUNK_ROWS];
+        final int[] latencyMicros = new int[CHUNK_ROWS];
+        final byte[] type = new byte[CHUNK_ROWS];
+        final short[] statusCode = new short[CHUNK_ROWS];
+        final int[] roomId = new int[CHUNK_ROWS];
+        int size;
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        Chunk current = new Chunk();
+    }
+}
@@ -0,0 +1,75 @@
+package client.metrics;
+
+import model.MessageType;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Converts a binary {@link ResultFileFormat} file to the per-message CSV, so
+ * tools that read results/per_message_metrics.csv keep working. Rows keep the
+ * order of the binary file.
+ */
+public final class ResultFileConverter {
+    /** Records per mapping, kept well below the 2 GB limit of one MappedByteBuffer. */
+    private static final long RECORDS_PER_MAP = (1L << 30) / ResultFileFormat.RECORD_BYTES;
+    private static final int TYPE_COUNT = MessageType.values().length;
+
+    private ResultFileConverter() {
+    }
+
+    /**
+     * @return number of rows written
+     * @throws IOException if either file cannot be read or written, or the
+     *                     binary file is not a result file
+     */
+    public static long toCsv(Path binaryFile, Path csvFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.READ)) {
+            ResultFileFormat.Header header = ResultFileFormat.readHeader(channel);
+            CsvResultWriter writer = new CsvResultWriter(csvFile, header.getBaseTimeMs());
+            try {
+                long total = header.getRecordCount();
+                copyRows(channel, header, writer);
+                return total;
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private static void copyRows(FileChannel channel, ResultFileFormat.Header header, CsvResultWriter writer)
+            throws IOException {
+        RecordColumns.Chunk chunk = new RecordColumns.Chunk();
+        long total = header.getRecordCount();
+        for (long first = 0; first < total; first += RECORDS_PER_MAP) {
+            long count = Math.min(RECORDS_PER_MAP, total - first);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+                    header.getHeaderBytes() + first * ResultFileFormat.RECORD_BYTES,
+                    count * ResultFileFormat.RECORD_BYTES);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            for (int offset = 0; offset < map.limit(); offset += ResultFileFormat.RECORD_BYTES) {
+                int row = chunk.size;
+                chunk.sendOffsetMs[row] = map.getInt(offset + ResultFileFormat.SEND_OFFSET_MS);
+                chunk.latencyMs[row] = map.getInt(offset + ResultFileFormat.LATENCY_MS);
+                chunk.roomId[row] = map.getInt(offset + ResultFileFormat.ROOM_ID);
+                chunk.statusCode[row] = map.getShort(offset + ResultFileFormat.STATUS_CODE);
+                int type = map.get(offset + ResultFileFormat.MESSAGE_TYPE);
+                if (type < 0 || type >= TYPE_COUNT) {
+                    throw new IOException("Bad message type " + type + " in record " + (first + offset
+                            / ResultFileFormat.RECORD_BYTES));
+                }
+                chunk.type[row] = (byte) type;
+                chunk.size = row + 1;
+                if (chunk.size == RecordColumns.CHUNK_ROWS) {
+                    writer.writeRows(chunk);
+                    chunk.size = 0;
+                }
+            }
+        }
+        writer.writeRows(chunk);
+    }
+}
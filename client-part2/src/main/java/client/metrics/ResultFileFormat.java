@@ -0,0 +1,161 @@
+package client.metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Layout of the binary per-message result file. All numbers are little-endian.
+ *
+ * <pre>
+ * header:
+ *   0  4  magic "CRES"
+ *   4  u16 schema version ({@link #VERSION})
+ *   6  u16 record length in bytes ({@link #RECORD_BYTES})
+ *   8  i32 header length in bytes; records start here
+ *  12  i64 base time: System.currentTimeMillis when recording started
+ *  20  i64 System.nanoTime at the same moment
+ *  28  i32 length of the properties block
+ *  32  properties: UTF-8 "key=value" lines (run parameters and clock info)
+ * record (fixed width):
+ *   0  i32 send time, ms after the base time
+ *   4  i32 latency ms, ack time minus send time; -1 if no ack
+ *   8  i32 latency µs, from System.nanoTime; -1 if no ack
+ *  12  i32 room id
+ *  16  u16 status code
+ *  18  u8  message type ordinal (TEXT, JOIN, LEAVE)
+ *  19  u8  reserved, 0
+ * </pre>
+ *
+ * The record count is (file length - header length) / record length, so the
+ * file can be written as a stream and read even if the run was cut short.
+ */
+public final class ResultFileFormat {
+    public static final byte[] MAGIC = { 'C', 'R', 'E', 'S' };
+    public static final int VERSION = 1;
+    public static final int RECORD_BYTES = 20;
+    public static final int FIXED_HEADER_BYTES = 32;
+
+    public static final int SEND_OFFSET_MS = 0;
+    public static final int LATENCY_MS = 4;
+    public static final int LATENCY_MICROS = 8;
+    public static final int ROOM_ID = 12;
+    public static final int STATUS_CODE = 16;
+    public static final int MESSAGE_TYPE = 18;
+
+    private ResultFileFormat() {
+    }
+
+    /** Encodes the header. */
+    public static byte[] header(long baseTimeMs, long baseNanoTime, Map<String, String> properties) {
+        StringBuilder sb = new StringBuilder();
+        properties.forEach((key, value) -> sb.append(key).append('=').append(value).append('\n'));
+        byte[] props = sb.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES + props.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putShort((short) VERSION);
+        header.putShort((short) RECORD_BYTES);
+        header.putInt(FIXED_HEADER_BYTES + props.length);
+        header.putLong(baseTimeMs);
+        header.putLong(baseNanoTime);
+        header.putInt(props.length);
+        header.put(props);
+        return header.array();
+    }
+
+    /**
+     * Reads and checks the header of a result file.
+     *
+     * @throws IOException if the file is not a result file of a known version
+     */
+    public static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, fixed, 0);
+        byte[] magic = new byte[MAGIC.length];
+        fixed.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a result file (bad magic)");
+        }
+        int version = Short.toUnsignedInt(fixed.getShort());
+        int recordBytes = Short.toUnsignedInt(fixed.getShort());
+        if (version != VERSION || recordBytes != RECORD_BYTES) {
+            throw new IOException("Unsupported result file version " + version + " (record " + recordBytes + " B)");
+        }
+        int headerBytes = fixed.getInt();
+        long baseTimeMs = fixed.getLong();
+        long baseNanoTime = fixed.getLong();
+        int propsLength = fixed.getInt();
+        ByteBuffer props = ByteBuffer.allocate(propsLength);
+        readFully(channel, props, FIXED_HEADER_BYTES);
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String line : new String(props.array(), StandardCharsets.UTF_8).split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                properties.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+        }
+        long recordCount = (channel.size() - headerBytes) / RECORD_BYTES;
+        return new Header(version, headerBytes, baseTimeMs, baseNanoTime, properties, recordCount);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Result file header is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    /** Decoded header of a result file. */
+    public static final class Header {
+        private final int version;
+        private final int headerBytes;
+        private final long baseTimeMs;
+        private final long baseNanoTime;
+        private final Map<String, String> properties;
+        private final long recordCount;
+
+        Header(int version, int headerBytes, long baseTimeMs, long baseNanoTime, Map<String, String> properties,
+                long recordCount) {
+            this.version = version;
+            this.headerBytes = headerBytes;
+            this.baseTimeMs = baseTimeMs;
+            this.baseNanoTime = baseNanoTime;
+            this.properties = properties;
+            this.recordCount = recordCount;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        /** Offset of the first record. */
+        public int getHeaderBytes() {
+            return headerBytes;
+        }
+
+        public long getBaseTimeMs() {
+            return baseTimeMs;
+        }
+
+        public long getBaseNanoTime() {
+            return baseNanoTime;
+        }
+
+        /** Run parameters and clock info, in file order. */
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        /** Number of complete records in the file. */
+        public long getRecordCount() {
+            return recordCount;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package client.metrics;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background writer of a per-message result file. Takes full chunks from
+ * {@link RecordColumns} on a writer thread, lets the subclass encode their
+ * rows into one reusable byte buffer, and writes the buffer out whenever it
+ * fills. Written chunks are emptied and handed back to recording. Besides the
+ * chunks recording starts with, at most {@link #MAX_CHUNKS} are allocated; if
+ * the writer falls that far behind, the recording thread waits for a written
+ * chunk, which is after its ack was timed. Rows handed over after close, or
+ * while the writer thread is gone, are dropped and counted. A writer that is never started can be fed
+ * directly through {@link #writeRows} on one thread and finished with
+ * {@link #close}.
+ */
+abstract class ResultFileWriter implements RecordColumns.ChunkSink {
+    private static final int BUFFER_BYTES = 1 << 20;
+    /** Chunks allocated for exchange, about 10 MB of rows. */
+    static final int MAX_CHUNKS = 64;
+    private static final RecordColumns.Chunk END = new RecordColumns.Chunk();
+
+    /** Encoding buffer; subclasses write at {@link #position} after {@link #reserve}. */
+    final byte[] buffer = new byte[BUFFER_BYTES];
+    int position;
+
+    private final Path file;
+    private final OutputStream out;
+    private final BlockingQueue<RecordColumns.Chunk> pending = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    // guards free, allocated and closed, so no chunk is queued behind END; notified when a chunk frees up
+    private final Object handoff = new Object();
+    private final ArrayDeque<RecordColumns.Chunk> free = new ArrayDeque<>();
+    private final LongAdder droppedRows = new LongAdder();
+    private int allocated;
+    private volatile boolean started;
+    private boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * Creates the file. The subclass puts its header into the buffer; the
+     * owner then calls {@link #start}.
+     *
+     * @throws UncheckedIOException if the file cannot be created
+     */
+    ResultFileWriter(Path file, String threadName) {
+        this.file = file;
+        try {
+            this.out = new FileOutputStream(file.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+    }
+
+    /** Starts the writer thread. */
+    void start() {
+        started = true;
+        thread.start();
+    }
+
+    /** Encodes the rows of one chunk; called on the writer thread, or by the owner of an unstarted writer. */
+    abstract void writeRows(RecordColumns.Chunk chunk) throws IOException;
+
+    @Override
+    public RecordColumns.Chunk exchange(RecordColumns.Chunk full) {
+        synchronized (handoff) {
+            while (!closed) {
+                RecordColumns.Chunk empty = free.poll();
+                if (empty == null && allocated < MAX_CHUNKS) {
+                    allocated++;
+                    empty = new RecordColumns.Chunk();
+                }
+                if (empty != null) {
+                    pending.offer(full);
+                    return empty;
+                }
+                // the writer is MAX_CHUNKS behind: wait for it to write one
+                try {
+                    handoff.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        // closed, writer gone, or interrupted while waiting: drop the rows and reuse the chunk
+        droppedRows.add(full.size);
+        full.size = 0;
+        return full;
+    }
+
+    /** Rows handed over that were not written: after close, after the writer thread ended, or on interrupt. */
+    long getDroppedRows() {
+        return droppedRows.sum();
+    }
+
+    /**
+     * Writes every chunk handed over so far, then closes the file. Chunks
+     * handed over afterwards are dropped and counted.
+     *
+     * @return the written file
+     * @throws UncheckedIOException if writing failed
+     */
+    Path close() {
+        synchronized (handoff) {
+            closed = true;
+            pending.offer(END);
+            handoff.notifyAll();
+        }
+        if (started) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            run();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        return file;
+    }
+
+    /** Makes room for the given number of bytes at {@link #position}, writing the buffer out if needed. */
+    final void reserve(int bytes) throws IOException {
+        if (position + bytes > BUFFER_BYTES) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    final void put(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void run() {
+        try {
+            for (;;) {
+                RecordColumns.Chunk chunk = pending.take();
+                if (chunk == END) {
+                    break;
+                }
+                if (failure == null) {
+                    try {
+                        writeRows(chunk);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                chunk.size = 0;
+                synchronized (handoff) {
+                    free.add(chunk);
+                    handoff.notifyAll();
+                }
+            }
+            if (failure == null) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            // recording must not wait on a writer that is no longer running
+            synchronized (handoff) {
+                closed = true;
+                handoff.notifyAll();
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package client.metrics;
+
+import model.MessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Text of the statistical analysis: response time from a latency histogram
+ * (exact below 2 ms and within 0.1% above), throughput per room, and message
+ * type distribution. Shared by {@link PerMessageRecorder#writeStats} and the
+ * offline result file analyzer.
+ */
+public final class StatsReport {
+
+    private StatsReport() {
+    }
+
+    /**
+     * @param histogram          latencies of acked messages, in µs
+     * @param successCountByRoom OK acks per room id, iterated in key order
+     * @param countByType        messages per {@link MessageType} ordinal
+     * @param totalDurationMs    wall time the messages were sent over (used for
+     *                           throughput per room)
+     */
+    public static List<String> lines(LatencyHistogram histogram, Map<Integer, Long> successCountByRoom,
+            long[] countByType, long totalDurationMs) {
+        List<String> lines = new ArrayList<>();
+        long total = 0;
+        for (long count : countByType) {
+            total += count;
+        }
+        if (total == 0) {
+            lines.add("--- Statistical Analysis --- (no records)");
+            return lines;
+        }
+
+        lines.add("");
+        lines.add("--- Statistical Analysis ---");
+
+        if (histogram.getTotalCount() == 0) {
+            lines.add("Response time (ms): no successful responses");
+        } else {
+            lines.add("Response time (ms) - Mean: " + String.format("%.2f", histogram.getMean() / 1000)
+                    + ", Median: " + histogram.valueAtPercentile(50) / 1000
+                    + ", 95th percentile: " + histogram.valueAtPercentile(95) / 1000
+                    + ", 99th percentile: " + histogram.valueAtPercentile(99) / 1000
+                    + ", Min: " + histogram.getMin() / 1000
+                    + ", Max: " + histogram.getMax() / 1000);
+            lines.add("Response time (us) - p50: " + histogram.valueAtPercentile(50)
+                    + ", p90: " + histogram.valueAtPercentile(90)
+                    + ", p99: " + histogram.valueAtPercentile(99)
+                    + ", p99.9: " + histogram.valueAtPercentile(99.9)
+                    + ", p99.99: " + histogram.valueAtPercentile(99.99)
+                    + ", Max: " + histogram.getMax());
+        }
+
+        double durationSec = totalDurationMs / 1000.0;
+        if (durationSec > 0) {
+            lines.add("Throughput per room (msg/s):");
+            successCountByRoom.forEach((roomId, count) -> lines.add("  room " + roomId + ": "
+                    + String.format("%.2f", count / durationSec)));
+        }
+
+        lines.add("Message type distribution:");
+        for (MessageType type : MessageType.values()) {
+            long count = countByType[type.ordinal()];
+            if (count > 0) {
+                lines.add("  " + type + ": " + count
+                        + " (" + String.format("%.1f", 100.0 * count / total) + "%)");
+            }
+        }
+        return lines;
+    }
+}
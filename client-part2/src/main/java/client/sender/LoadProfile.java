@@ -0,0 +1,83 @@
+package client.sender;
+
+/**
+ * Target send rate over time for open-loop runs.
+ * <ul>
+ * <li>{@code constant}: the target rate throughout.</li>
+ * <li>{@code ramp}: linear from 0 to the target rate over {@code seconds},
+ * then the target rate.</li>
+ * <li>{@code step}: {@code steps} equal steps up to the target rate, each
+ * {@code seconds} long, then the target rate.</li>
+ * <li>{@code spike}: the target rate, times {@code spikeFactor} for
+ * {@code seconds} starting at {@code spikeAt}.</li>
+ * </ul>
+ */
+public final class LoadProfile {
+    /** Floor so a ramp starting at 0 still schedules its first message. */
+    private static final double MIN_RATE = 1.0;
+
+    private final String name;
+    private final double rate;
+    private final double seconds;
+    private final int steps;
+    private final double spikeAt;
+    private final double spikeFactor;
+
+    /**
+     * @throws IllegalArgumentException if the name is unknown or a parameter is
+     *                                  not positive
+     */
+    public LoadProfile(String name, double rate, double seconds, int steps, double spikeAt, double spikeFactor) {
+        if (!"constant".equals(name) && !"ramp".equals(name) && !"step".equals(name) && !"spike".equals(name)) {
+            throw new IllegalArgumentException("Unknown load profile: " + name);
+        }
+        if (rate <= 0 || seconds <= 0 || steps <= 0 || spikeFactor <= 0) {
+            throw new IllegalArgumentException("Load profile parameters must be positive");
+        }
+        this.name = name;
+        this.rate = rate;
+        this.seconds = seconds;
+        this.steps = steps;
+        this.spikeAt = spikeAt;
+        this.spikeFactor = spikeFactor;
+    }
+
+    /** Returns the target rate in msg/s at the given time since the start of the run. */
+    public double rateAt(double elapsedSeconds) {
+        double r;
+        switch (name) {
+            case "ramp":
+                r = elapsedSeconds >= seconds ? rate : rate * elapsedSeconds / seconds;
+                break;
+            case "step":
+                int step = (int) (elapsedSeconds / seconds) + 1;
+                r = rate * Math.min(step, steps) / steps;
+                break;
+            case "spike":
+                boolean inSpike = elapsedSeconds >= spikeAt && elapsedSeconds < spikeAt + seconds;
+                r = inSpike ? rate * spikeFactor : rate;
+                break;
+            default:
+                r = rate;
+        }
+        return Math.max(r, MIN_RATE);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        switch (name) {
+            case "ramp":
+                return "ramp to " + rate + " msg/s over " + seconds + " s";
+            case "step":
+                return steps + " steps to " + rate + " msg/s, " + seconds + " s each";
+            case "spike":
+                return rate + " msg/s, x" + spikeFactor + " for " + seconds + " s at " + spikeAt + " s";
+            default:
+                return rate + " msg/s";
+        }
+    }
+}
@@ -38,6 +38,9 @@ public class MessageGenerator implements Runnable {
     private final int totalCount;
     private final BlockingQueue<ChatMessage> messageQueue;
     private final Random random;
+    // distinguishes this run's messageIds from those of earlier runs still cached by the server
+    private final String runPrefix = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX) + "-";
+    private long sequence;
 
     /**
      * @param totalCount   total messages to generate and put into the queue
@@ -55,7 +58,11 @@ public class MessageGenerator implements Runnable {
         String message = MESSAGES[random.nextInt(MESSAGES.length)];
         int roomId = random.nextInt(ROOM_COUNT) + ROOM_ID_FIRST;
         Instant timestamp = Instant.now();
-        return new ChatMessage(userId, username, message, timestamp, messageType, roomId);
+        ChatMessage chatMessage = new ChatMessage(userId, username, message, timestamp, messageType, roomId);
+        if (MESSAGE_IDS) {
+            chatMessage.setMessageId(runPrefix + Long.toString(sequence++, Character.MAX_RADIX));
+        }
+        return chatMessage;
     }
 
     @Override
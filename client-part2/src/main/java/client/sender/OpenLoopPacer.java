@@ -0,0 +1,115 @@
+package client.sender;
+
+import static client.config.Constants.OPEN_LOOP_REPORT_SECONDS;
+
+import client.metrics.Metrics;
+import model.ChatMessage;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop release of messages: takes generated messages from the source
+ * queue and puts each on the dispatch queue at its scheduled time, following a
+ * {@link LoadProfile}, however far behind the workers are. Each message is
+ * stamped with its scheduled time, and SenderWorker measures latency from
+ * there, so time spent waiting for a free worker counts against the server
+ * instead of being left out (coordinated omission).
+ * Messages waiting on the dispatch queue are the backlog. A falling-behind
+ * pacer does not skip messages; it releases them back to back until it is on
+ * schedule again.
+ */
+public class OpenLoopPacer implements Runnable {
+    private final BlockingQueue<ChatMessage> source;
+    private final BlockingQueue<ChatMessage> dispatch;
+    private final int totalCount;
+    private final LoadProfile profile;
+    private final Metrics metrics;
+
+    private volatile long released;
+    private volatile long maxBacklog;
+    private volatile long maxLagMs;
+    private volatile long scheduledSpanMs;
+
+    /**
+     * @param source     generated messages, in send order
+     * @param dispatch   queue the sender workers take from
+     * @param totalCount messages to release before returning
+     * @param profile    target rate over time
+     * @param metrics    success/failure counts, used for the progress lines
+     */
+    public OpenLoopPacer(BlockingQueue<ChatMessage> source, BlockingQueue<ChatMessage> dispatch, int totalCount,
+            LoadProfile profile, Metrics metrics) {
+        this.source = source;
+        this.dispatch = dispatch;
+        this.totalCount = totalCount;
+        this.profile = profile;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void run() {
+        long startNanos = System.nanoTime();
+        long startWallMs = System.currentTimeMillis();
+        long reportIntervalNanos = TimeUnit.SECONDS.toNanos(OPEN_LOOP_REPORT_SECONDS);
+        long nextReportNanos = startNanos + reportIntervalNanos;
+        long lastReportNanos = startNanos;
+        long lastReportReleased = 0;
+        long lastReportDone = 0;
+        double offsetNanos = 0;
+        try {
+            for (int i = 0; i < totalCount; i++) {
+                ChatMessage msg = source.take();
+                long due = startNanos + (long) offsetNanos;
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - now);
+                }
+                msg.setScheduledAtMs(startWallMs + (long) (offsetNanos / 1_000_000));
+                msg.setScheduledAtNanos(due);
+                dispatch.offer(msg);
+                released = i + 1;
+                long backlog = dispatch.size();
+                if (backlog > maxBacklog) {
+                    maxBacklog = backlog;
+                }
+                long lagMs = (now - due) / 1_000_000;
+                if (lagMs > maxLagMs) {
+                    maxLagMs = lagMs;
+                }
+                if (now >= nextReportNanos) {
+                    long done = metrics.getSuccessCount() + metrics.getFailureCount();
+                    double intervalSec = (now - lastReportNanos) / 1e9;
+                    System.out.println(String.format(
+                            "Open loop: %ds, target %.0f msg/s, released %.0f msg/s, completed %.0f msg/s, backlog %d",
+                            (now - startNanos) / 1_000_000_000L, profile.rateAt((now - startNanos) / 1e9),
+                            (released - lastReportReleased) / intervalSec, (done - lastReportDone) / intervalSec,
+                            backlog));
+                    lastReportNanos = now;
+                    lastReportReleased = released;
+                    lastReportDone = done;
+                    nextReportNanos = now + reportIntervalNanos;
+                }
+                scheduledSpanMs = (long) (offsetNanos / 1_000_000);
+                offsetNanos += 1e9 / profile.rateAt(offsetNanos / 1e9);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns target vs achieved rate and the worst backlog and pacer lag.
+     *
+     * @param durationMs wall time of the phase, including draining the backlog
+     */
+    public String summary(long durationMs) {
+        long success = metrics.getSuccessCount();
+        double targetRate = scheduledSpanMs > 0 ? released * 1000.0 / scheduledSpanMs : 0;
+        double achievedRate = durationMs > 0 ? success * 1000.0 / durationMs : 0;
+        return String.format("profile %s (%s), target %.0f msg/s over %d ms, achieved %.0f msg/s over %d ms,"
+                + " max backlog %d, max pacer lag %d ms", profile.getName(), profile, targetRate, scheduledSpanMs,
+                achievedRate, durationMs, maxBacklog, maxLagMs);
+    }
+}
@@ -9,7 +9,14 @@ import model.ChatMessage;
 import model.MessageType;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static client.config.Constants.*;
 
@@ -19,6 +26,15 @@ import static client.config.Constants.*;
  * returns the session, and records success/failure. Uses exponential backoff on
  * retry.
  * Stops when it receives POISON or after maxMessagesToSend.
+ * With a batch size above 1, messages are collected per room and each full
+ * batch goes out as one frame; partial batches are sent when the worker stops.
+ * With per-message metrics and an in-flight window above 1, messages that
+ * carry a messageId are pipelined: up to IN_FLIGHT_WINDOW of them await their
+ * acks at once, and each is recorded with the latency of its own ack.
+ * Every attempt is sent with its attempt number in the correlation id, so a
+ * late ack of an earlier attempt is never credited to a retry.
+ * Messages released by {@link OpenLoopPacer} carry a scheduled send time,
+ * from which their latency is measured instead.
  */
 public class SenderWorker implements Runnable {
 
@@ -36,6 +52,8 @@ public class SenderWorker implements Runnable {
     private final int maxRetries;
     private final long baseBackoffMs;
     private final int maxMessagesToSend;
+    private final int batchSize;
+    private final ArrayDeque<InFlight> inFlight = new ArrayDeque<>();
 
     /**
      * @param messageQueue       queue to take messages from (and to offer POISON
@@ -52,6 +70,18 @@ public class SenderWorker implements Runnable {
      */
     public SenderWorker(BlockingQueue<ChatMessage> messageQueue, ConnectionPool pool, Metrics metrics,
             PerMessageRecorder perMessageRecorder, int maxRetries, long baseBackoffMs, int maxMessagesToSend) {
+        this(messageQueue, pool, metrics, perMessageRecorder, maxRetries, baseBackoffMs, maxMessagesToSend, 1);
+    }
+
+    /**
+     * Same as above, sending up to batchSize messages of one room per frame.
+     *
+     * @param batchSize messages per batch frame; 1 sends one frame per message
+     */
+    public SenderWorker(BlockingQueue<ChatMessage> messageQueue, ConnectionPool pool, Metrics metrics,
+            PerMessageRecorder perMessageRecorder, int maxRetries, long baseBackoffMs, int maxMessagesToSend,
+            int batchSize) {
+        this.batchSize = batchSize;
         this.messageQueue = messageQueue;
         this.pool = pool;
         this.metrics = metrics;
@@ -67,6 +97,7 @@ public class SenderWorker implements Runnable {
      */
     @Override
     public void run() {
+        Map<Integer, List<ChatMessage>> pendingByRoom = new HashMap<>();
         try {
             int sent = 0;
             while (maxMessagesToSend <= 0 || sent < maxMessagesToSend) {
@@ -75,9 +106,29 @@ public class SenderWorker implements Runnable {
                     messageQueue.offer(POISON);
                     break;
                 }
-                processOne(msg);
+                if (batchSize <= 1 && pipelined(msg)) {
+                    processPipelined(msg);
+                } else if (batchSize <= 1) {
+                    processOne(msg);
+                } else {
+                    List<ChatMessage> pending = pendingByRoom.computeIfAbsent(msg.getRoomId(),
+                            id -> new ArrayList<>(batchSize));
+                    pending.add(msg);
+                    if (pending.size() >= batchSize) {
+                        processBatch(pending);
+                        pending.clear();
+                    }
+                }
                 sent++;
             }
+            while (!inFlight.isEmpty()) {
+                awaitAck(inFlight.poll());
+            }
+            for (List<ChatMessage> pending : pendingByRoom.values()) {
+                if (!pending.isEmpty()) {
+                    processBatch(pending);
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -89,22 +140,22 @@ public class SenderWorker implements Runnable {
         long lastSendTimeMs = System.currentTimeMillis();
         String lastStatus = "TIMEOUT";
         for (int attempt = 0; attempt < maxRetries; attempt++) {
+            if (attempt > 0)
+                metrics.recordRetries(1);
             try {
                 if (session == null || !session.isOpen())
                     session = pool.borrow(roomId);
+                msg.setAttempt(attempt);
                 if (perMessageRecorder != null) {
                     SendResult result = session.sendSync(msg);
                     lastSendTimeMs = result.getSendTimeMs();
                     lastStatus = result.getStatus();
                     pool.returnSession(session);
                     if (result.isSuccess()) {
-                        long latencyMs = result.getAckTimeMs() - result.getSendTimeMs();
-                        perMessageRecorder.record(result.getSendTimeMs(), result.getAckTimeMs(), msg.getMessageType(),
-                                latencyMs, STATUS_CODE_OK, roomId);
-                        metrics.recordSuccess();
+                        recordAck(msg, result);
                         return;
                     }
-                    // TIMEOUT or ERROR: retry
+                    // TIMEOUT, ERROR or RATE_LIMITED: retry
                 } else {
                     session.send(msg);
                     pool.returnSession(session);
@@ -138,11 +189,211 @@ public class SenderWorker implements Runnable {
             }
         }
         if (perMessageRecorder != null) {
-            perMessageRecorder.record(lastSendTimeMs, -1, msg.getMessageType(), -1, statusToCode(lastStatus), roomId);
+            perMessageRecorder.record(startOf(msg, lastSendTimeMs), -1, msg.getMessageType(), -1,
+                    statusToCode(lastStatus), roomId);
+        }
+        metrics.recordFailure();
+    }
+
+    private boolean pipelined(ChatMessage msg) {
+        return perMessageRecorder != null && IN_FLIGHT_WINDOW > 1 && msg.getMessageId() != null;
+    }
+
+    /**
+     * Sends the message without waiting for its ack, then waits for the oldest
+     * acks until fewer than IN_FLIGHT_WINDOW messages are in flight.
+     */
+    private void processPipelined(ChatMessage msg) {
+        sendAsync(new InFlight(msg));
+        while (inFlight.size() >= IN_FLIGHT_WINDOW) {
+            awaitAck(inFlight.poll());
+        }
+    }
+
+    /**
+     * Sends the message on a borrowed session and queues its ack future. The
+     * session goes back to the pool right away, so other workers can use the
+     * rest of its window. Send failures are retried with backoff here.
+     */
+    private void sendAsync(InFlight entry) {
+        int roomId = entry.msg.getRoomId();
+        for (; entry.attempt < maxRetries; entry.attempt++) {
+            if (entry.attempt > 0)
+                metrics.recordRetries(1);
+            ConnectionSession session = null;
+            try {
+                session = pool.borrow(roomId);
+                entry.msg.setAttempt(entry.attempt);
+                entry.future = session.sendAsync(entry.msg);
+                pool.returnSession(session);
+                inFlight.add(entry);
+                return;
+            } catch (Exception e) {
+                entry.lastSendTimeMs = System.currentTimeMillis();
+                entry.lastStatus = "TIMEOUT";
+                if (session != null) {
+                    try {
+                        pool.returnSession(session);
+                    } catch (Exception ignored) {
+                    }
+                }
+                if (entry.attempt < maxRetries - 1 && !backoff(entry.attempt)) {
+                    break;
+                }
+            }
+        }
+        recordFailure(entry);
+    }
+
+    /**
+     * Waits for the ack of one in-flight message and records it; a message not
+     * acknowledged OK is sent again after backoff, up to maxRetries attempts.
+     */
+    private void awaitAck(InFlight entry) {
+        SendResult result;
+        try {
+            result = entry.future.get();
+        } catch (ExecutionException e) {
+            result = new SendResult(System.currentTimeMillis(), -1, "TIMEOUT");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = new SendResult(System.currentTimeMillis(), -1, "TIMEOUT");
+        }
+        if (result.isSuccess()) {
+            recordAck(entry.msg, result);
+            return;
+        }
+        // TIMEOUT, ERROR or RATE_LIMITED: retry
+        entry.lastSendTimeMs = result.getSendTimeMs();
+        entry.lastStatus = result.getStatus();
+        if (entry.attempt < maxRetries - 1 && !Thread.currentThread().isInterrupted() && backoff(entry.attempt)) {
+            entry.attempt++;
+            sendAsync(entry);
+        } else {
+            recordFailure(entry);
         }
+    }
+
+    private void recordFailure(InFlight entry) {
+        perMessageRecorder.record(startOf(entry.msg, entry.lastSendTimeMs), -1, entry.msg.getMessageType(), -1,
+                statusToCode(entry.lastStatus), entry.msg.getRoomId());
         metrics.recordFailure();
     }
 
+    /** Sleeps before the next attempt; returns false if interrupted. */
+    private boolean backoff(int attempt) {
+        try {
+            Thread.sleep(baseBackoffMs * (long) Math.pow(BACKOFF_BASE, attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** A pipelined message, its current attempt and the future of that attempt's ack. */
+    private static final class InFlight {
+        final ChatMessage msg;
+        int attempt;
+        CompletableFuture<SendResult> future;
+        long lastSendTimeMs = System.currentTimeMillis();
+        String lastStatus = "TIMEOUT";
+
+        InFlight(ChatMessage msg) {
+            this.msg = msg;
+        }
+    }
+
+    /**
+     * Sends messages of one room as a batch frame. Messages not acknowledged OK
+     * are sent again, as a smaller batch, up to maxRetries attempts.
+     */
+    private void processBatch(List<ChatMessage> batch) {
+        int roomId = batch.get(0).getRoomId();
+        List<ChatMessage> remaining = new ArrayList<>(batch);
+        long lastSendTimeMs = System.currentTimeMillis();
+        String lastStatus = "TIMEOUT";
+        for (int attempt = 0; attempt < maxRetries && !remaining.isEmpty(); attempt++) {
+            if (attempt > 0)
+                metrics.recordRetries(remaining.size());
+            ConnectionSession session = null;
+            try {
+                session = pool.borrow(roomId);
+                for (ChatMessage msg : remaining) {
+                    msg.setAttempt(attempt);
+                }
+                if (perMessageRecorder != null) {
+                    List<SendResult> results = session.sendBatchSync(remaining);
+                    pool.returnSession(session);
+                    List<ChatMessage> failed = new ArrayList<>();
+                    for (int i = 0; i < results.size(); i++) {
+                        SendResult result = results.get(i);
+                        ChatMessage msg = remaining.get(i);
+                        lastSendTimeMs = result.getSendTimeMs();
+                        if (result.isSuccess()) {
+                            recordAck(msg, result);
+                        } else {
+                            lastStatus = result.getStatus();
+                            failed.add(msg);
+                        }
+                    }
+                    // TIMEOUT, ERROR or RATE_LIMITED: retry the failed messages
+                    remaining = failed;
+                } else {
+                    session.sendBatch(remaining);
+                    pool.returnSession(session);
+                    for (int i = 0; i < remaining.size(); i++) {
+                        metrics.recordSuccess();
+                    }
+                    return;
+                }
+            } catch (Exception e) {
+                lastSendTimeMs = System.currentTimeMillis();
+                lastStatus = "TIMEOUT";
+                if (session != null) {
+                    try {
+                        pool.returnSession(session);
+                    } catch (Exception ignored) {
+                    }
+                }
+                if (attempt < maxRetries - 1) {
+                    try {
+                        long delayMs = baseBackoffMs * (long) Math.pow(BACKOFF_BASE, attempt);
+                        Thread.sleep(delayMs);
+                    } catch (InterruptedException ignored) {
+                        break;
+                    }
+                }
+            }
+        }
+        for (ChatMessage msg : remaining) {
+            if (perMessageRecorder != null) {
+                perMessageRecorder.record(startOf(msg, lastSendTimeMs), -1, msg.getMessageType(), -1,
+                        statusToCode(lastStatus), roomId);
+            }
+            metrics.recordFailure();
+        }
+    }
+
+    /**
+     * Records an OK ack. Latency runs from the scheduled send time in open-loop
+     * runs, so waiting for a worker or a retry counts, else from the send of
+     * the acknowledged attempt.
+     */
+    private void recordAck(ChatMessage msg, SendResult result) {
+        long latencyMicros = msg.getScheduledAtMs() > 0
+                ? (result.getAckNanos() - msg.getScheduledAtNanos()) / 1000
+                : result.getLatencyMicros();
+        perMessageRecorder.record(startOf(msg, result.getSendTimeMs()), result.getAckTimeMs(), msg.getMessageType(),
+                latencyMicros, STATUS_CODE_OK, msg.getRoomId());
+        metrics.recordSuccess();
+    }
+
+    /** Returns the scheduled send time in open-loop runs, else the given send time. */
+    private static long startOf(ChatMessage msg, long sendTimeMs) {
+        return msg.getScheduledAtMs() > 0 ? msg.getScheduledAtMs() : sendTimeMs;
+    }
+
     private static int statusToCode(String status) {
         if ("OK".equals(status))
             return STATUS_CODE_OK;
@@ -150,6 +401,8 @@ public class SenderWorker implements Runnable {
             return STATUS_CODE_ERROR;
         if ("TIMEOUT".equals(status))
             return STATUS_CODE_TIMEOUT;
+        if ("RATE_LIMITED".equals(status))
+            return STATUS_CODE_RATE_LIMITED;
         return STATUS_CODE_ERROR;
     }
 }
@@ -0,0 +1,72 @@
+package client.sender;
+
+import static client.config.Constants.WORKER_MODE_PLATFORM;
+import static client.config.Constants.WORKER_MODE_VIRTUAL;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that run {@link SenderWorker}s: platform threads, or
+ * virtual threads when the JVM has them (Java 21+). The module is compiled for
+ * Java 17, so virtual threads are looked up by reflection; on an older JVM the
+ * virtual mode falls back to platform threads with a warning.
+ * Blocking in SenderWorker goes through {@code java.util.concurrent} queues,
+ * futures and semaphores and {@code Thread.sleep}, none of which pin the
+ * carrier thread of a virtual thread.
+ */
+public final class WorkerThreads {
+
+    private final ThreadFactory factory;
+    private final String mode;
+
+    private WorkerThreads(ThreadFactory factory, String mode) {
+        this.factory = factory;
+        this.mode = mode;
+    }
+
+    /**
+     * @param mode       {@code WORKER_MODE_PLATFORM} or {@code WORKER_MODE_VIRTUAL}
+     * @param namePrefix thread name prefix; threads are numbered from 0
+     * @throws IllegalArgumentException if mode is neither
+     */
+    public static WorkerThreads forMode(String mode, String namePrefix) {
+        if (WORKER_MODE_VIRTUAL.equals(mode)) {
+            ThreadFactory virtual = virtualThreadFactory(namePrefix);
+            if (virtual != null) {
+                return new WorkerThreads(virtual, WORKER_MODE_VIRTUAL);
+            }
+            System.err.println("Virtual threads need Java 21+ (running " + Runtime.version()
+                    + "); using platform threads");
+        } else if (!WORKER_MODE_PLATFORM.equals(mode)) {
+            throw new IllegalArgumentException("Unknown worker mode: " + mode);
+        }
+        AtomicInteger next = new AtomicInteger();
+        return new WorkerThreads(task -> new Thread(task, namePrefix + next.getAndIncrement()),
+                WORKER_MODE_PLATFORM);
+    }
+
+    /** Returns Thread.ofVirtual().name(prefix, 0).factory(), or null before Java 21. */
+    private static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /** Returns an unstarted thread running the task. */
+    public Thread newThread(Runnable task) {
+        return factory.newThread(task);
+    }
+
+    /** Returns the mode actually in use (virtual may have fallen back to platform). */
+    public String getMode() {
+        return mode;
+    }
+}
@@ -1,6 +1,8 @@
 package model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.time.Instant;
 
@@ -8,15 +10,33 @@ import java.time.Instant;
  * Chat message DTO for WebSocket JSON. Sent to server.
  */
 public class ChatMessage {
+    /** Separates the messageId from the attempt number in the id sent on retries. */
+    public static final char ATTEMPT_SEPARATOR = '#';
+
     private String userId;
     private String username;
     private String message;
     private Instant timestamp;
     private MessageType messageType;
+    /** Set once per generated message and kept across retries, so the server can drop duplicates. */
+    @JsonIgnore
+    private String messageId;
+
+    /** Send attempt of this message, 0 for the first; retries send it in the correlation id. Not sent on its own. */
+    @JsonIgnore
+    private int attempt;
 
     @JsonIgnore
     private int roomId;
 
+    /** Time (ms) an open-loop run scheduled this message to be sent; 0 when sent closed-loop. Not sent. */
+    @JsonIgnore
+    private long scheduledAtMs;
+
+    /** System.nanoTime of the scheduled send time; meaningful only when scheduledAtMs is set. Not sent. */
+    @JsonIgnore
+    private long scheduledAtNanos;
+
     /**
      * @param userId      user id (1–100000 per assignment)
      * @param username    display name (e.g. "user" + userId)
@@ -75,6 +95,37 @@ public class ChatMessage {
         this.messageType = messageType;
     }
 
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public void setAttempt(int attempt) {
+        this.attempt = attempt;
+    }
+
+    /**
+     * The id sent as messageId and echoed in the ack: the messageId on the first
+     * attempt, else messageId#attempt, so a late ack of an earlier attempt does
+     * not match a retry. The server drops duplicates by the part before '#'.
+     * Null if the message has no messageId.
+     */
+    @JsonProperty("messageId")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getCorrelationId() {
+        if (messageId == null || attempt == 0) {
+            return messageId;
+        }
+        return messageId + ATTEMPT_SEPARATOR + attempt;
+    }
+
     public int getRoomId() {
         return roomId;
     }
@@ -82,4 +133,20 @@ public class ChatMessage {
     public void setRoomId(int roomId) {
         this.roomId = roomId;
     }
+
+    public long getScheduledAtMs() {
+        return scheduledAtMs;
+    }
+
+    public void setScheduledAtMs(long scheduledAtMs) {
+        this.scheduledAtMs = scheduledAtMs;
+    }
+
+    public long getScheduledAtNanos() {
+        return scheduledAtNanos;
+    }
+
+    public void setScheduledAtNanos(long scheduledAtNanos) {
+        this.scheduledAtNanos = scheduledAtNanos;
+    }
 }
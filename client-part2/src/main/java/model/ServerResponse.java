@@ -1,27 +1,32 @@
 package model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.time.Instant;
 
 /**
  * Server echo format (matches webChat ServerResponse). One response per sent
- * message.
+ * message. Room broadcasts from other members carry no status and are not acks.
  */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class ServerResponse {
     private final String status;
     private final Instant serverTimestamp;
     private final String message;
+    private final String messageId;
 
     @JsonCreator
     public ServerResponse(
             @JsonProperty("status") String status,
             @JsonProperty("serverTimestamp") Instant serverTimestamp,
-            @JsonProperty("message") String message) {
+            @JsonProperty("message") String message,
+            @JsonProperty("messageId") String messageId) {
         this.status = status;
         this.serverTimestamp = serverTimestamp;
         this.message = message;
+        this.messageId = messageId;
     }
 
     public String getStatus() {
@@ -35,4 +40,9 @@ public class ServerResponse {
     public String getMessage() {
         return message;
     }
+
+    /** The messageId of the acknowledged message; null if it had none. */
+    public String getMessageId() {
+        return messageId;
+    }
 }
@@ -0,0 +1,17 @@
+#!/usr/bin/env bash
+# Builds the servlet and the reactive engine and measures connections per core for each.
+# Extra arguments go to EngineCapacityHarness, e.g. --cores 4 --max 40000
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+engines=$(mktemp -d)
+for engine in servlet reactive; do
+    mvn -q -P"$engine" clean package -DskipTests
+    cp target/webChat-1.0-SNAPSHOT.jar "$engines/webChat-$engine.jar"
+done
+
+mvn -q -Pservlet,bench clean compile
+for engine in servlet reactive; do
+    mvn -q -Pservlet,bench exec:exec -Dbench.main=vito.bench.EngineCapacityHarness \
+        -Dbench.args="--jar $engines/webChat-$engine.jar --label $engine $*"
+done
@@ -0,0 +1,138 @@
+package vito.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * One JSON connection to /chat/{roomId} on the JDK WebSocket client. Each send
+ * is a TEXT message; the reply that follows is timed as the ack latency. A
+ * closed-loop connection sends its next message as soon as the previous one is
+ * acknowledged; otherwise the harness calls {@link #send()} on its own schedule
+ * and a send is skipped while the previous frame is still being written.
+ */
+final class ChatLoadConnection implements WebSocket.Listener {
+    private static final String OK_PREFIX = "{\"status\":\"OK\"";
+    private static final String REPLY_PREFIX = "{\"status\":";
+
+    private final String frame;
+    private final boolean closedLoop;
+    private final StringBuilder text = new StringBuilder();
+    private volatile LoadStats stats;
+    private volatile long sentAt;
+    private volatile boolean open;
+    // guarded by this; completes when the last frame has been handed to the socket
+    private CompletableFuture<WebSocket> sending;
+
+    private ChatLoadConnection(int userId, boolean closedLoop, LoadStats stats) {
+        this.frame = "{\"userId\":\"" + userId + "\",\"username\":\"user" + userId
+                + "\",\"message\":\"load test message from user " + userId
+                + "\",\"timestamp\":\"2024-01-01T00:00:00Z\",\"messageType\":\"TEXT\"}";
+        this.closedLoop = closedLoop;
+        this.stats = stats;
+    }
+
+    static CompletableFuture<ChatLoadConnection> open(HttpClient client, int port, int roomId, int userId,
+                                                      boolean closedLoop, LoadStats stats) {
+        ChatLoadConnection connection = new ChatLoadConnection(userId, closedLoop, stats);
+        return client.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(URI.create("ws://localhost:" + port + "/chat/" + roomId), connection)
+                .thenApply(socket -> {
+                    synchronized (connection) {
+                        connection.sending = CompletableFuture.completedFuture(socket);
+                        connection.open = true;
+                    }
+                    return connection;
+                });
+    }
+
+    /** Counts what this connection sees from now on into stats. */
+    void reportTo(LoadStats stats) {
+        this.stats = stats;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    synchronized void send() {
+        if (!open) {
+            return;
+        }
+        if (!sending.isDone()) {
+            stats.skippedSends.increment();
+            return;
+        }
+        if (sending.isCompletedExceptionally()) {
+            open = false;
+            stats.closed.increment();
+            return;
+        }
+        sentAt = System.nanoTime();
+        sending = sending.thenCompose(socket -> socket.sendText(frame, true));
+    }
+
+    synchronized void abort() {
+        open = false;
+        if (sending != null) {
+            sending.thenAccept(WebSocket::abort);
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket socket, CharSequence data, boolean last) {
+        text.append(data);
+        if (last) {
+            LoadStats current = stats;
+            if (startsWith(text, REPLY_PREFIX)) {
+                if (startsWith(text, OK_PREFIX)) {
+                    current.ackLatency.record(System.nanoTime() - sentAt);
+                } else {
+                    current.errorReplies.increment();
+                }
+                if (closedLoop) {
+                    send();
+                }
+            } else {
+                current.broadcasts.increment();
+            }
+            text.setLength(0);
+        }
+        socket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket socket, int statusCode, String reason) {
+        closed();
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket socket, Throwable error) {
+        closed();
+    }
+
+    private void closed() {
+        if (open) {
+            open = false;
+            stats.closed.increment();
+        }
+    }
+
+    private static boolean startsWith(CharSequence text, String prefix) {
+        if (text.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package vito.bench;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Aggregate throughput of a local cluster against a single node. For each entry
+ * of --nodes (default 1,3) it starts that many chat servers as child JVMs,
+ * linked over the TCP bus when there is more than one. It then opens
+ * --connections closed-loop connections spread round-robin over the nodes and
+ * over --rooms rooms, so every room has members on every node and each TEXT
+ * message is acked by its node and relayed to the others. After --warmup-seconds
+ * it counts acks and delivered broadcasts for --seconds and prints both per
+ * second, next to the CPU the nodes used.
+ */
+public final class ClusterHarness {
+
+    public static void main(String[] args) throws Exception {
+        HarnessArgs options = new HarnessArgs(args);
+        int connections = options.getInt("connections", 300);
+        int rooms = options.getInt("rooms", 30);
+        int warmupSeconds = options.getInt("warmup-seconds", 5);
+        int seconds = options.getInt("seconds", 20);
+        int basePort = options.getInt("base-port", 18081);
+        int baseClusterPort = options.getInt("cluster-base-port", 19091);
+
+        System.out.printf("%5s %12s %14s %10s %10s %8s%n",
+                "nodes", "acks/s", "broadcasts/s", "p99 ms", "cpu cores", "errors");
+        double singleNode = 0;
+        for (String entry : options.get("nodes", "1,3").split(",")) {
+            int nodes = Integer.parseInt(entry.trim());
+            List<ServerProcess> servers = new ArrayList<>();
+            List<ChatLoadConnection> open = new ArrayList<>();
+            try {
+                for (int node = 0; node < nodes; node++) {
+                    servers.add(startNode(node, nodes, basePort, baseClusterPort));
+                }
+                if (nodes > 1) {
+                    // let every node link to its peers before members subscribe to rooms
+                    Thread.sleep(2000);
+                }
+                LoadStats warmup = new LoadStats();
+                HttpClient client = HttpClient.newHttpClient();
+                List<CompletableFuture<ChatLoadConnection>> opening = new ArrayList<>();
+                for (int i = 0; i < connections; i++) {
+                    int port = servers.get(i % nodes).port();
+                    opening.add(ChatLoadConnection.open(client, port, i % rooms + 1, i % 100000 + 1, true, warmup));
+                }
+                for (CompletableFuture<ChatLoadConnection> future : opening) {
+                    open.add(future.join());
+                }
+                for (ChatLoadConnection connection : open) {
+                    connection.send();
+                }
+                Thread.sleep(warmupSeconds * 1000L);
+
+                LoadStats stats = new LoadStats();
+                for (ChatLoadConnection connection : open) {
+                    connection.reportTo(stats);
+                }
+                Duration cpuBefore = totalCpu(servers);
+                long start = System.nanoTime();
+                Thread.sleep(seconds * 1000L);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                double cpuCores = totalCpu(servers).minus(cpuBefore).toNanos() / 1e9 / elapsed;
+                double acksPerSecond = stats.acks() / elapsed;
+                System.out.printf("%5d %12.0f %14.0f %10.2f %10.2f %8d%n", nodes, acksPerSecond,
+                        stats.broadcasts.sum() / elapsed, stats.ackP99Millis(), cpuCores,
+                        stats.errorReplies.sum() + stats.closed.sum());
+                if (nodes == 1) {
+                    singleNode = acksPerSecond;
+                } else if (singleNode > 0) {
+                    System.out.printf("%d nodes: %.2fx the acks/s of one node%n", nodes, acksPerSecond / singleNode);
+                }
+            } finally {
+                for (ChatLoadConnection connection : open) {
+                    connection.abort();
+                }
+                for (ServerProcess server : servers) {
+                    server.close();
+                }
+            }
+        }
+    }
+
+    private static ServerProcess startNode(int node, int nodes, int basePort, int baseClusterPort) throws Exception {
+        int port = basePort + node;
+        List<String> arguments = new ArrayList<>(List.of("vito.ChatServer", "--server.port=" + port,
+                "--chat.log.enabled=false", "--chat.ratelimit.enabled=false"));
+        if (nodes > 1) {
+            List<String> peers = new ArrayList<>();
+            for (int peer = 0; peer < nodes; peer++) {
+                peers.add("localhost:" + (baseClusterPort + peer));
+            }
+            arguments.add("--chat.cluster.bus=tcp");
+            arguments.add("--chat.cluster.port=" + (baseClusterPort + node));
+            arguments.add("--chat.cluster.peers=" + String.join(",", peers));
+        }
+        // the harness runs with the server's classpath (exec:exec), so the nodes do too
+        List<String> command = ServerProcess.java(
+                List.of("-cp", System.getProperty("java.class.path")), arguments);
+        Path log = Files.createTempFile("chat-node" + (node + 1) + "-of-" + nodes + "-", ".log");
+        return ServerProcess.start(command, port, log);
+    }
+
+    private static Duration totalCpu(List<ServerProcess> servers) {
+        Duration total = Duration.ZERO;
+        for (ServerProcess server : servers) {
+            total = total.plus(server.cpuTime());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,132 @@
+package vito.bench;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Connections per core of one server engine. Starts the engine's jar pinned to
+ * --cores CPUs, then adds connections in steps of --step. Every connection sends
+ * one TEXT message per --interval-ms into its own room, and each step is held
+ * for --hold-seconds. A step is within bounds while no connection fails or
+ * closes, at least 95% of the expected acks arrive, the ack p99 stays under
+ * --max-p99-ms and the server is not using all of its cores. The last such step
+ * divided by --cores is the result. Run it once per engine jar (see
+ * bench/compare-engines.sh) and compare.
+ */
+public final class EngineCapacityHarness {
+    private static final long TICK_MS = 10;
+    private static final double SATURATED = 0.95;
+
+    public static void main(String[] args) throws Exception {
+        HarnessArgs options = new HarnessArgs(args);
+        String jar = options.require("jar");
+        String label = options.get("label", Paths.get(jar).getFileName().toString());
+        int cores = options.getInt("cores", 2);
+        int port = options.getInt("port", 18080);
+        int step = options.getInt("step", 1000);
+        int max = options.getInt("max", 20000);
+        int holdSeconds = options.getInt("hold-seconds", 10);
+        int intervalMs = options.getInt("interval-ms", 1000);
+        double maxP99Ms = options.getInt("max-p99-ms", 50);
+
+        List<String> command = new ArrayList<>();
+        // ActiveProcessorCount sizes the engine's thread pools; taskset keeps it on that many CPUs
+        if (Files.isExecutable(Paths.get("/usr/bin/taskset"))) {
+            command.addAll(List.of("/usr/bin/taskset", "-c", "0-" + (cores - 1)));
+        } else {
+            System.out.println("taskset not found: the server may run on more than " + cores + " cores");
+        }
+        command.addAll(ServerProcess.java(
+                List.of("-XX:ActiveProcessorCount=" + cores),
+                List.of("-jar", jar, "--server.port=" + port,
+                        "--chat.log.enabled=false", "--chat.ratelimit.enabled=false")));
+        Path log = Files.createTempFile("chat-" + label + "-", ".log");
+
+        HttpClient client = HttpClient.newHttpClient();
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        List<ChatLoadConnection> connections = new ArrayList<>();
+        try (ServerProcess server = ServerProcess.start(command, port, log)) {
+            long ticksPerInterval = Math.max(1, intervalMs / TICK_MS);
+            AtomicLong tick = new AtomicLong();
+            AtomicReference<ChatLoadConnection[]> active = new AtomicReference<>(new ChatLoadConnection[0]);
+            // spreads each connection's sends evenly over the interval
+            ticker.scheduleAtFixedRate(() -> {
+                long slot = tick.getAndIncrement() % ticksPerInterval;
+                ChatLoadConnection[] snapshot = active.get();
+                for (int i = (int) slot; i < snapshot.length; i += ticksPerInterval) {
+                    snapshot[i].send();
+                }
+            }, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+
+            System.out.printf("%s on %d cores (server log %s)%n", label, cores, log);
+            System.out.printf("%12s %10s %12s %10s %8s%n", "connections", "cpu cores", "acks/s", "p99 ms", "failed");
+            int held = 0;
+            double heldCpu = 0;
+            for (int target = step; target <= max; target += step) {
+                LoadStats stats = new LoadStats();
+                int failed = open(client, port, connections, target, stats);
+                for (ChatLoadConnection connection : connections) {
+                    connection.reportTo(stats);
+                }
+                active.set(connections.toArray(new ChatLoadConnection[0]));
+
+                Duration cpuBefore = server.cpuTime();
+                long start = System.nanoTime();
+                Thread.sleep(holdSeconds * 1000L);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                double cpuCores = server.cpuTime().minus(cpuBefore).toNanos() / 1e9 / seconds;
+
+                long expectedAcks = (long) (connections.size() * seconds * 1000 / intervalMs);
+                long lost = failed + stats.closed.sum();
+                System.out.printf("%12d %10.2f %12.0f %10.2f %8d%n", connections.size(), cpuCores,
+                        stats.acks() / seconds, stats.ackP99Millis(), lost);
+                boolean withinBounds = lost == 0
+                        && stats.acks() >= expectedAcks * SATURATED
+                        && stats.ackP99Millis() <= maxP99Ms
+                        && cpuCores < cores * SATURATED;
+                if (!withinBounds) {
+                    break;
+                }
+                held = connections.size();
+                heldCpu = cpuCores;
+            }
+            System.out.printf("%s: %d connections held on %d cores = %.0f connections per core"
+                    + " (server CPU %.2f cores at that step)%n", label, held, cores, (double) held / cores, heldCpu);
+        } finally {
+            ticker.shutdownNow();
+            for (ChatLoadConnection connection : connections) {
+                connection.abort();
+            }
+        }
+    }
+
+    // opens connections until there are target of them; returns how many failed to open
+    private static int open(HttpClient client, int port, List<ChatLoadConnection> connections, int target,
+                            LoadStats stats) {
+        List<CompletableFuture<ChatLoadConnection>> opening = new ArrayList<>();
+        for (int i = connections.size(); i < target; i++) {
+            // one room per connection: the step measures connections, not fan-out
+            opening.add(ChatLoadConnection.open(client, port, i + 1, i % 100000 + 1, false, stats));
+        }
+        int failed = 0;
+        for (CompletableFuture<ChatLoadConnection> future : opening) {
+            try {
+                connections.add(future.join());
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+}
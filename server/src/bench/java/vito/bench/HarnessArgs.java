@@ -0,0 +1,35 @@
+package vito.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** --name value command-line options of a harness, with defaults at the point of use. */
+final class HarnessArgs {
+    private final Map<String, String> values = new HashMap<>();
+
+    HarnessArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value, got '" + args[i] + "'");
+            }
+            values.put(args[i].substring(2), args[++i]);
+        }
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    String require(String name) {
+        String value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return value;
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,22 @@
+package vito.bench;
+
+import vito.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** What the connections of a harness saw during one measurement window. */
+final class LoadStats {
+    final LatencyHistogram ackLatency = new LatencyHistogram();
+    final LongAdder errorReplies = new LongAdder();
+    final LongAdder broadcasts = new LongAdder();
+    final LongAdder skippedSends = new LongAdder();
+    final LongAdder closed = new LongAdder();
+
+    long acks() {
+        return ackLatency.count();
+    }
+
+    double ackP99Millis() {
+        return ackLatency.quantileNanos(0.99) / 1e6;
+    }
+}
@@ -0,0 +1,85 @@
+package vito.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import vito.store.MessageLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Messages per second through the message log at each durability level, on the
+ * local disk under java.io.tmpdir. Each thread is a handler that appends a
+ * typical broadcast record to its own room and waits for the ack, so the score
+ * is the acked throughput of all threads together; group commit shares writes
+ * and fsyncs between them. Point -Djava.io.tmpdir at the disk to measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(16)
+@Fork(1)
+public class MessageLogBenchmark {
+    private static final int RECORD_BYTES = 96;
+
+    @Param({"none", "batched", "fsync"})
+    private String durability;
+
+    private Path directory;
+    private MessageLog messageLog;
+    private final AtomicInteger rooms = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Handler {
+        private int roomId;
+        private ByteBuffer record;
+
+        @Setup
+        public void setUp(MessageLogBenchmark benchmark) {
+            roomId = benchmark.rooms.incrementAndGet();
+            record = ByteBuffer.allocate(RECORD_BYTES);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("chat-log-bench");
+        messageLog = new MessageLog(true, directory.toString(), durability, 1, 100, 64L * 1024 * 1024, 65536);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException, IOException {
+        messageLog.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void appendAndAwaitAck(Handler handler) {
+        CompletableFuture<Void> durable = messageLog.append(handler.roomId, handler.record);
+        if (durable != null) {
+            durable.join();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package vito.bench;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vito.model.ChatMessage;
+import vito.model.MessageType;
+import vito.validator.BeanMessageValidator;
+import vito.validator.MessageValidator;
+import vito.validator.ValidationResult;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-written {@link MessageValidator} against Bean Validation running the
+ * ChatMessage annotations. With the default -prof gc, gc.alloc.rate.norm is
+ * the bytes allocated per validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageValidatorBenchmark {
+    @Param({"valid", "invalid"})
+    private String input;
+
+    private ValidatorFactory factory;
+    private BeanMessageValidator beanValidator;
+    private final MessageValidator handWritten = new MessageValidator();
+    private ChatMessage message;
+
+    @Setup
+    public void setUp() {
+        factory = Validation.buildDefaultValidatorFactory();
+        beanValidator = new BeanMessageValidator(factory.getValidator());
+        message = "valid".equals(input)
+                ? new ChatMessage("4711", "user4711", "hello from the benchmark", Instant.now(), MessageType.TEXT)
+                : new ChatMessage("0", "user_4711", "", Instant.now(), MessageType.TEXT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Benchmark
+    public ValidationResult handWritten() {
+        return handWritten.validate(message);
+    }
+
+    @Benchmark
+    public ValidationResult beanValidation() {
+        return beanValidator.validate(message);
+    }
+}
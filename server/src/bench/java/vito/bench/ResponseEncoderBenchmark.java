@@ -0,0 +1,76 @@
+package vito.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+import vito.codec.ResponseEncoder;
+import vito.model.ServerResponse;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated per reply: the old path (new ServerResponse, Instant.now(),
+ * writeValueAsString, new TextMessage) against {@link ResponseEncoder}. Run with
+ * -prof gc and read gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEncoderBenchmark {
+    private static final String MESSAGE = "hello from user 4711, this is a typical chat line";
+    private static final String PARSE_ERROR = "Unable to parse JSON";
+
+    // configured the way Spring Boot configures the application's ObjectMapper
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final ResponseEncoder encoder = new ResponseEncoder();
+
+    @Benchmark
+    public TextMessage okDatabind() throws JsonProcessingException {
+        return new TextMessage(objectMapper.writeValueAsString(new ServerResponse("OK", Instant.now(), MESSAGE)));
+    }
+
+    @Benchmark
+    public TextMessage okEncoder() {
+        return encoder.ok(MESSAGE, null);
+    }
+
+    @Benchmark
+    public TextMessage joinedDatabind() throws JsonProcessingException {
+        return new TextMessage(objectMapper.writeValueAsString(
+                new ServerResponse("OK", Instant.now(), "You have joined the chat: " + MESSAGE)));
+    }
+
+    @Benchmark
+    public TextMessage joinedEncoder() {
+        return encoder.joined(MESSAGE, null);
+    }
+
+    @Benchmark
+    public TextMessage parseErrorDatabind() throws JsonProcessingException {
+        return new TextMessage(objectMapper.writeValueAsString(new ServerResponse("ERROR", Instant.now(), PARSE_ERROR)));
+    }
+
+    @Benchmark
+    public TextMessage parseErrorEncoder() {
+        return encoder.parseError();
+    }
+}
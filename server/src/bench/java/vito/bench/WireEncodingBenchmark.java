@@ -0,0 +1,111 @@
+package vito.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import vito.codec.BinaryChatCodec;
+import vito.codec.ChatMessageDecoder;
+import vito.codec.MalformedFrameException;
+import vito.codec.ResponseEncoder;
+import vito.model.ChatMessage;
+import vito.model.MessageType;
+import vito.validator.MessageValidator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server work per chat message on a JSON and on a binary connection: turn the
+ * frame into a ChatMessage (for JSON, including the UTF-8 decode the container
+ * does), validate it and encode the ack. Single-threaded time per operation is
+ * the server CPU per message. Bytes on the wire for the request and the ack of
+ * each encoding are printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireEncodingBenchmark {
+    private static final String USER_ID = "4711";
+    private static final String USERNAME = "user4711";
+    private static final String MESSAGE = "hello from user 4711, this is a typical chat line";
+    private static final long TIMESTAMP_MS = 1_700_000_000_123L;
+
+    private final ChatMessageDecoder jsonDecoder = new ChatMessageDecoder(new ObjectMapper());
+    private final ResponseEncoder jsonEncoder = new ResponseEncoder();
+    private final BinaryChatCodec binaryCodec = new BinaryChatCodec();
+    private final MessageValidator validator = new MessageValidator();
+    private final ChatMessage inbound = new ChatMessage();
+    private byte[] jsonFrame;
+    private byte[] binaryFrame;
+
+    @Setup
+    public void setUp() throws IOException {
+        // what client-part2 sends for each encoding
+        jsonFrame = ("{\"userId\":\"" + USER_ID + "\",\"username\":\"" + USERNAME + "\",\"message\":\"" + MESSAGE
+                + "\",\"timestamp\":\"2023-11-14T22:13:20.123Z\",\"messageType\":\"TEXT\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        binaryFrame = binaryRequest();
+        int jsonAck = json().getPayloadLength();
+        int binaryAck = binary().getPayloadLength();
+        System.out.printf("wire bytes per message: json request %d + ack %d = %d, binary request %d + ack %d = %d%n",
+                jsonFrame.length, jsonAck, jsonFrame.length + jsonAck,
+                binaryFrame.length, binaryAck, binaryFrame.length + binaryAck);
+    }
+
+    @Benchmark
+    public TextMessage json() throws IOException {
+        // Tomcat decodes a text frame into a String before the handler sees it
+        jsonDecoder.decode(new String(jsonFrame, StandardCharsets.UTF_8), inbound);
+        validator.validate(inbound);
+        return jsonEncoder.ok(inbound.getMessage(), inbound.getMessageId());
+    }
+
+    @Benchmark
+    public BinaryMessage binary() throws MalformedFrameException {
+        binaryCodec.decode(ByteBuffer.wrap(binaryFrame), inbound);
+        validator.validate(inbound);
+        return binaryCodec.ok(inbound.getMessage(), inbound.getMessageId());
+    }
+
+    // flags | type | userId varint | username | message | timestamp, as documented on BinaryChatCodec
+    private static byte[] binaryRequest() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0);
+        out.write(MessageType.TEXT.ordinal());
+        writeVarint(out, Integer.parseInt(USER_ID));
+        writeString(out, USERNAME);
+        writeString(out, MESSAGE);
+        out.writeBytes(ByteBuffer.allocate(Long.BYTES).putLong(TIMESTAMP_MS).array());
+        return out.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length);
+        out.writeBytes(utf8);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
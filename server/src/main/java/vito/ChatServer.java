@@ -5,7 +5,16 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class ChatServer {
+    private static final String COMPRESSION_PROPERTY = "chat.compression.enabled";
+    private static final String TOMCAT_DISABLE_EXTENSIONS = "org.apache.tomcat.websocket.DISABLE_BUILTIN_EXTENSIONS";
+
     public static void main(String[] args) {
+        // Tomcat negotiates permessage-deflate (including the client's context-takeover
+        // parameters) whenever a client offers it; -Dchat.compression.enabled=false turns it off.
+        // Read before Tomcat's WebSocket classes load, so it must be a JVM system property.
+        if (!Boolean.parseBoolean(System.getProperty(COMPRESSION_PROPERTY, "true"))) {
+            System.setProperty(TOMCAT_DISABLE_EXTENSIONS, "true");
+        }
         SpringApplication.run(ChatServer.class, args);
     }
 }
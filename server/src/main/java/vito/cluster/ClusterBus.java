@@ -0,0 +1,35 @@
+package vito.cluster;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Carries room broadcasts between chat nodes. A node subscribes to the rooms it
+ * has local members in and only receives other nodes' traffic for those rooms.
+ * Delivery is best effort: frames published while a peer is unreachable or
+ * too far behind are dropped, as they are for a slow local member.
+ */
+public interface ClusterBus extends Closeable {
+
+    /** Starts exchanging traffic; frames for subscribed rooms go to the receiver. */
+    void start(Receiver receiver);
+
+    void subscribe(int roomId);
+
+    void unsubscribe(int roomId);
+
+    /** Sends a binary broadcast frame to every other node subscribed to the room. */
+    void publish(int roomId, ByteBuffer frame);
+
+    Map<String, Object> stats();
+
+    @Override
+    void close();
+
+    @FunctionalInterface
+    interface Receiver {
+        /** Called on a bus thread with a broadcast frame published by another node. */
+        void deliver(int roomId, ByteBuffer frame);
+    }
+}
@@ -0,0 +1,10 @@
+package vito.cluster;
+
+public enum ClusterBusType {
+    /** Single node; rooms are not shared. */
+    NONE,
+    /** Nodes running in the same JVM, for tests and local experiments. */
+    IN_PROCESS,
+    /** Plain TCP links between nodes, no broker. */
+    TCP
+}
@@ -0,0 +1,200 @@
+package vito.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import vito.codec.BinaryChatCodec;
+import vito.codec.BroadcastFrame;
+import vito.model.BroadcastMessage;
+import vito.model.ChatMessage;
+import vito.room.Room;
+import vito.room.RoomRegistry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares room broadcasts with the other nodes of a cluster. The node is
+ * subscribed to a room while it has local members in it. Local TEXT broadcasts
+ * are published in the binary broadcast encoding, and broadcasts from other
+ * nodes go to the local members and the room history like local ones.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClusterRelay implements ClusterBus.Receiver {
+    private static final Logger log = LoggerFactory.getLogger(ClusterRelay.class);
+    private static final int SUBSCRIPTION_STRIPES = 64;
+
+    private final ClusterBusType type;
+    private final ClusterBus bus;
+    private final RoomRegistry roomRegistry;
+    private final ObjectMapper objectMapper;
+    private final BinaryChatCodec binaryChatCodec;
+    // local members per room; the bus subscription follows the 0 <-> 1 transitions
+    private final ConcurrentHashMap<Integer, Integer> localMembers = new ConcurrentHashMap<>();
+    // rooms subscribed on the bus, changed only under the room's stripe lock
+    private final Set<Integer> subscribed = ConcurrentHashMap.newKeySet();
+    private final Object[] subscriptionLocks = new Object[SUBSCRIPTION_STRIPES];
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    public ClusterRelay(@Value("${chat.cluster.bus:none}") String bus,
+                        @Value("${chat.cluster.port:9090}") int port,
+                        @Value("${chat.cluster.peers:}") String peers,
+                        @Value("${chat.cluster.queue-capacity:65536}") int queueCapacity,
+                        @Value("${chat.cluster.batch-records:256}") int batchRecords,
+                        @Value("${chat.cluster.reconnect-ms:1000}") long reconnectMs,
+                        RoomRegistry roomRegistry, ObjectMapper objectMapper, BinaryChatCodec binaryChatCodec) {
+        this(ClusterBusType.valueOf(bus.trim().toUpperCase().replace('-', '_')), port, peers, queueCapacity,
+                batchRecords, reconnectMs, roomRegistry, objectMapper, binaryChatCodec);
+    }
+
+    private ClusterRelay(ClusterBusType type, int port, String peers, int queueCapacity, int batchRecords,
+                         long reconnectMs, RoomRegistry roomRegistry, ObjectMapper objectMapper,
+                         BinaryChatCodec binaryChatCodec) {
+        this(type, switch (type) {
+            case NONE -> null;
+            case IN_PROCESS -> new InProcessBus(InProcessBus.Network.SHARED);
+            case TCP -> new TcpBus(port, parsePeers(peers), queueCapacity, batchRecords, reconnectMs);
+        }, roomRegistry, objectMapper, binaryChatCodec);
+    }
+
+    /** Relays over the given bus, which this relay starts and closes; null disables relaying. */
+    ClusterRelay(ClusterBusType type, ClusterBus bus, RoomRegistry roomRegistry, ObjectMapper objectMapper,
+                 BinaryChatCodec binaryChatCodec) {
+        this.type = type;
+        this.bus = bus;
+        this.roomRegistry = roomRegistry;
+        this.objectMapper = objectMapper;
+        this.binaryChatCodec = binaryChatCodec;
+        for (int i = 0; i < subscriptionLocks.length; i++) {
+            subscriptionLocks[i] = new Object();
+        }
+        if (this.bus != null) {
+            this.bus.start(this);
+            log.info("Cluster bus {} started", type);
+        }
+    }
+
+    public boolean isEnabled() {
+        return bus != null;
+    }
+
+    /** Called when a session connects to the room. */
+    public void memberJoined(Room room) {
+        if (bus == null) {
+            return;
+        }
+        int count = localMembers.merge(room.getId(), 1, Integer::sum);
+        if (count == 1) {
+            updateSubscription(room.getId());
+        }
+    }
+
+    /** Called when a session of the room disconnects. */
+    public void memberLeft(Room room) {
+        if (bus == null) {
+            return;
+        }
+        Integer count = localMembers.computeIfPresent(room.getId(), (id, members) -> members == 1 ? null : members - 1);
+        if (count == null) {
+            updateSubscription(room.getId());
+        }
+    }
+
+    /**
+     * Brings the bus subscription in line with the room's current local members.
+     * Runs after the count has changed, outside the map's lock, since subscribing
+     * may write to peers. Joins and leaves that race each call this, and whichever
+     * runs last sees the final count, so the subscription cannot end up stale.
+     */
+    private void updateSubscription(int roomId) {
+        synchronized (subscriptionLocks[Math.floorMod(roomId, SUBSCRIPTION_STRIPES)]) {
+            boolean wanted = localMembers.containsKey(roomId);
+            if (wanted && subscribed.add(roomId)) {
+                bus.subscribe(roomId);
+            } else if (!wanted && subscribed.remove(roomId)) {
+                bus.unsubscribe(roomId);
+            }
+        }
+    }
+
+    /** Sends a broadcast of a local member to the room's members on other nodes. */
+    public void publish(BroadcastFrame frame) {
+        if (bus == null) {
+            return;
+        }
+        published.increment();
+        bus.publish(frame.getMessage().getRoomId(), frame.binary().getPayload());
+    }
+
+    @Override
+    public void deliver(int roomId, ByteBuffer payload) {
+        Room room = roomRegistry.get(roomId);
+        if (room == null) {
+            return;
+        }
+        ChatMessage chatMessage = new ChatMessage();
+        try {
+            binaryChatCodec.decodeBroadcast(payload, chatMessage);
+            BroadcastFrame frame = new BroadcastFrame(new BroadcastMessage(roomId, chatMessage),
+                    objectMapper, binaryChatCodec);
+            room.broadcast(frame, null);
+            room.getHistory().append(ByteBuffer.wrap(frame.text().asBytes()), frame.binary().getPayload());
+            delivered.increment();
+        } catch (IOException e) {
+            malformed.increment();
+            log.warn("Dropped a broadcast relayed for room {}: {}", roomId, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bus", type);
+        stats.put("localRooms", localMembers.size());
+        stats.put("published", published.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("malformed", malformed.sum());
+        if (bus != null) {
+            stats.putAll(bus.stats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (bus != null) {
+            bus.close();
+        }
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            peer = peer.trim();
+            if (peer.isEmpty()) {
+                continue;
+            }
+            int colon = peer.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Cluster peer must be host:port, got " + peer);
+            }
+            int port = Integer.parseInt(peer.substring(colon + 1));
+            addresses.add(new InetSocketAddress(peer.substring(0, colon), port));
+        }
+        return addresses;
+    }
+}
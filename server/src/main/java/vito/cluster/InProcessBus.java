@@ -0,0 +1,75 @@
+package vito.cluster;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bus between nodes in one JVM. Frames are handed straight to the subscribed
+ * nodes' receivers on the publishing thread, so nothing is queued or dropped.
+ */
+public class InProcessBus implements ClusterBus {
+    private final Network network;
+    private final Set<Integer> rooms = ConcurrentHashMap.newKeySet();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private volatile Receiver receiver;
+
+    public InProcessBus(Network network) {
+        this.network = network;
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        this.receiver = receiver;
+        network.nodes.add(this);
+    }
+
+    @Override
+    public void subscribe(int roomId) {
+        rooms.add(roomId);
+    }
+
+    @Override
+    public void unsubscribe(int roomId) {
+        rooms.remove(roomId);
+    }
+
+    @Override
+    public void publish(int roomId, ByteBuffer frame) {
+        for (InProcessBus node : network.nodes) {
+            if (node == this || !node.rooms.contains(roomId)) {
+                continue;
+            }
+            framesSent.increment();
+            node.framesReceived.increment();
+            node.receiver.deliver(roomId, frame.duplicate());
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodes", network.nodes.size());
+        stats.put("subscribedRooms", rooms.size());
+        stats.put("framesSent", framesSent.sum());
+        stats.put("framesReceived", framesReceived.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        network.nodes.remove(this);
+    }
+
+    /** The nodes that can reach each other; every node of the JVM joins {@link #SHARED} by default. */
+    public static final class Network {
+        public static final Network SHARED = new Network();
+
+        private final Set<InProcessBus> nodes = new CopyOnWriteArraySet<>();
+    }
+}
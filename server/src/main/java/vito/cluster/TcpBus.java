@@ -0,0 +1,369 @@
+package vito.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bus over plain TCP between nodes listed as host:port peers. Each node dials
+ * every peer and sends its subscriptions and broadcasts over that link; it
+ * accepts the peers' links on its own port and reads theirs. A peer's room
+ * traffic is only queued for it while it is subscribed to the room.
+ *
+ * <p>Every outgoing link has a queue drained by one writer thread, which writes
+ * whatever is queued (up to batchRecords records) into a buffered stream and
+ * flushes it with one write. Under load many broadcasts share a TCP segment.
+ * Records are {@code kind:u8 | roomId:i32 | length:i32 | payload}; a link
+ * starts with a HELLO carrying the node id in both directions.
+ *
+ * <p>The same peer list can be given to every node: a link that turns out to
+ * lead back to this node is dropped.
+ */
+public class TcpBus implements ClusterBus {
+    private static final Logger log = LoggerFactory.getLogger(TcpBus.class);
+    private static final int KIND_HELLO = 0;
+    private static final int KIND_SUBSCRIBE = 1;
+    private static final int KIND_UNSUBSCRIBE = 2;
+    private static final int KIND_MESSAGE = 3;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final int port;
+    private final List<PeerLink> links = new ArrayList<>();
+    private final int batchRecords;
+    private final long reconnectMs;
+    private final Set<Integer> localRooms = ConcurrentHashMap.newKeySet();
+    // rooms each connected peer is subscribed to, by the peer's node id
+    private final ConcurrentHashMap<String, Set<Integer>> remoteRooms = new ConcurrentHashMap<>();
+    private final AtomicInteger inboundLinks = new AtomicInteger();
+    private final LongAdder recordsSent = new LongAdder();
+    private final LongAdder batchesSent = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private volatile Receiver receiver;
+    private volatile boolean running = true;
+    private ServerSocket server;
+
+    public TcpBus(int port, List<InetSocketAddress> peers, int queueCapacity, int batchRecords, long reconnectMs) {
+        this.port = port;
+        this.batchRecords = batchRecords;
+        this.reconnectMs = reconnectMs;
+        for (InetSocketAddress peer : peers) {
+            links.add(new PeerLink(peer, queueCapacity));
+        }
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        this.receiver = receiver;
+        try {
+            server = new ServerSocket(port);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to listen for cluster peers on port " + port, e);
+        }
+        daemon(this::acceptLoop, "chat-cluster-accept").start();
+        for (PeerLink link : links) {
+            daemon(link, "chat-cluster-peer-" + link.address).start();
+        }
+    }
+
+    /** The port accepting peer links; differs from the configured one when that was 0. */
+    int getLocalPort() {
+        return server.getLocalPort();
+    }
+
+    @Override
+    public void subscribe(int roomId) {
+        localRooms.add(roomId);
+        for (PeerLink link : links) {
+            link.sendControl(KIND_SUBSCRIBE, roomId);
+        }
+    }
+
+    @Override
+    public void unsubscribe(int roomId) {
+        localRooms.remove(roomId);
+        for (PeerLink link : links) {
+            link.sendControl(KIND_UNSUBSCRIBE, roomId);
+        }
+    }
+
+    @Override
+    public void publish(int roomId, ByteBuffer frame) {
+        for (PeerLink link : links) {
+            String remoteId = link.remoteId;
+            Set<Integer> rooms = remoteId == null ? null : remoteRooms.get(remoteId);
+            if (rooms == null || !rooms.contains(roomId)) {
+                continue;
+            }
+            if (!link.queue.offer(new Record(KIND_MESSAGE, roomId, frame.duplicate()))) {
+                framesDropped.increment();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("port", port);
+        int connected = 0;
+        int queued = 0;
+        for (PeerLink link : links) {
+            connected += link.remoteId != null ? 1 : 0;
+            queued += link.queue.size();
+        }
+        stats.put("peers", links.size());
+        stats.put("connectedPeers", connected);
+        stats.put("inboundLinks", inboundLinks.get());
+        stats.put("subscribedRooms", localRooms.size());
+        long records = recordsSent.sum();
+        long batches = batchesSent.sum();
+        stats.put("recordsSent", records);
+        stats.put("recordsPerBatch", batches == 0 ? 0.0 : (double) records / batches);
+        stats.put("framesReceived", framesReceived.sum());
+        stats.put("framesDropped", framesDropped.sum());
+        stats.put("queued", queued);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeQuietly(server);
+        for (PeerLink link : links) {
+            closeQuietly(link.socket);
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                daemon(() -> readLoop(socket), "chat-cluster-in-" + socket.getRemoteSocketAddress()).start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Accepting a cluster peer failed", e);
+                }
+            }
+        }
+    }
+
+    // reads one peer's subscriptions and broadcasts; its subscriptions end with the link
+    private void readLoop(Socket socket) {
+        String remoteId = null;
+        Set<Integer> rooms = ConcurrentHashMap.newKeySet();
+        inboundLinks.incrementAndGet();
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            remoteId = readHello(in);
+            writeHello(out);
+            out.flush();
+            remoteRooms.put(remoteId, rooms);
+            while (running) {
+                int kind = in.readUnsignedByte();
+                int roomId = in.readInt();
+                byte[] payload = readPayload(in);
+                switch (kind) {
+                    case KIND_SUBSCRIBE -> rooms.add(roomId);
+                    case KIND_UNSUBSCRIBE -> rooms.remove(roomId);
+                    case KIND_MESSAGE -> {
+                        framesReceived.increment();
+                        receiver.deliver(roomId, ByteBuffer.wrap(payload));
+                    }
+                    default -> throw new IOException("Unknown cluster record kind " + kind);
+                }
+            }
+        } catch (EOFException e) {
+            // the peer went away; it resubscribes when it reconnects
+        } catch (IOException e) {
+            if (running) {
+                log.warn("Cluster link from {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } finally {
+            inboundLinks.decrementAndGet();
+            if (remoteId != null) {
+                remoteRooms.remove(remoteId, rooms);
+            }
+        }
+    }
+
+    private void writeHello(DataOutputStream out) throws IOException {
+        byte[] id = nodeId.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(KIND_HELLO);
+        out.writeInt(0);
+        out.writeInt(id.length);
+        out.write(id);
+    }
+
+    private static String readHello(DataInputStream in) throws IOException {
+        if (in.readUnsignedByte() != KIND_HELLO) {
+            throw new IOException("Expected a HELLO record");
+        }
+        in.readInt();
+        return new String(readPayload(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readPayload(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Invalid cluster record length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    private static void write(DataOutputStream out, Record record) throws IOException {
+        out.writeByte(record.kind);
+        out.writeInt(record.roomId);
+        ByteBuffer payload = record.payload;
+        if (payload == null) {
+            out.writeInt(0);
+        } else if (payload.hasArray()) {
+            out.writeInt(payload.remaining());
+            out.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private record Record(int kind, int roomId, ByteBuffer payload) {
+    }
+
+    /** Outgoing link to one peer, redialed every reconnectMs while the peer is down. */
+    private final class PeerLink implements Runnable {
+        private final InetSocketAddress address;
+        private final BlockingQueue<Record> queue;
+        private volatile String remoteId;
+        private volatile Socket socket;
+
+        PeerLink(InetSocketAddress address, int queueCapacity) {
+            this.address = address;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * Queues a subscription change. If the queue is full the link is
+         * dropped instead; reconnecting resends the whole subscription set.
+         */
+        void sendControl(int kind, int roomId) {
+            if (remoteId != null && !queue.offer(new Record(kind, roomId, null))) {
+                closeQuietly(socket);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try (Socket connection = new Socket()) {
+                    connection.connect(address, CONNECT_TIMEOUT_MS);
+                    connection.setTcpNoDelay(true);
+                    socket = connection;
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(connection.getOutputStream(), BUFFER_BYTES));
+                    DataInputStream in = new DataInputStream(connection.getInputStream());
+                    writeHello(out);
+                    out.flush();
+                    String peerId = readHello(in);
+                    if (peerId.equals(nodeId)) {
+                        log.info("Cluster peer {} is this node; not linking to it", address);
+                        return;
+                    }
+                    // anything queued was meant for the previous connection; the room set is sent in full
+                    queue.clear();
+                    remoteId = peerId;
+                    for (int roomId : localRooms) {
+                        write(out, new Record(KIND_SUBSCRIBE, roomId, null));
+                    }
+                    out.flush();
+                    log.info("Linked to cluster peer {}", address);
+                    writeLoop(out);
+                } catch (IOException e) {
+                    if (running && remoteId != null) {
+                        log.warn("Cluster link to {} lost: {}", address, e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    remoteId = null;
+                    socket = null;
+                }
+                sleepBeforeRedial();
+            }
+        }
+
+        private void writeLoop(DataOutputStream out) throws IOException, InterruptedException {
+            while (running) {
+                Record record = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    continue;
+                }
+                int records = 0;
+                do {
+                    write(out, record);
+                    records++;
+                } while (records < batchRecords && (record = queue.poll()) != null);
+                out.flush();
+                recordsSent.add(records);
+                batchesSent.increment();
+            }
+        }
+
+        private void sleepBeforeRedial() {
+            try {
+                Thread.sleep(reconnectMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package vito.codec;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import vito.model.BroadcastMessage;
+import vito.model.ChatMessage;
+import vito.model.ChatMessageBatch;
+import vito.model.MessageType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Compact binary encoding spoken on {@link WireProtocol#BINARY} connections.
+ * Integers are unsigned LEB128 varints, strings are a varint byte length
+ * followed by UTF-8, timestamps are big-endian epoch milliseconds.
+ *
+ * <pre>
+ * chat message   flags:u8 (0) | fields
+ * batch          flags:u8 (1) | count:varint | count x fields
+ * fields         type:u8 | userId:varint | username:str | message:str | timestamp:i64 [| messageId:str]
+ * ack            kind:u8 (0)  | result
+ * result         status:u8 (0 OK, 1 ERROR, 2 RATE_LIMITED) | serverTimestamp:i64 | message:str [| messageId:str]
+ * broadcast      kind:u8 (1)  | roomId:varint | chat message
+ * batch ack      kind:u8 (2)  | count:varint | count x result
+ * </pre>
+ *
+ * The flags byte is reserved for optional fields: with FLAG_MESSAGE_ID (2) set,
+ * every message of the frame carries a messageId. Frames with unknown flags are
+ * rejected. A result carries a messageId when its status has
+ * STATUS_FLAG_MESSAGE_ID (0x80) set.
+ */
+@Component
+public class BinaryChatCodec implements ReplyEncoder {
+    public static final int KIND_ACK = 0;
+    public static final int KIND_BROADCAST = 1;
+    public static final int KIND_BATCH_ACK = 2;
+    public static final int FLAG_BATCH = 1;
+    public static final int FLAG_MESSAGE_ID = 2;
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERROR = 1;
+    public static final int STATUS_RATE_LIMITED = 2;
+    public static final int STATUS_FLAG_MESSAGE_ID = 0x80;
+    private static final int MAX_STRING_BYTES = 64 * 1024;
+    private static final String JOINED_PREFIX = "You have joined the chat: ";
+    private static final String LEFT_PREFIX = "You have left the chat: ";
+
+    private final EncodeBufferPool pool = new EncodeBufferPool(Runtime.getRuntime().availableProcessors() * 2);
+
+    public static boolean isBatch(ByteBuffer frame) {
+        return frame.hasRemaining() && (frame.get(frame.position()) & FLAG_BATCH) != 0;
+    }
+
+    public void decode(ByteBuffer frame, ChatMessage into) throws MalformedFrameException {
+        try {
+            int flags = frame.get();
+            if ((flags & ~FLAG_MESSAGE_ID) != 0) {
+                throw new MalformedFrameException("Unknown flags");
+            }
+            readMessage(frame, into, (flags & FLAG_MESSAGE_ID) != 0);
+        } catch (BufferUnderflowException e) {
+            throw new MalformedFrameException("Truncated frame");
+        }
+        if (frame.hasRemaining()) {
+            throw new MalformedFrameException("Unexpected content after the message");
+        }
+    }
+
+    /** Decodes a batch frame into the batch's reusable holders; at most maxSize messages. */
+    public void decodeBatch(ByteBuffer frame, ChatMessageBatch into, int maxSize) throws MalformedFrameException {
+        into.clear();
+        try {
+            int flags = frame.get();
+            if ((flags & ~FLAG_MESSAGE_ID) != FLAG_BATCH) {
+                throw new MalformedFrameException("Unknown flags");
+            }
+            boolean messageIds = (flags & FLAG_MESSAGE_ID) != 0;
+            int count = readVarint(frame);
+            if (count < 0 || count > maxSize) {
+                throw new MalformedFrameException("Batch larger than " + maxSize + " messages");
+            }
+            for (int i = 0; i < count; i++) {
+                readMessage(frame, into.next(), messageIds);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new MalformedFrameException("Truncated frame");
+        }
+        if (frame.hasRemaining()) {
+            throw new MalformedFrameException("Unexpected content after the batch");
+        }
+    }
+
+    private static void readMessage(ByteBuffer frame, ChatMessage into, boolean messageId)
+            throws MalformedFrameException {
+        int type = frame.get() & 0xFF;
+        if (type >= MessageType.VALUES.length) {
+            throw new MalformedFrameException("Invalid messageType");
+        }
+        into.setMessageType(MessageType.VALUES[type]);
+        into.setUserId(Integer.toUnsignedString(readVarint(frame)));
+        into.setUserName(readString(frame));
+        into.setMessage(readString(frame));
+        into.setTimestamp(Instant.ofEpochMilli(frame.getLong()));
+        into.setMessageId(messageId ? readString(frame) : null);
+    }
+
+    /** Decodes a broadcast frame, as relayed between cluster nodes, into the holder; returns its roomId. */
+    public int decodeBroadcast(ByteBuffer frame, ChatMessage into) throws MalformedFrameException {
+        int roomId;
+        try {
+            if (frame.get() != KIND_BROADCAST) {
+                throw new MalformedFrameException("Not a broadcast");
+            }
+            roomId = readVarint(frame);
+            if (frame.get() != 0) {
+                throw new MalformedFrameException("Unknown flags");
+            }
+            readMessage(frame, into, false);
+        } catch (BufferUnderflowException e) {
+            throw new MalformedFrameException("Truncated frame");
+        }
+        if (frame.hasRemaining()) {
+            throw new MalformedFrameException("Unexpected content after the message");
+        }
+        return roomId;
+    }
+
+    public BinaryMessage broadcast(BroadcastMessage message) {
+        EncodeBuffer buffer = pool.acquire();
+        try {
+            buffer.appendByte(KIND_BROADCAST);
+            buffer.appendVarint(message.getRoomId());
+            buffer.appendByte(0);
+            buffer.appendByte(message.getMessageType().ordinal());
+            // validated before broadcast: 1..100000
+            buffer.appendVarint(Integer.parseInt(message.getUserId()));
+            buffer.appendLengthPrefixedUtf8(message.getUsername());
+            buffer.appendLengthPrefixedUtf8(message.getMessage());
+            buffer.appendInt64(message.getTimestamp().toEpochMilli());
+            return new BinaryMessage(buffer.toByteArray());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    @Override
+    public BinaryMessage ok(String message, String messageId) {
+        return ack(STATUS_OK, null, message, messageId);
+    }
+
+    @Override
+    public BinaryMessage joined(String message, String messageId) {
+        return ack(STATUS_OK, JOINED_PREFIX, message, messageId);
+    }
+
+    @Override
+    public BinaryMessage left(String message, String messageId) {
+        return ack(STATUS_OK, LEFT_PREFIX, message, messageId);
+    }
+
+    @Override
+    public BinaryMessage error(String message, String messageId) {
+        return ack(STATUS_ERROR, null, message, messageId);
+    }
+
+    @Override
+    public BinaryMessage rateLimited(String message, String messageId) {
+        return ack(STATUS_RATE_LIMITED, null, message, messageId);
+    }
+
+    @Override
+    public BinaryMessage parseError() {
+        return ack(STATUS_ERROR, null, "Unable to parse message", null);
+    }
+
+    @Override
+    public Batch batch(int size) {
+        EncodeBuffer buffer = pool.acquire();
+        buffer.appendByte(KIND_BATCH_ACK);
+        buffer.appendVarint(size);
+        return new BinaryBatch(buffer);
+    }
+
+    private BinaryMessage ack(int status, String messagePrefix, String message, String messageId) {
+        EncodeBuffer buffer = pool.acquire();
+        try {
+            buffer.appendByte(KIND_ACK);
+            appendResult(buffer, status, messagePrefix, message, messageId);
+            return new BinaryMessage(buffer.toByteArray());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private static void appendResult(EncodeBuffer buffer, int status, String messagePrefix, String message,
+                                     String messageId) {
+        buffer.appendByte(messageId == null ? status : status | STATUS_FLAG_MESSAGE_ID);
+        buffer.appendInt64(System.currentTimeMillis());
+        buffer.appendLengthPrefixedUtf8(messagePrefix == null ? message : messagePrefix + message);
+        if (messageId != null) {
+            buffer.appendLengthPrefixedUtf8(messageId);
+        }
+    }
+
+    // holds a pooled buffer from batch() until finish()
+    private final class BinaryBatch implements Batch {
+        private final EncodeBuffer buffer;
+
+        private BinaryBatch(EncodeBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void ok(String message, String messageId) {
+            appendResult(buffer, STATUS_OK, null, message, messageId);
+        }
+
+        @Override
+        public void joined(String message, String messageId) {
+            appendResult(buffer, STATUS_OK, JOINED_PREFIX, message, messageId);
+        }
+
+        @Override
+        public void left(String message, String messageId) {
+            appendResult(buffer, STATUS_OK, LEFT_PREFIX, message, messageId);
+        }
+
+        @Override
+        public void error(String message, String messageId) {
+            appendResult(buffer, STATUS_ERROR, null, message, messageId);
+        }
+
+        @Override
+        public void rateLimited(String message, String messageId) {
+            appendResult(buffer, STATUS_RATE_LIMITED, null, message, messageId);
+        }
+
+        @Override
+        public BinaryMessage finish() {
+            try {
+                return new BinaryMessage(buffer.toByteArray());
+            } finally {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    private static int readVarint(ByteBuffer frame) throws MalformedFrameException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = frame.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new MalformedFrameException("Varint too long");
+    }
+
+    private static String readString(ByteBuffer frame) throws MalformedFrameException {
+        int length = readVarint(frame);
+        if (length < 0 || length > MAX_STRING_BYTES || length > frame.remaining()) {
+            throw new MalformedFrameException("Invalid string length");
+        }
+        String value;
+        if (frame.hasArray()) {
+            value = new String(frame.array(), frame.arrayOffset() + frame.position(), length, StandardCharsets.UTF_8);
+            frame.position(frame.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            frame.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
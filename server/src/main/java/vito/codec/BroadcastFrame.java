@@ -0,0 +1,55 @@
+package vito.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import vito.model.BroadcastMessage;
+
+import java.io.IOException;
+
+/**
+ * One room broadcast, encoded at most once per wire format and shared by every
+ * recipient speaking that format. Used by the single thread running the
+ * broadcast, so the lazy fields need no synchronization.
+ */
+public final class BroadcastFrame {
+    private final BroadcastMessage message;
+    private final ObjectMapper objectMapper;
+    private final BinaryChatCodec binaryCodec;
+    private TextMessage text;
+    private BinaryMessage binary;
+
+    public BroadcastFrame(BroadcastMessage message, ObjectMapper objectMapper, BinaryChatCodec binaryCodec) {
+        this.message = message;
+        this.objectMapper = objectMapper;
+        this.binaryCodec = binaryCodec;
+    }
+
+    public BroadcastMessage getMessage() {
+        return message;
+    }
+
+    public WebSocketMessage<?> encodedFor(WebSocketSession member) throws IOException {
+        if (WireProtocol.isBinary(member)) {
+            // sending consumes the buffer's position, so each member gets its own view of the shared bytes
+            return new BinaryMessage(binary().getPayload().duplicate());
+        }
+        return text();
+    }
+
+    public TextMessage text() throws IOException {
+        if (text == null) {
+            text = new TextMessage(objectMapper.writeValueAsString(message));
+        }
+        return text;
+    }
+
+    public BinaryMessage binary() {
+        if (binary == null) {
+            binary = binaryCodec.broadcast(message);
+        }
+        return binary;
+    }
+}
@@ -0,0 +1,257 @@
+package vito.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import vito.model.ChatMessage;
+import vito.model.ChatMessageBatch;
+import vito.model.MessageType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Decodes an inbound chat frame with a streaming parser straight into a reusable
+ * {@link ChatMessage}, without databind. Field names come from the parser's
+ * symbol table and enum values and numeric timestamps are matched in the token
+ * buffer, so the only allocations are the string fields and the Instant.
+ * Unknown fields, nested values and trailing content are rejected as soon as
+ * they are seen. A frame whose top-level value is an array is a batch of
+ * messages.
+ */
+@Component
+public class ChatMessageDecoder {
+    private static final int NANOS_DIGITS = 9;
+
+    private final JsonFactory jsonFactory;
+
+    public ChatMessageDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public void decode(String payload, ChatMessage into) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            decode(parser, into);
+        }
+    }
+
+    public void decode(InputStream utf8, ChatMessage into) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(utf8)) {
+            decode(parser, into);
+        }
+    }
+
+    /** True if the frame is a batch, i.e. its first non-whitespace character opens an array. */
+    public static boolean isBatch(String payload) {
+        for (int i = 0; i < payload.length(); i++) {
+            char c = payload.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes a batch frame, a JSON array of chat messages, into the batch's
+     * reusable holders.
+     *
+     * @throws JsonParseException if the array holds more than maxSize messages
+     */
+    public void decodeBatch(String payload, ChatMessageBatch into, int maxSize) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            decodeBatch(parser, into, maxSize);
+        }
+    }
+
+    public void decodeBatch(InputStream utf8, ChatMessageBatch into, int maxSize) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(utf8)) {
+            decodeBatch(parser, into, maxSize);
+        }
+    }
+
+    private void decodeBatch(JsonParser parser, ChatMessageBatch into, int maxSize) throws IOException {
+        into.clear();
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON array");
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            if (into.size() == maxSize) {
+                throw new JsonParseException(parser, "Batch larger than " + maxSize + " messages");
+            }
+            readFields(parser, into.next());
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON object or end of array");
+        }
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected content after the batch");
+        }
+    }
+
+    private void decode(JsonParser parser, ChatMessage into) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        readFields(parser, into);
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected content after the message");
+        }
+    }
+
+    // reads the fields of an object whose START_OBJECT has been consumed, up to and including END_OBJECT
+    private static void readFields(JsonParser parser, ChatMessage into) throws IOException {
+        into.setUserId(null);
+        into.setUserName(null);
+        into.setMessage(null);
+        into.setTimestamp(null);
+        into.setMessageType(null);
+        into.setMessageId(null);
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "userId":
+                    into.setUserId(readText(parser, value));
+                    break;
+                // the load client serializes the getUserName() property
+                case "username":
+                case "userName":
+                    into.setUserName(readText(parser, value));
+                    break;
+                case "message":
+                    into.setMessage(readText(parser, value));
+                    break;
+                case "timestamp":
+                    into.setTimestamp(readTimestamp(parser, value));
+                    break;
+                case "messageType":
+                    into.setMessageType(readMessageType(parser, value));
+                    break;
+                case "messageId":
+                    into.setMessageId(readText(parser, value));
+                    break;
+                default:
+                    throw new JsonParseException(parser, "Unknown field '" + field + "'");
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Expected a field name or end of object");
+        }
+    }
+
+    // scalars are coerced to text the way databind's StringDeserializer does
+    private static String readText(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == null || !value.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a scalar value");
+        }
+        return parser.getText();
+    }
+
+    // numbers are epoch seconds with an optional nanosecond fraction, strings are ISO-8601
+    private static Instant readTimestamp(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return Instant.ofEpochSecond(parser.getLongValue());
+        }
+        if (value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return readDecimalSeconds(parser);
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Instant.parse(parser.getText());
+            } catch (DateTimeParseException e) {
+                throw new JsonParseException(parser, "Invalid timestamp", e);
+            }
+        }
+        throw new JsonParseException(parser, "Expected a timestamp");
+    }
+
+    private static Instant readDecimalSeconds(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int i = parser.getTextOffset();
+        int end = i + parser.getTextLength();
+        boolean negative = chars[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long seconds = 0;
+        for (; i < end && chars[i] != '.'; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9' || seconds > Long.MAX_VALUE / 10) {
+                return readExponentSeconds(parser);
+            }
+            seconds = seconds * 10 + (c - '0');
+        }
+        long nanos = 0;
+        int digits = 0;
+        for (i++; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return readExponentSeconds(parser);
+            }
+            if (digits < NANOS_DIGITS) {
+                nanos = nanos * 10 + (c - '0');
+                digits++;
+            }
+        }
+        for (; digits < NANOS_DIGITS; digits++) {
+            nanos *= 10;
+        }
+        return negative ? Instant.ofEpochSecond(-seconds, -nanos) : Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    // rare: exponent notation or out-of-range values
+    private static Instant readExponentSeconds(JsonParser parser) throws IOException {
+        try {
+            BigDecimal decimal = parser.getDecimalValue();
+            long seconds = decimal.longValueExact();
+            int nanos = decimal.subtract(BigDecimal.valueOf(seconds)).movePointRight(NANOS_DIGITS).intValue();
+            return Instant.ofEpochSecond(seconds, nanos);
+        } catch (ArithmeticException e) {
+            throw new JsonParseException(parser, "Timestamp out of range", e);
+        }
+    }
+
+    private static MessageType readMessageType(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            for (MessageType type : MessageType.VALUES) {
+                if (matches(chars, offset, length, type.name())) {
+                    return type;
+                }
+            }
+        }
+        throw new JsonParseException(parser, "Invalid messageType");
+    }
+
+    private static boolean matches(char[] chars, int offset, int length, String expected) {
+        if (length != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
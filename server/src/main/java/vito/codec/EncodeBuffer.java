@@ -0,0 +1,201 @@
+package vito.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Growable byte buffer reused across encodes through {@link EncodeBufferPool}.
+ * Strings are appended as JSON string content (escaped, UTF-8) or as
+ * length-prefixed UTF-8 without intermediate copies.
+ */
+final class EncodeBuffer {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes;
+    private int length;
+
+    EncodeBuffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int capacity() {
+        return bytes.length;
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    String toUtf8String() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    byte[] toByteArray() {
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, 0, copy, 0, length);
+        return copy;
+    }
+
+    void append(byte[] constant) {
+        ensureCapacity(constant.length);
+        System.arraycopy(constant, 0, bytes, length, constant.length);
+        length += constant.length;
+    }
+
+    void appendByte(int b) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) b;
+    }
+
+    /** Appends {@code value} as exactly {@code width} zero-padded ASCII digits. */
+    void appendDigits(int value, int width) {
+        ensureCapacity(width);
+        for (int i = length + width - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += width;
+    }
+
+    void appendLong(long value) {
+        if (value < 0) {
+            appendByte('-');
+            if (value == Long.MIN_VALUE) {
+                append("9223372036854775808".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    /** Appends an unsigned LEB128 varint. */
+    void appendVarint(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    /** Appends a big-endian 64-bit value. */
+    void appendInt64(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[length++] = (byte) (value >>> shift);
+        }
+    }
+
+    /** Appends the UTF-8 length of {@code value} as a varint, then its UTF-8 bytes. */
+    void appendLengthPrefixedUtf8(String value) {
+        int n = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length++;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                utf8Length++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        appendVarint(utf8Length);
+        if (utf8Length == n) {
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                bytes[length++] = (byte) value.charAt(i);
+            }
+        } else {
+            appendUtf8(value, false);
+        }
+    }
+
+    /** Appends the content of a JSON string (no surrounding quotes), escaped the way Jackson does by default. */
+    void appendJsonString(CharSequence value) {
+        appendUtf8(value, true);
+    }
+
+    private void appendUtf8(CharSequence value, boolean jsonEscape) {
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (jsonEscape && (c < 0x20 || c == '"' || c == '\\')) {
+                appendEscaped(c);
+            } else if (c < 0x80) {
+                ensureCapacity(1);
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate: same replacement String.getBytes(UTF_8) would produce
+                appendByte('?');
+            } else {
+                ensureCapacity(3);
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void appendEscaped(char c) {
+        ensureCapacity(6);
+        bytes[length++] = '\\';
+        switch (c) {
+            case '"' -> bytes[length++] = '"';
+            case '\\' -> bytes[length++] = '\\';
+            case '\n' -> bytes[length++] = 'n';
+            case '\r' -> bytes[length++] = 'r';
+            case '\t' -> bytes[length++] = 't';
+            case '\b' -> bytes[length++] = 'b';
+            case '\f' -> bytes[length++] = 'f';
+            default -> {
+                bytes[length++] = 'u';
+                bytes[length++] = '0';
+                bytes[length++] = '0';
+                bytes[length++] = HEX[c >> 4];
+                bytes[length++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package vito.codec;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Small lock-free pool of {@link EncodeBuffer}s. Not thread-local, so it stays
+ * bounded when encoding runs on many short-lived (or virtual) threads; when all
+ * slots are taken a fresh buffer is handed out and dropped on release.
+ */
+final class EncodeBufferPool {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+    private final AtomicReferenceArray<EncodeBuffer> slots;
+
+    EncodeBufferPool(int size) {
+        this.slots = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.set(i, new EncodeBuffer(INITIAL_CAPACITY));
+        }
+    }
+
+    EncodeBuffer acquire() {
+        int start = (int) (Thread.currentThread().getId() % slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            int index = (start + i) % slots.length();
+            EncodeBuffer buffer = slots.getAndSet(index, null);
+            if (buffer != null) {
+                buffer.reset();
+                return buffer;
+            }
+        }
+        return new EncodeBuffer(INITIAL_CAPACITY);
+    }
+
+    void release(EncodeBuffer buffer) {
+        if (buffer.capacity() > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        int start = (int) (Thread.currentThread().getId() % slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.compareAndSet((start + i) % slots.length(), null, buffer)) {
+                return;
+            }
+        }
+    }
+}
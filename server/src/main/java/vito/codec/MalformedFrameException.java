@@ -0,0 +1,11 @@
+package vito.codec;
+
+import java.io.IOException;
+
+/** Thrown when a binary chat frame is truncated or carries invalid values. */
+public class MalformedFrameException extends IOException {
+
+    public MalformedFrameException(String message) {
+        super(message);
+    }
+}
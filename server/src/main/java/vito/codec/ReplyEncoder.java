@@ -0,0 +1,46 @@
+package vito.codec;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+/**
+ * Encodes the replies the chat handler sends back to a message's sender, in the
+ * wire format of that sender's connection. Every reply echoes the messageId of
+ * the message it answers; a null messageId is left out.
+ */
+public interface ReplyEncoder {
+
+    WebSocketMessage<?> ok(String message, String messageId);
+
+    WebSocketMessage<?> joined(String message, String messageId);
+
+    WebSocketMessage<?> left(String message, String messageId);
+
+    WebSocketMessage<?> error(String message, String messageId);
+
+    /** The message was dropped unprocessed because its session or user is over the rate limit. */
+    WebSocketMessage<?> rateLimited(String message, String messageId);
+
+    WebSocketMessage<?> parseError();
+
+    /** Starts the acknowledgement of a batch frame holding size messages. */
+    Batch batch(int size);
+
+    /**
+     * One acknowledgement frame for a whole batch: exactly one result per message,
+     * added in the batch's order, then {@link #finish()}.
+     */
+    interface Batch {
+
+        void ok(String message, String messageId);
+
+        void joined(String message, String messageId);
+
+        void left(String message, String messageId);
+
+        void error(String message, String messageId);
+
+        void rateLimited(String message, String messageId);
+
+        WebSocketMessage<?> finish();
+    }
+}
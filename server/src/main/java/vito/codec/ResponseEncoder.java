@@ -0,0 +1,196 @@
+package vito.codec;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Encodes {@link vito.model.ServerResponse} JSON without databind. The constant
+ * parts of every reply are pre-encoded; only the timestamp and the message text
+ * are written per response, into a pooled buffer. The field order and the
+ * ISO-8601 timestamp match what the ObjectMapper produced, at millisecond
+ * precision. A batch acknowledgement is a JSON array of such responses.
+ */
+@Component
+public class ResponseEncoder implements ReplyEncoder {
+    private static final byte[] OK_PREFIX = ascii("{\"status\":\"OK\",\"serverTimestamp\":\"");
+    private static final byte[] ERROR_PREFIX = ascii("{\"status\":\"ERROR\",\"serverTimestamp\":\"");
+    private static final byte[] RATE_LIMITED_PREFIX = ascii("{\"status\":\"RATE_LIMITED\",\"serverTimestamp\":\"");
+    private static final byte[] MESSAGE_FIELD = ascii("Z\",\"message\":\"");
+    private static final byte[] MESSAGE_ID_FIELD = ascii("\",\"messageId\":\"");
+    private static final byte[] END = ascii("\"}");
+    private static final byte[] JOINED = ascii("You have joined the chat: ");
+    private static final byte[] LEFT = ascii("You have left the chat: ");
+    private static final byte[] PARSE_ERROR_TAIL = ascii("Z\",\"message\":\"Unable to parse JSON\"}");
+
+    private final EncodeBufferPool pool = new EncodeBufferPool(Runtime.getRuntime().availableProcessors() * 2);
+    private volatile CachedSecond cachedSecond = new CachedSecond(0);
+
+    @Override
+    public TextMessage ok(String message, String messageId) {
+        return encode(OK_PREFIX, null, message, messageId);
+    }
+
+    @Override
+    public TextMessage joined(String message, String messageId) {
+        return encode(OK_PREFIX, JOINED, message, messageId);
+    }
+
+    @Override
+    public TextMessage left(String message, String messageId) {
+        return encode(OK_PREFIX, LEFT, message, messageId);
+    }
+
+    @Override
+    public TextMessage error(String message, String messageId) {
+        return encode(ERROR_PREFIX, null, message, messageId);
+    }
+
+    @Override
+    public TextMessage rateLimited(String message, String messageId) {
+        return encode(RATE_LIMITED_PREFIX, null, message, messageId);
+    }
+
+    @Override
+    public TextMessage parseError() {
+        EncodeBuffer buffer = pool.acquire();
+        try {
+            buffer.append(ERROR_PREFIX);
+            appendTimestamp(buffer);
+            buffer.append(PARSE_ERROR_TAIL);
+            return new TextMessage(buffer.toUtf8String());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    @Override
+    public Batch batch(int size) {
+        return new JsonBatch(pool.acquire());
+    }
+
+    private TextMessage encode(byte[] statusPrefix, byte[] messagePrefix, String message, String messageId) {
+        EncodeBuffer buffer = pool.acquire();
+        try {
+            appendResponse(buffer, statusPrefix, messagePrefix, message, messageId);
+            return new TextMessage(buffer.toUtf8String());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private void appendResponse(EncodeBuffer buffer, byte[] statusPrefix, byte[] messagePrefix, String message,
+                                String messageId) {
+        buffer.append(statusPrefix);
+        appendTimestamp(buffer);
+        buffer.append(MESSAGE_FIELD);
+        if (messagePrefix != null) {
+            buffer.append(messagePrefix);
+        }
+        buffer.appendJsonString(message);
+        if (messageId != null) {
+            buffer.append(MESSAGE_ID_FIELD);
+            buffer.appendJsonString(messageId);
+        }
+        buffer.append(END);
+    }
+
+    // writes yyyy-MM-ddTHH:mm:ss.SSS (the closing Z is part of the next fragment)
+    private void appendTimestamp(EncodeBuffer buffer) {
+        long nowMs = System.currentTimeMillis();
+        long epochSecond = Math.floorDiv(nowMs, 1000L);
+        CachedSecond second = cachedSecond;
+        if (second.epochSecond != epochSecond) {
+            second = new CachedSecond(epochSecond);
+            cachedSecond = second;
+        }
+        buffer.append(second.prefix);
+        buffer.appendDigits((int) Math.floorMod(nowMs, 1000L), 3);
+    }
+
+    // holds a pooled buffer from batch() until finish()
+    private final class JsonBatch implements Batch {
+        private final EncodeBuffer buffer;
+        private boolean first = true;
+
+        private JsonBatch(EncodeBuffer buffer) {
+            this.buffer = buffer;
+            buffer.appendByte('[');
+        }
+
+        @Override
+        public void ok(String message, String messageId) {
+            add(OK_PREFIX, null, message, messageId);
+        }
+
+        @Override
+        public void joined(String message, String messageId) {
+            add(OK_PREFIX, JOINED, message, messageId);
+        }
+
+        @Override
+        public void left(String message, String messageId) {
+            add(OK_PREFIX, LEFT, message, messageId);
+        }
+
+        @Override
+        public void error(String message, String messageId) {
+            add(ERROR_PREFIX, null, message, messageId);
+        }
+
+        @Override
+        public void rateLimited(String message, String messageId) {
+            add(RATE_LIMITED_PREFIX, null, message, messageId);
+        }
+
+        private void add(byte[] statusPrefix, byte[] messagePrefix, String message, String messageId) {
+            if (!first) {
+                buffer.appendByte(',');
+            }
+            first = false;
+            appendResponse(buffer, statusPrefix, messagePrefix, message, messageId);
+        }
+
+        @Override
+        public TextMessage finish() {
+            try {
+                buffer.appendByte(']');
+                return new TextMessage(buffer.toUtf8String());
+            } finally {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class CachedSecond {
+        private final long epochSecond;
+        private final byte[] prefix;
+
+        private CachedSecond(long epochSecond) {
+            this.epochSecond = epochSecond;
+            LocalDateTime time = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+            EncodeBuffer buffer = new EncodeBuffer(20);
+            buffer.appendDigits(time.getYear(), 4);
+            buffer.appendByte('-');
+            buffer.appendDigits(time.getMonthValue(), 2);
+            buffer.appendByte('-');
+            buffer.appendDigits(time.getDayOfMonth(), 2);
+            buffer.appendByte('T');
+            buffer.appendDigits(time.getHour(), 2);
+            buffer.appendByte(':');
+            buffer.appendDigits(time.getMinute(), 2);
+            buffer.appendByte(':');
+            buffer.appendDigits(time.getSecond(), 2);
+            buffer.appendByte('.');
+            this.prefix = new byte[buffer.length()];
+            System.arraycopy(buffer.bytes(), 0, prefix, 0, prefix.length);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package vito.codec;
+
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * WebSocket subprotocols a client may request. Connections that request none
+ * speak {@link #JSON}.
+ */
+public final class WireProtocol {
+    public static final String JSON = "chat.json.v1";
+    public static final String BINARY = "chat.binary.v1";
+
+    private WireProtocol() {
+    }
+
+    public static boolean isBinary(WebSocketSession session) {
+        return BINARY.equals(session.getAcceptedProtocol());
+    }
+}
@@ -0,0 +1,20 @@
+package vito.config;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import vito.metrics.ChatMetrics;
+
+@RestController
+public class MetricsController {
+
+    private final ChatMetrics chatMetrics;
+
+    public MetricsController(ChatMetrics chatMetrics) {
+        this.chatMetrics = chatMetrics;
+    }
+
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String metrics() {
+        return chatMetrics.scrape();
+    }
+}
@@ -0,0 +1,23 @@
+package vito.config;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import vito.session.PresenceRegistry;
+import vito.session.PresenceSnapshot;
+
+@RestController
+public class PresenceController {
+
+    private final PresenceRegistry presenceRegistry;
+
+    public PresenceController(PresenceRegistry presenceRegistry) {
+        this.presenceRegistry = presenceRegistry;
+    }
+
+    @GetMapping("/rooms/{roomId}/presence")
+    public PresenceSnapshot presence(@PathVariable int roomId, @RequestParam(defaultValue = "1000") int limit) {
+        return presenceRegistry.snapshot(roomId, limit);
+    }
+}
@@ -0,0 +1,55 @@
+package vito.config;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Resolves the room id from /chat/{roomId} once per connection and stores it in
+ * the session attributes; handshakes with a missing or non-numeric room id are
+ * rejected with 400.
+ */
+public class RoomHandshakeInterceptor implements HandshakeInterceptor {
+    public static final String ROOM_ID_KEY = "roomId";
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        int roomId = parseRoomId(request.getURI().getPath());
+        if (roomId <= 0) {
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return false;
+        }
+        attributes.put(ROOM_ID_KEY, roomId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    // returns -1 when the last path segment is not a positive integer
+    public static int parseRoomId(String path) {
+        if (path == null) {
+            return -1;
+        }
+        int start = path.lastIndexOf('/') + 1;
+        if (start >= path.length() || path.length() - start > 9) {
+            return -1;
+        }
+        int roomId = 0;
+        for (int i = start; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            roomId = roomId * 10 + (c - '0');
+        }
+        return roomId;
+    }
+}
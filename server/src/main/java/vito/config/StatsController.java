@@ -0,0 +1,54 @@
+package vito.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import vito.cluster.ClusterRelay;
+import vito.dedup.DedupCache;
+import vito.dispatch.DispatchExecutor;
+import vito.outbound.OutboundPipeline;
+import vito.ratelimit.RateLimiter;
+import vito.room.RoomRegistry;
+import vito.store.MessageLog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+public class StatsController {
+
+    // servlet engine only; absent under -Preactive
+    private final ObjectProvider<DispatchExecutor> dispatchExecutor;
+    private final ObjectProvider<OutboundPipeline> outboundPipeline;
+    private final ObjectProvider<MessageLog> messageLog;
+    private final ObjectProvider<ClusterRelay> clusterRelay;
+    private final RoomRegistry roomRegistry;
+    private final RateLimiter rateLimiter;
+    private final DedupCache dedupCache;
+
+    public StatsController(ObjectProvider<DispatchExecutor> dispatchExecutor,
+                           ObjectProvider<OutboundPipeline> outboundPipeline, ObjectProvider<MessageLog> messageLog,
+                           RoomRegistry roomRegistry, ObjectProvider<ClusterRelay> clusterRelay,
+                           RateLimiter rateLimiter, DedupCache dedupCache) {
+        this.dispatchExecutor = dispatchExecutor;
+        this.outboundPipeline = outboundPipeline;
+        this.messageLog = messageLog;
+        this.roomRegistry = roomRegistry;
+        this.clusterRelay = clusterRelay;
+        this.rateLimiter = rateLimiter;
+        this.dedupCache = dedupCache;
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        dispatchExecutor.ifAvailable(dispatch -> stats.put("dispatch", dispatch.stats()));
+        outboundPipeline.ifAvailable(outbound -> stats.put("outbound", outbound.stats()));
+        messageLog.ifAvailable(log -> stats.put("log", log.stats()));
+        stats.put("history", roomRegistry.historyStats());
+        clusterRelay.ifAvailable(cluster -> stats.put("cluster", cluster.stats()));
+        stats.put("rateLimit", rateLimiter.stats());
+        stats.put("dedup", dedupCache.stats());
+        return stats;
+    }
+}
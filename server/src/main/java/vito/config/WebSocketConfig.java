@@ -1,5 +1,6 @@
 package vito.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
@@ -8,6 +9,7 @@ import vito.handler.ChatWebSocketHandler;
 
 @Configuration
 @EnableWebSocket
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ChatWebSocketHandler chatWebSocketHandler;
@@ -18,6 +20,8 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(chatWebSocketHandler, "/chat/*").setAllowedOrigins("*");
+        registry.addHandler(chatWebSocketHandler, "/chat/*")
+                .addInterceptors(new RoomHandshakeInterceptor())
+                .setAllowedOrigins("*");
     }
 }
@@ -0,0 +1,229 @@
+package vito.dedup;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vito.model.MessageType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the ack of every processed message that carried a messageId, so a
+ * retry of it can be answered with the original ack instead of being processed
+ * again. Entries are kept per userId: at most perUser of them, each for ttl.
+ * A sweeper thread drops expired entries and users with none left. At most
+ * maxUsers users are tracked; past that, new users' messages are not remembered.
+ * Memory is reported as an estimate from entry and string sizes.
+ * A retry may carry its attempt number as messageId#attempt, so its ack can be
+ * told apart from a late ack of an earlier attempt; entries are kept by the
+ * messageId before the '#'.
+ */
+@Component
+public class DedupCache {
+    // LinkedHashMap entry, Reply, and the two String objects with their arrays
+    private static final int ENTRY_OVERHEAD_BYTES = 136;
+    // ConcurrentHashMap node, the userId String, UserEntries and its LinkedHashMap
+    private static final int USER_OVERHEAD_BYTES = 176;
+
+    private final boolean enabled;
+    private final int perUser;
+    private final long ttlNanos;
+    private final int maxUsers;
+    private final ConcurrentHashMap<String, UserEntries> users;
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder entryBytes = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    public DedupCache(@Value("${chat.dedup.enabled:true}") boolean enabled,
+                      @Value("${chat.dedup.per-user:32}") int perUser,
+                      @Value("${chat.dedup.ttl-ms:60000}") long ttlMs,
+                      @Value("${chat.dedup.max-users:200000}") int maxUsers) {
+        this.enabled = enabled;
+        this.perUser = perUser;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxUsers = maxUsers;
+        this.users = new ConcurrentHashMap<>(Math.min(maxUsers, 1 << 16));
+        if (enabled) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-dedup-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(ttlMs / 2, 1);
+            sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    /** The original ack of the user's message with this id, or null if it was not processed recently. */
+    public Reply get(String userId, String messageId) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(messageId);
+        lookups.increment();
+        UserEntries user = users.get(userId);
+        if (user == null) {
+            return null;
+        }
+        Reply reply;
+        synchronized (user) {
+            user.expire(System.nanoTime());
+            reply = user.replies.get(key);
+        }
+        if (reply != null) {
+            hits.increment();
+        }
+        return reply;
+    }
+
+    /** Remembers the ack of a processed message; the user's oldest entry goes if it has perUser already. */
+    public void put(String userId, String messageId, MessageType type, String message) {
+        if (!enabled) {
+            return;
+        }
+        if (!users.containsKey(userId) && users.size() >= maxUsers) {
+            untracked.increment();
+            return;
+        }
+        String key = key(messageId);
+        long now = System.nanoTime();
+        Reply reply = new Reply(type, message, now + ttlNanos);
+        // compute keeps the insert atomic with the sweeper removing an emptied user
+        users.compute(userId, (id, user) -> {
+            UserEntries target = user != null ? user : new UserEntries();
+            synchronized (target) {
+                target.expire(now);
+                // removed first so the entry moves to the end, keeping insertion order the expiry order
+                Reply replaced = target.replies.remove(key);
+                if (replaced != null) {
+                    target.removed(key, replaced);
+                } else if (target.replies.size() >= perUser) {
+                    target.removeEldest();
+                    evicted.increment();
+                }
+                target.replies.put(key, reply);
+                entries.increment();
+                entryBytes.add(bytes(key, reply));
+            }
+            return target;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        long lookupCount = lookups.sum();
+        long hitCount = hits.sum();
+        stats.put("lookups", lookupCount);
+        stats.put("hits", hitCount);
+        stats.put("hitRate", lookupCount == 0 ? 0.0 : (double) hitCount / lookupCount);
+        int userCount = users.size();
+        stats.put("users", userCount);
+        stats.put("entries", entries.sum());
+        stats.put("estimatedBytes", entryBytes.sum() + (long) userCount * USER_OVERHEAD_BYTES);
+        stats.put("evictedBeforeExpiry", evicted.sum());
+        stats.put("untrackedMessages", untracked.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (String userId : users.keySet()) {
+            users.computeIfPresent(userId, (id, user) -> {
+                synchronized (user) {
+                    user.expire(now);
+                    return user.replies.isEmpty() ? null : user;
+                }
+            });
+        }
+    }
+
+    /** The messageId without a trailing #attempt. */
+    static String key(String messageId) {
+        int separator = messageId.lastIndexOf('#');
+        if (separator < 0 || separator == messageId.length() - 1) {
+            return messageId;
+        }
+        for (int i = separator + 1; i < messageId.length(); i++) {
+            if (messageId.charAt(i) < '0' || messageId.charAt(i) > '9') {
+                return messageId;
+            }
+        }
+        return messageId.substring(0, separator);
+    }
+
+    private static long bytes(String messageId, Reply reply) {
+        // compact strings: one byte per Latin-1 character
+        return ENTRY_OVERHEAD_BYTES + messageId.length() + (reply.message == null ? 0 : reply.message.length());
+    }
+
+    /** What the original ack said: the message type it answered and the message text. */
+    public static final class Reply {
+        private final MessageType type;
+        private final String message;
+        private final long expiresAtNanos;
+
+        private Reply(MessageType type, String message, long expiresAtNanos) {
+            this.type = type;
+            this.message = message;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        public MessageType getType() {
+            return type;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    // guarded by its own monitor; insertion order is expiry order since every entry has the same ttl
+    private final class UserEntries {
+        private final LinkedHashMap<String, Reply> replies = new LinkedHashMap<>();
+
+        void expire(long now) {
+            Iterator<Map.Entry<String, Reply>> iterator = replies.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Reply> eldest = iterator.next();
+                if (eldest.getValue().expiresAtNanos - now > 0) {
+                    return;
+                }
+                iterator.remove();
+                removed(eldest.getKey(), eldest.getValue());
+            }
+        }
+
+        void removeEldest() {
+            Iterator<Map.Entry<String, Reply>> iterator = replies.entrySet().iterator();
+            Map.Entry<String, Reply> eldest = iterator.next();
+            iterator.remove();
+            removed(eldest.getKey(), eldest.getValue());
+        }
+
+        void removed(String messageId, Reply reply) {
+            entries.decrement();
+            entryBytes.add(-bytes(messageId, reply));
+        }
+    }
+}
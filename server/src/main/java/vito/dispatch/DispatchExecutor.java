@@ -0,0 +1,135 @@
+package vito.dispatch;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool behind the per-session {@link SerialExecutor}s. Frames leave the
+ * container I/O thread here, so a slow socket only holds up its own session.
+ * With a bounded platform pool, a full pool queue makes the I/O thread run the
+ * drain itself (ordering is still kept by the session's executor).
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class DispatchExecutor {
+    private static final Logger log = LoggerFactory.getLogger(DispatchExecutor.class);
+
+    private final DispatchMode mode;
+    private final int sessionQueueLimit;
+    private final ExecutorService pool;
+    private final ThreadPoolExecutor platformPool;
+    private final AtomicLong pendingTasks = new AtomicLong();
+    private final AtomicInteger maxSessionDepth = new AtomicInteger();
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
+    public DispatchExecutor(@Value("${chat.dispatch.mode:platform}") String mode,
+                            @Value("${chat.dispatch.threads:0}") int threads,
+                            @Value("${chat.dispatch.queue-capacity:10000}") int queueCapacity,
+                            @Value("${chat.dispatch.session-queue-limit:1024}") int sessionQueueLimit) {
+        this.sessionQueueLimit = sessionQueueLimit;
+        DispatchMode requested = DispatchMode.valueOf(mode.trim().toUpperCase());
+        ExecutorService virtual = requested == DispatchMode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (requested == DispatchMode.VIRTUAL && virtual == null) {
+            log.warn("Virtual threads need JDK 21+ (running {}); using the platform pool",
+                    System.getProperty("java.version"));
+            requested = DispatchMode.PLATFORM;
+        }
+        this.mode = requested;
+        if (requested == DispatchMode.PLATFORM) {
+            int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+            this.platformPool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), namedDaemonThreads(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            this.pool = platformPool;
+        } else {
+            this.platformPool = null;
+            this.pool = virtual;
+        }
+    }
+
+    public SerialExecutor newSessionExecutor() {
+        return new SerialExecutor(pool != null ? pool : Runnable::run, this, sessionQueueLimit);
+    }
+
+    public DispatchMode getMode() {
+        return mode;
+    }
+
+    /** Counts a frame rejected because its session already had sessionQueueLimit frames waiting. */
+    public void recordRejected() {
+        rejectedTasks.incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode);
+        stats.put("pendingSessionTasks", pendingTasks.get());
+        stats.put("maxSessionQueueDepth", maxSessionDepth.get());
+        stats.put("sessionQueueLimit", sessionQueueLimit);
+        stats.put("rejectedTasks", rejectedTasks.get());
+        if (platformPool != null) {
+            stats.put("poolThreads", platformPool.getPoolSize());
+            stats.put("activeThreads", platformPool.getActiveCount());
+            stats.put("poolQueueDepth", platformPool.getQueue().size());
+        }
+        return stats;
+    }
+
+    public long pendingTasks() {
+        return pendingTasks.get();
+    }
+
+    void taskQueued(int sessionDepth) {
+        pendingTasks.incrementAndGet();
+        int max;
+        while (sessionDepth > (max = maxSessionDepth.get())) {
+            if (maxSessionDepth.compareAndSet(max, sessionDepth)) {
+                break;
+            }
+        }
+    }
+
+    void taskStarted() {
+        pendingTasks.decrementAndGet();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is JDK 21+; the build targets 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedDaemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "chat-dispatch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,10 @@
+package vito.dispatch;
+
+public enum DispatchMode {
+    /** Handle frames on the container I/O thread, as before the dispatch stage existed. */
+    INLINE,
+    /** Bounded pool of platform threads. */
+    PLATFORM,
+    /** One virtual thread per drain; falls back to PLATFORM on JDKs without virtual threads. */
+    VIRTUAL
+}
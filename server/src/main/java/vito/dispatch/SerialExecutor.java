@@ -0,0 +1,72 @@
+package vito.dispatch;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tasks of one session one at a time, in submission order, on a shared
+ * executor. At most one drain per session is scheduled at a time; a drain gives
+ * the thread back after {@link #DRAIN_BATCH} tasks so a busy session cannot
+ * monopolize a pool thread.
+ */
+public class SerialExecutor {
+    private static final int DRAIN_BATCH = 64;
+
+    private final Executor executor;
+    private final DispatchExecutor owner;
+    private final int queueLimit;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain = this::drain;
+
+    SerialExecutor(Executor executor, DispatchExecutor owner, int queueLimit) {
+        this.executor = executor;
+        this.owner = owner;
+        this.queueLimit = queueLimit;
+    }
+
+    /**
+     * Queues a task behind the session's earlier tasks.
+     *
+     * @return false if the session already has queueLimit tasks waiting; the task
+     *         is not queued
+     */
+    public boolean submit(Runnable task) {
+        int queued = depth.incrementAndGet();
+        if (queued > queueLimit) {
+            depth.decrementAndGet();
+            return false;
+        }
+        owner.taskQueued(queued);
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+        return true;
+    }
+
+    public int depth() {
+        return depth.get();
+    }
+
+    private void drain() {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            depth.decrementAndGet();
+            owner.taskStarted();
+            task.run();
+        }
+        scheduled.set(false);
+        // a task queued after the last poll may have seen scheduled == true and not rescheduled
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+    }
+}
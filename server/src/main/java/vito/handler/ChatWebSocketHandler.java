@@ -3,78 +3,417 @@ package vito.handler;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.web.socket.CloseStatus;
+import vito.cluster.ClusterRelay;
+import vito.codec.BinaryChatCodec;
+import vito.codec.BroadcastFrame;
+import vito.codec.ChatMessageDecoder;
+import vito.codec.MalformedFrameException;
+import vito.codec.ReplyEncoder;
+import vito.codec.ResponseEncoder;
+import vito.codec.WireProtocol;
+import vito.config.RoomHandshakeInterceptor;
+import vito.dedup.DedupCache;
+import vito.dispatch.DispatchExecutor;
+import vito.metrics.ChatMetrics;
+import vito.store.MessageLog;
+import vito.model.BroadcastMessage;
 import vito.model.ChatMessage;
+import vito.model.ChatMessageBatch;
 import vito.model.MessageType;
-import vito.model.ServerResponse;
+import vito.outbound.OutboundPipeline;
+import vito.outbound.OutboundQueue;
+import vito.ratelimit.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import vito.room.Room;
+import vito.room.RoomRegistry;
+import vito.session.PresenceRegistry;
+import vito.session.SessionState;
 import vito.validator.MessageValidator;
 import vito.validator.ValidationResult;
 
-import java.time.Instant;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @Component
-public class ChatWebSocketHandler extends TextWebSocketHandler {
-    private static final String JOINED_KEY = "joined";
-    private static final String USER_ID_KEY = "userId";
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ChatWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
+    private static final String RATE_LIMITED = "Rate limit exceeded";
+    private static final String PERSIST_FAILED = "Unable to persist message";
     private final MessageValidator messageValidator;
     private final ObjectMapper objectMapper;
+    private final RoomRegistry roomRegistry;
+    private final ChatMessageDecoder chatMessageDecoder;
+    private final ResponseEncoder responseEncoder;
+    private final BinaryChatCodec binaryChatCodec;
+    private final DispatchExecutor dispatchExecutor;
+    private final OutboundPipeline outboundPipeline;
+    private final ChatMetrics chatMetrics;
+    private final MessageLog messageLog;
+    private final PresenceRegistry presenceRegistry;
+    private final ClusterRelay clusterRelay;
+    private final RateLimiter rateLimiter;
+    private final DedupCache dedupCache;
+    private final int maxBatchSize;
 
-    public ChatWebSocketHandler(MessageValidator messageValidator, ObjectMapper objectMapper) {
+    public ChatWebSocketHandler(MessageValidator messageValidator, ObjectMapper objectMapper,
+                                RoomRegistry roomRegistry, ChatMessageDecoder chatMessageDecoder,
+                                ResponseEncoder responseEncoder, BinaryChatCodec binaryChatCodec,
+                                DispatchExecutor dispatchExecutor, OutboundPipeline outboundPipeline,
+                                ChatMetrics chatMetrics, MessageLog messageLog,
+                                PresenceRegistry presenceRegistry, ClusterRelay clusterRelay,
+                                RateLimiter rateLimiter, DedupCache dedupCache,
+                                @Value("${chat.batch.max-size:256}") int maxBatchSize) {
         this.messageValidator = messageValidator;
         this.objectMapper = objectMapper;
+        this.roomRegistry = roomRegistry;
+        this.chatMessageDecoder = chatMessageDecoder;
+        this.responseEncoder = responseEncoder;
+        this.binaryChatCodec = binaryChatCodec;
+        this.dispatchExecutor = dispatchExecutor;
+        this.outboundPipeline = outboundPipeline;
+        this.chatMetrics = chatMetrics;
+        this.messageLog = messageLog;
+        this.presenceRegistry = presenceRegistry;
+        this.clusterRelay = clusterRelay;
+        this.rateLimiter = rateLimiter;
+        this.dedupCache = dedupCache;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(WireProtocol.JSON, WireProtocol.BINARY);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        session.getAttributes().put(JOINED_KEY, false);
+        Map<String, Object> attributes = session.getAttributes();
+        // replies and broadcasts from other sessions are queued and written by the session's writer
+        OutboundQueue outbound = outboundPipeline.wrap(session);
+        int roomId = (Integer) attributes.get(RoomHandshakeInterceptor.ROOM_ID_KEY);
+        Room room = roomRegistry.join(roomId, outbound);
+        attributes.put(SessionState.ATTRIBUTE, new SessionState(outbound, room, dispatchExecutor.newSessionExecutor(),
+                rateLimiter.newSessionBucket()));
+        clusterRelay.memberJoined(room);
+        chatMetrics.sessionOpened();
     }
 
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        dispatch(session, () -> processText(session, message));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        // the container reuses the frame buffer once this method returns
+        ByteBuffer frame = message.getPayload();
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+        copy.put(frame).flip();
+        dispatch(session, () -> processBinary(session, copy));
+    }
+
+    // runs the task on the session's serial executor, off the container I/O thread unless dispatch is INLINE
+    private void dispatch(WebSocketSession session, SessionTask task) throws IOException {
+        boolean queued = SessionState.of(session).getDispatch().submit(() -> {
+            if (!session.isOpen()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Exception e) {
+                closeQuietly(session, CloseStatus.SERVER_ERROR);
+            }
+            chatMetrics.recordHandlerNanos(System.nanoTime() - start);
+        });
+        if (!queued) {
+            dispatchExecutor.recordRejected();
+            session.close(CloseStatus.SERVICE_OVERLOAD.withReason("Too many pending messages"));
+        }
+    }
+
+    private void processText(WebSocketSession session, TextMessage message) throws IOException {
+        SessionState state = SessionState.of(session);
+        // Tomcat hands text frames over as a String already; read it once
         String payload = message.getPayload();
-        ChatMessage chatMessage = null;
-        // parse the JSON payload into a ChatMessage object
+        if (ChatMessageDecoder.isBatch(payload)) {
+            ChatMessageBatch batch = state.getBatch();
+            try {
+                chatMessageDecoder.decodeBatch(payload, batch, maxBatchSize);
+            } catch (JsonProcessingException e) {
+                chatMetrics.recordParseError();
+                reply(state, responseEncoder.parseError(), null, null);
+                return;
+            }
+            handleBatch(state, batch, responseEncoder);
+            return;
+        }
+        ChatMessage chatMessage = state.getInbound();
+        // parse the JSON payload into the session's ChatMessage holder
         try {
-            chatMessage = objectMapper.readValue(payload, ChatMessage.class);
+            chatMessageDecoder.decode(payload, chatMessage);
         } catch (JsonProcessingException e) {
-            ServerResponse response = new ServerResponse("ERROR", Instant.now(), "Unable to parse JSON");
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+            chatMetrics.recordParseError();
+            reply(state, responseEncoder.parseError(), null, null);
+            return;
+        }
+        handleChatMessage(state, chatMessage, responseEncoder);
+    }
+
+    private void processBinary(WebSocketSession session, ByteBuffer frame) throws IOException {
+        SessionState state = SessionState.of(session);
+        if (BinaryChatCodec.isBatch(frame)) {
+            ChatMessageBatch batch = state.getBatch();
+            try {
+                binaryChatCodec.decodeBatch(frame, batch, maxBatchSize);
+            } catch (MalformedFrameException e) {
+                chatMetrics.recordParseError();
+                reply(state, binaryChatCodec.parseError(), null, null);
+                return;
+            }
+            handleBatch(state, batch, binaryChatCodec);
+            return;
+        }
+        ChatMessage chatMessage = state.getInbound();
+        try {
+            binaryChatCodec.decode(frame, chatMessage);
+        } catch (MalformedFrameException e) {
+            chatMetrics.recordParseError();
+            reply(state, binaryChatCodec.parseError(), null, null);
+            return;
+        }
+        handleChatMessage(state, chatMessage, binaryChatCodec);
+    }
+
+    private void handleChatMessage(SessionState state, ChatMessage chatMessage, ReplyEncoder replies)
+            throws IOException {
+        String messageId = chatMessage.getMessageId();
+        if (!rateLimiter.tryAcquireSession(state.getRateLimit())) {
+            chatMetrics.recordRateLimited();
+            reply(state, replies.rateLimited(RATE_LIMITED, messageId), null, null);
             return;
         }
         // validate the ChatMessage object
         ValidationResult result = messageValidator.validate(chatMessage);
-        ServerResponse response = null;
         if (!result.isValid()) {
-            response = new ServerResponse("ERROR", Instant.now(), result.getMessage());
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+            chatMetrics.recordValidationFailure(result);
+            reply(state, replies.error(result.getMessage(), messageId), null, null);
             return;
         }
-        Map<String, Object> attributes = session.getAttributes();
-        MessageType messageType = chatMessage.getMessageType();
-        switch (messageType) {
+        DedupCache.Reply original = messageId == null ? null : dedupCache.get(chatMessage.getUserId(), messageId);
+        if (original != null) {
+            reply(state, ack(replies, original.getType(), original.getMessage(), messageId), null, null);
+            return;
+        }
+        if (!rateLimiter.tryAcquireUser(chatMessage.getUserId())) {
+            chatMetrics.recordRateLimited();
+            reply(state, replies.rateLimited(RATE_LIMITED, messageId), null, null);
+            return;
+        }
+        WebSocketMessage<?> response = ack(replies, chatMessage.getMessageType(), chatMessage.getMessage(), messageId);
+        CompletableFuture<Void> durable = apply(state, chatMessage);
+        remember(chatMessage, durable);
+        reply(state, response, durable, () -> replies.error(PERSIST_FAILED, messageId));
+        if (chatMessage.getMessageType() == MessageType.JOIN) {
+            replayHistory(state);
+        }
+    }
+
+    // rate-limits, validates and answers every message of the batch in one pass, with a single acknowledgement frame
+    private void handleBatch(SessionState state, ChatMessageBatch batch, ReplyEncoder replies)
+            throws IOException {
+        ReplyEncoder.Batch acks = replies.batch(batch.size());
+        // each append completes on its own write, so the batch is acked once all of them are durable
+        List<CompletableFuture<Void>> appends = null;
+        boolean joined = false;
+        for (int i = 0; i < batch.size(); i++) {
+            ChatMessage chatMessage = batch.get(i);
+            String messageId = chatMessage.getMessageId();
+            if (!rateLimiter.tryAcquireSession(state.getRateLimit())) {
+                chatMetrics.recordRateLimited();
+                acks.rateLimited(RATE_LIMITED, messageId);
+                continue;
+            }
+            ValidationResult result = messageValidator.validate(chatMessage);
+            if (!result.isValid()) {
+                chatMetrics.recordValidationFailure(result);
+                acks.error(result.getMessage(), messageId);
+                continue;
+            }
+            DedupCache.Reply original = messageId == null ? null : dedupCache.get(chatMessage.getUserId(), messageId);
+            if (original != null) {
+                ack(acks, original.getType(), original.getMessage(), messageId);
+                continue;
+            }
+            if (!rateLimiter.tryAcquireUser(chatMessage.getUserId())) {
+                chatMetrics.recordRateLimited();
+                acks.rateLimited(RATE_LIMITED, messageId);
+                continue;
+            }
+            ack(acks, chatMessage.getMessageType(), chatMessage.getMessage(), messageId);
+            joined |= chatMessage.getMessageType() == MessageType.JOIN;
+            CompletableFuture<Void> appended = apply(state, chatMessage);
+            remember(chatMessage, appended);
+            if (appended != null) {
+                if (appends == null) {
+                    appends = new ArrayList<>(batch.size() - i);
+                }
+                appends.add(appended);
+            }
+        }
+        CompletableFuture<Void> durable = appends == null ? null
+                : CompletableFuture.allOf(appends.toArray(new CompletableFuture<?>[0]));
+        reply(state, acks.finish(), durable, () -> replies.error(PERSIST_FAILED, null));
+        if (joined) {
+            replayHistory(state);
+        }
+    }
+
+    private static WebSocketMessage<?> ack(ReplyEncoder replies, MessageType type, String message,
+                                           String messageId) {
+        switch (type) {
             case JOIN:
-                attributes.put(JOINED_KEY, true);
-                attributes.put(USER_ID_KEY, chatMessage.getUserId());
-                response = new ServerResponse("OK", Instant.now(),
-                        "You have joined the chat: " + chatMessage.getMessage());
+                return replies.joined(message, messageId);
+            case LEAVE:
+                return replies.left(message, messageId);
+            default:
+                return replies.ok(message, messageId);
+        }
+    }
+
+    private static void ack(ReplyEncoder.Batch acks, MessageType type, String message, String messageId) {
+        switch (type) {
+            case JOIN:
+                acks.joined(message, messageId);
                 break;
             case LEAVE:
-                response = new ServerResponse("OK", Instant.now(),
-                        "You have left the chat: " + chatMessage.getMessage());
+                acks.left(message, messageId);
                 break;
-            case TEXT:
-                response = new ServerResponse("OK", Instant.now(), chatMessage.getMessage());
+            default:
+                acks.ok(message, messageId);
                 break;
         }
-        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+    }
+
+    // remembered once the append succeeded, so a retry after a failed append is processed again
+    private void remember(ChatMessage chatMessage, CompletableFuture<Void> durable) {
+        String messageId = chatMessage.getMessageId();
+        if (messageId == null) {
+            return;
+        }
+        String userId = chatMessage.getUserId();
+        MessageType type = chatMessage.getMessageType();
+        String message = chatMessage.getMessage();
+        if (durable == null) {
+            dedupCache.put(userId, messageId, type, message);
+        } else {
+            durable.thenRun(() -> dedupCache.put(userId, messageId, type, message));
+        }
+    }
+
+    // streams the room's recent messages, already encoded in this session's wire format
+    private void replayHistory(SessionState state) throws IOException {
+        boolean binary = WireProtocol.isBinary(state.getOutbound());
+        for (byte[] frame : state.getRoom().getHistory().recent(binary)) {
+            reply(state, binary ? new BinaryMessage(frame) : new TextMessage(frame), null, null);
+        }
+    }
+
+    /**
+     * Session and room side effects of a valid message, which is also appended to
+     * the room's log in the binary broadcast encoding. TEXT messages go to the
+     * room's members, including those on other cluster nodes, and its history;
+     * JOIN and LEAVE update the room's presence.
+     *
+     * @return completes when the ack may go out; null if it need not wait
+     */
+    private CompletableFuture<Void> apply(SessionState state, ChatMessage chatMessage) throws IOException {
+        MessageType messageType = chatMessage.getMessageType();
+        Room room = state.getRoom();
+        chatMetrics.recordMessage(messageType);
+        room.recordMessage();
+        if (messageType == MessageType.JOIN) {
+            presenceRegistry.join(state, chatMessage.getUserId());
+        } else if (messageType == MessageType.LEAVE) {
+            presenceRegistry.leave(state);
+        }
+        if (messageType != MessageType.TEXT && !messageLog.isEnabled()) {
+            return null;
+        }
+        // encoded at most once per wire format, the same frame goes to every other member of the room
+        BroadcastMessage broadcast = new BroadcastMessage(room.getId(), chatMessage);
+        BroadcastFrame frame = new BroadcastFrame(broadcast, objectMapper, binaryChatCodec);
+        if (messageType == MessageType.TEXT) {
+            room.broadcast(frame, state.getOutbound());
+            clusterRelay.publish(frame);
+            room.getHistory().append(ByteBuffer.wrap(frame.text().asBytes()), frame.binary().getPayload());
+        }
+        return messageLog.append(room.getId(), frame.binary().getPayload());
+    }
+
+    /**
+     * Sends a reply once durable completes, and never ahead of an earlier reply of
+     * the session that is still waiting for the log. If the append failed, the
+     * client gets the failure reply instead of the ack.
+     */
+    private void reply(SessionState state, WebSocketMessage<?> response, CompletableFuture<Void> durable,
+                       Supplier<WebSocketMessage<?>> failureReply) throws IOException {
+        WebSocketSession outbound = state.getOutbound();
+        CompletableFuture<?> previous = state.getPendingReply();
+        boolean inOrder = previous == null || previous.isDone();
+        if (durable == null && inOrder) {
+            outbound.sendMessage(response);
+            return;
+        }
+        CompletableFuture<?> ready = inOrder ? durable
+                : durable == null ? previous : CompletableFuture.allOf(previous, durable);
+        // runs on the log committer thread; sendMessage only queues the frame
+        state.setPendingReply(ready.handle((ignored, failure) -> {
+            try {
+                outbound.sendMessage(failure == null ? response : failureReply.get());
+            } catch (IOException ignoredSendFailure) {
+                // the session's close callback cleans up
+            }
+            return null;
+        }));
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
-        session.getAttributes().clear();
+        SessionState state = SessionState.of(session);
+        if (state == null) {
+            return;
+        }
+        chatMetrics.sessionClosed();
+        presenceRegistry.close(state);
+        state.getRoom().leave(state.getOutbound());
+        clusterRelay.memberLeft(state.getRoom());
+        state.getOutbound().discard();
+        // the state stays in place: frames already queued on the dispatch executor still read it
+    }
+
+    private static void closeQuietly(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException ignored) {
+        }
+    }
+
+    @FunctionalInterface
+    private interface SessionTask {
+        void run() throws IOException;
     }
 }
@@ -0,0 +1,145 @@
+package vito.metrics;
+
+import org.springframework.stereotype.Component;
+import vito.model.MessageType;
+import vito.room.Room;
+import vito.room.RoomRegistry;
+import vito.validator.ValidationField;
+import vito.validator.ValidationResult;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server counters and the handler latency histogram, rendered in the Prometheus
+ * text exposition format. Every record method bumps a striped
+ * {@link LongAdder} found by array index, so the hot path neither allocates nor
+ * locks; per-room counts live on the {@link Room} itself. Rates such as
+ * messages per second come from the scraper, e.g.
+ * {@code rate(chat_room_messages_total[1m])}.
+ */
+@Component
+public class ChatMetrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.95, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final RoomRegistry roomRegistry;
+    private final LongAdder[] messagesByType = adders(MessageType.VALUES.length);
+    private final LongAdder[] validationFailuresByField = adders(ValidationField.VALUES.length);
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder openSessions = new LongAdder();
+    private final LatencyHistogram handlerTime = new LatencyHistogram();
+
+    public ChatMetrics(RoomRegistry roomRegistry) {
+        this.roomRegistry = roomRegistry;
+    }
+
+    public void sessionOpened() {
+        openSessions.increment();
+    }
+
+    public void sessionClosed() {
+        openSessions.decrement();
+    }
+
+    /** Counts a valid message; the room's own counter is bumped by the caller's room. */
+    public void recordMessage(MessageType type) {
+        messagesByType[type.ordinal()].increment();
+    }
+
+    public void recordValidationFailure(ValidationResult result) {
+        validationFailures.increment();
+        for (ValidationField field : ValidationField.VALUES) {
+            if (result.violates(field)) {
+                validationFailuresByField[field.ordinal()].increment();
+            }
+        }
+    }
+
+    public void recordParseError() {
+        parseErrors.increment();
+    }
+
+    public void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    /** Time spent handling one inbound frame, from dispatch to the last reply queued. */
+    public void recordHandlerNanos(long nanos) {
+        handlerTime.record(nanos);
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        header(out, "chat_open_sessions", "gauge", "Open WebSocket sessions.");
+        sample(out, "chat_open_sessions", null, null, openSessions.sum());
+
+        header(out, "chat_messages_total", "counter", "Valid chat messages handled, by message type.");
+        for (MessageType type : MessageType.VALUES) {
+            sample(out, "chat_messages_total", "type", type.name(), messagesByType[type.ordinal()].sum());
+        }
+
+        header(out, "chat_room_messages_total", "counter", "Valid chat messages handled, by room.");
+        for (Room room : roomRegistry.rooms()) {
+            sample(out, "chat_room_messages_total", "room", Integer.toString(room.getId()), room.messageCount());
+        }
+
+        header(out, "chat_room_members", "gauge", "Sessions currently in each room.");
+        for (Room room : roomRegistry.rooms()) {
+            sample(out, "chat_room_members", "room", Integer.toString(room.getId()), room.size());
+        }
+
+        header(out, "chat_room_history_bytes", "gauge", "Off-heap bytes held by each room's history ring.");
+        for (Room room : roomRegistry.rooms()) {
+            sample(out, "chat_room_history_bytes", "room", Integer.toString(room.getId()),
+                    room.getHistory().allocatedBytes());
+        }
+
+        header(out, "chat_validation_failures_total", "counter", "Messages rejected by validation.");
+        sample(out, "chat_validation_failures_total", null, null, validationFailures.sum());
+
+        header(out, "chat_validation_field_failures_total", "counter",
+                "Validation failures by field; one message may fail several fields.");
+        for (ValidationField field : ValidationField.VALUES) {
+            sample(out, "chat_validation_field_failures_total", "field", field.getFieldName(),
+                    validationFailuresByField[field.ordinal()].sum());
+        }
+
+        header(out, "chat_parse_errors_total", "counter", "Frames that could not be decoded.");
+        sample(out, "chat_parse_errors_total", null, null, parseErrors.sum());
+
+        header(out, "chat_rate_limited_total", "counter", "Messages dropped by the session or user rate limit.");
+        sample(out, "chat_rate_limited_total", null, null, rateLimited.sum());
+
+        header(out, "chat_handler_seconds", "summary", "Time to handle one inbound frame.");
+        for (double quantile : QUANTILES) {
+            out.append("chat_handler_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(handlerTime.quantileNanos(quantile) / NANOS_PER_SECOND).append('\n');
+        }
+        out.append("chat_handler_seconds_sum ").append(handlerTime.sumNanos() / NANOS_PER_SECOND).append('\n');
+        out.append("chat_handler_seconds_count ").append(handlerTime.count()).append('\n');
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long sample) {
+        out.append(name);
+        if (label != null) {
+            out.append('{').append(label).append("=\"").append(value).append("\"}");
+        }
+        out.append(' ').append(sample).append('\n');
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
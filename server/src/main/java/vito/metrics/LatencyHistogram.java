@@ -0,0 +1,92 @@
+package vito.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-memory latency histogram over nanoseconds with log-linear buckets:
+ * exact below 16 ns, then 8 buckets per power of two (at most 12.5% relative
+ * error) up to about 18 minutes. Recording finds the bucket with a few shifts
+ * and bumps a striped counter, so it neither allocates nor locks; quantiles are
+ * computed when the histogram is read.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int FIRST_EXPONENT = SUB_BUCKET_BITS + 1;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - FIRST_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets[bucketOf(value)].increment();
+        count.increment();
+        sumNanos.add(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given quantile, in nanoseconds; 0 when
+     * nothing was recorded. Reads are not atomic across buckets, which only
+     * matters while values are being recorded.
+     */
+    public long quantileNanos(double quantile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKET_COUNT - 1);
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    // exclusive upper bound of the values counted in the bucket
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = FIRST_EXPONENT + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
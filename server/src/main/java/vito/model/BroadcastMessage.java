@@ -0,0 +1,50 @@
+package vito.model;
+
+import java.time.Instant;
+
+/**
+ * A chat message as delivered to the other members of a room. Unlike
+ * {@link ServerResponse} it carries no status, which is how clients tell room
+ * traffic apart from acks.
+ */
+public class BroadcastMessage {
+    private final int roomId;
+    private final String userId;
+    private final String username;
+    private final String message;
+    private final Instant timestamp;
+    private final MessageType messageType;
+
+    public BroadcastMessage(int roomId, ChatMessage chatMessage) {
+        this.roomId = roomId;
+        this.userId = chatMessage.getUserId();
+        this.username = chatMessage.getUserName();
+        this.message = chatMessage.getMessage();
+        this.timestamp = chatMessage.getTimestamp();
+        this.messageType = chatMessage.getMessageType();
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public MessageType getMessageType() {
+        return messageType;
+    }
+}
@@ -5,6 +5,8 @@ import java.time.Instant;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.*;
 
+// The constraints below are the contract; MessageValidator implements them without reflection,
+// and MessageValidatorTest checks it against Bean Validation running these annotations.
 public class ChatMessage {
     @NotNull(message = "userId cannot be null")
     @Pattern(regexp = "^[1-9]\\d{0,4}$|^100000$", message = "userId must be between 1 and 100000")
@@ -21,6 +23,9 @@ public class ChatMessage {
     private Instant timestamp;
     @NotNull(message = "messageType cannot be null")
     private MessageType messageType;
+    // optional; set by clients that retry, so a retried message is acknowledged without being processed twice
+    @Size(max = 64, message = "messageId must be at most 64 characters")
+    private String messageId;
 
     public ChatMessage() {
     }
@@ -72,4 +77,12 @@ public class ChatMessage {
     public void setMessageType(MessageType messageType) {
         this.messageType = messageType;
     }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
 }
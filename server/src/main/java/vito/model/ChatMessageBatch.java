@@ -0,0 +1,36 @@
+package vito.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages of one batch frame, decoded into holders that are kept and reused
+ * for the session's next batch.
+ */
+public class ChatMessageBatch {
+    private final List<ChatMessage> holders = new ArrayList<>();
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    /** Returns the holder for the next item; its fields still hold an earlier batch's values. */
+    public ChatMessage next() {
+        if (size == holders.size()) {
+            holders.add(new ChatMessage());
+        }
+        return holders.get(size++);
+    }
+
+    public ChatMessage get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return holders.get(index);
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -3,5 +3,8 @@ package vito.model;
 public enum MessageType {
     TEXT,
     JOIN,
-    LEAVE
+    LEAVE;
+
+    // values() clones its array on every call
+    public static final MessageType[] VALUES = values();
 }
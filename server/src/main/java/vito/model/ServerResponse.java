@@ -6,6 +6,8 @@ public class ServerResponse {
     private String status;
     private Instant serverTimestamp;
     private String message;
+    // the messageId of the message being acknowledged; omitted when it had none
+    private String messageId;
 
     public ServerResponse(String status, Instant serverTimestamp, String message) {
         this.status = status;
@@ -36,4 +38,12 @@ public class ServerResponse {
     public void setMessage(String message) {
         this.message = message;
     }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
 }
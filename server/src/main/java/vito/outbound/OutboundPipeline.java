@@ -0,0 +1,151 @@
+package vito.outbound;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settings, writer pool and counters shared by every session's
+ * {@link OutboundQueue}. A writer blocked on a slow socket holds one pool thread,
+ * never the thread that produced the frame.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class OutboundPipeline {
+    private final int queueLimit;
+    private final int replyLimit;
+    private final long sendTimeLimitNanos;
+    private final SlowConsumerPolicy policy;
+    private final CloseStatus closeStatus;
+    private final int flushBatch;
+    private final ExecutorService writers;
+    private final AtomicLong queuedFrames = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+    private final AtomicLong droppedNewest = new AtomicLong();
+    private final AtomicLong closedSlowConsumers = new AtomicLong();
+
+    public OutboundPipeline(@Value("${chat.outbound.queue-limit:1024}") int queueLimit,
+                            @Value("${chat.outbound.reply-limit:4096}") int replyLimit,
+                            @Value("${chat.outbound.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                            @Value("${chat.outbound.policy:drop-oldest}") String policy,
+                            @Value("${chat.outbound.close-code:1008}") int closeCode,
+                            @Value("${chat.outbound.flush-batch:64}") int flushBatch,
+                            @Value("${chat.outbound.writer-threads:0}") int writerThreads) {
+        this.queueLimit = queueLimit;
+        this.replyLimit = Math.max(replyLimit, queueLimit);
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        this.policy = SlowConsumerPolicy.valueOf(policy.trim().replace('-', '_').toUpperCase());
+        this.closeStatus = new CloseStatus(closeCode, "Slow consumer");
+        this.flushBatch = flushBatch;
+        int size = writerThreads > 0 ? writerThreads : Runtime.getRuntime().availableProcessors() * 2;
+        this.writers = Executors.newFixedThreadPool(size, namedDaemonThreads());
+    }
+
+    public OutboundQueue wrap(WebSocketSession session) {
+        return new OutboundQueue(session, this, writers);
+    }
+
+    public SlowConsumerPolicy getPolicy() {
+        return policy;
+    }
+
+    int getQueueLimit() {
+        return queueLimit;
+    }
+
+    int getReplyLimit() {
+        return replyLimit;
+    }
+
+    long getSendTimeLimitNanos() {
+        return sendTimeLimitNanos;
+    }
+
+    CloseStatus getCloseStatus() {
+        return closeStatus;
+    }
+
+    int getFlushBatch() {
+        return flushBatch;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("policy", policy);
+        stats.put("queueLimit", queueLimit);
+        stats.put("replyLimit", replyLimit);
+        stats.put("queuedFrames", queuedFrames.get());
+        stats.put("maxQueueDepth", maxQueueDepth.get());
+        long written = framesWritten.get();
+        long flushCount = flushes.get();
+        stats.put("framesWritten", written);
+        stats.put("flushes", flushCount);
+        stats.put("framesPerFlush", flushCount == 0 ? 0.0 : (double) written / flushCount);
+        stats.put("droppedOldest", droppedOldest.get());
+        stats.put("droppedNewest", droppedNewest.get());
+        stats.put("closedSlowConsumers", closedSlowConsumers.get());
+        return stats;
+    }
+
+    void frameQueued(int sessionDepth) {
+        queuedFrames.incrementAndGet();
+        int max;
+        while (sessionDepth > (max = maxQueueDepth.get())) {
+            if (maxQueueDepth.compareAndSet(max, sessionDepth)) {
+                break;
+            }
+        }
+    }
+
+    void frameDequeued() {
+        queuedFrames.decrementAndGet();
+    }
+
+    void recordFlush(int frames) {
+        if (frames > 0) {
+            framesWritten.addAndGet(frames);
+            flushes.incrementAndGet();
+        }
+    }
+
+    void recordDroppedOldest() {
+        droppedOldest.incrementAndGet();
+    }
+
+    void recordDroppedNewest() {
+        droppedNewest.incrementAndGet();
+    }
+
+    void recordClosed() {
+        closedSlowConsumers.incrementAndGet();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+    }
+
+    private static ThreadFactory namedDaemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "chat-writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,230 @@
+package vito.outbound;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Outbound side of one session. {@link #sendMessage} only queues the frame and
+ * returns; a writer on the shared pool drains the queue, sending up to
+ * flushBatch frames with container batching on and flushing once per batch.
+ * When the queue is over its size limit, or the writer has been stuck on one
+ * send for longer than the time limit, the {@link SlowConsumerPolicy} applies.
+ * The drop policies only ever drop frames queued with {@link #sendBroadcast};
+ * replies to the session's own messages are not dropped. Since they are not,
+ * a session with replyLimit frames waiting is closed under every policy.
+ * Closing runs on the writer pool, never on the thread queuing the frame.
+ */
+public class OutboundQueue extends WebSocketSessionDecorator {
+    private final OutboundPipeline pipeline;
+    private final Executor writers;
+    private final Queue<QueuedFrame> frames = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean closing = new AtomicBoolean();
+    private final Runnable drain = this::drain;
+    private final RemoteEndpoint.Basic remote;
+    private volatile long sendStartNanos;
+
+    OutboundQueue(WebSocketSession session, OutboundPipeline pipeline, Executor writers) {
+        super(session);
+        this.pipeline = pipeline;
+        this.writers = writers;
+        this.remote = basicRemote(session);
+    }
+
+    public int depth() {
+        return depth.get();
+    }
+
+    /** Queues a reply to this session's own message; the drop policies never drop it, the reply limit closes. */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        enqueue(message, false);
+    }
+
+    /** Queues a frame fanned out from another session, which the drop policies may drop. */
+    public void sendBroadcast(WebSocketMessage<?> message) throws IOException {
+        enqueue(message, true);
+    }
+
+    private void enqueue(WebSocketMessage<?> message, boolean droppable) throws IOException {
+        if (closing.get() || !isOpen()) {
+            return;
+        }
+        if (depth.get() >= pipeline.getReplyLimit()) {
+            closeSlowConsumer();
+            return;
+        }
+        boolean stuck = isStuck();
+        if (stuck || isFull()) {
+            switch (pipeline.getPolicy()) {
+                case DROP_NEWEST:
+                    if (droppable) {
+                        pipeline.recordDroppedNewest();
+                        return;
+                    }
+                    break;
+                case DROP_OLDEST:
+                    // a stuck writer will not drain the queue soon: drop every broadcast waiting behind it
+                    dropOldestBroadcasts(stuck);
+                    if (droppable && isFull()) {
+                        // only replies left to drop, and those are kept
+                        pipeline.recordDroppedNewest();
+                        return;
+                    }
+                    break;
+                case CLOSE:
+                    closeSlowConsumer();
+                    return;
+            }
+        }
+        pipeline.frameQueued(depth.incrementAndGet());
+        frames.add(new QueuedFrame(message, droppable));
+        if (scheduled.compareAndSet(false, true)) {
+            writers.execute(drain);
+        }
+    }
+
+    /**
+     * Drops the queue and closes the session on a writer thread: the caller may
+     * be another session's producer, and the close can block behind a stuck send.
+     */
+    private void closeSlowConsumer() {
+        if (!closing.compareAndSet(false, true)) {
+            return;
+        }
+        pipeline.recordClosed();
+        discard();
+        writers.execute(() -> closeQuietly(pipeline.getCloseStatus()));
+    }
+
+    private boolean isFull() {
+        return depth.get() >= pipeline.getQueueLimit();
+    }
+
+    private boolean isStuck() {
+        long start = sendStartNanos;
+        return start != 0 && System.nanoTime() - start > pipeline.getSendTimeLimitNanos();
+    }
+
+    /**
+     * Drops queued broadcasts, oldest first, until the queue is under its limit,
+     * or all of them if all is set. The frame the writer is sending right now is
+     * no longer in the queue and is never dropped.
+     */
+    private void dropOldestBroadcasts(boolean all) {
+        Iterator<QueuedFrame> queued = frames.iterator();
+        while (queued.hasNext() && (all || isFull())) {
+            QueuedFrame frame = queued.next();
+            if (frame.droppable && frame.take()) {
+                queued.remove();
+                depth.decrementAndGet();
+                pipeline.frameDequeued();
+                pipeline.recordDroppedOldest();
+            }
+        }
+    }
+
+    private void drain() {
+        int sent = 0;
+        try {
+            setBatching(true);
+            QueuedFrame frame;
+            while (sent < pipeline.getFlushBatch() && (frame = frames.poll()) != null) {
+                if (!frame.take()) {
+                    // dropped while it waited
+                    continue;
+                }
+                depth.decrementAndGet();
+                pipeline.frameDequeued();
+                if (!isOpen()) {
+                    continue;
+                }
+                sendStartNanos = System.nanoTime();
+                getDelegate().sendMessage(frame.message);
+                sent++;
+            }
+            // turning batching off flushes whatever the container is still holding
+            setBatching(false);
+        } catch (IOException | RuntimeException e) {
+            discard();
+            closeQuietly(CloseStatus.SERVER_ERROR);
+        } finally {
+            sendStartNanos = 0;
+        }
+        pipeline.recordFlush(sent);
+        scheduled.set(false);
+        // a frame queued after the last poll may have seen scheduled == true and not rescheduled
+        if (!frames.isEmpty() && scheduled.compareAndSet(false, true)) {
+            writers.execute(drain);
+        }
+    }
+
+    /** Drops everything still queued; called once the session has closed. */
+    public void discard() {
+        QueuedFrame frame;
+        while ((frame = frames.poll()) != null) {
+            if (frame.take()) {
+                depth.decrementAndGet();
+                pipeline.frameDequeued();
+            }
+        }
+    }
+
+    private void setBatching(boolean allowed) throws IOException {
+        if (remote != null && isOpen()) {
+            remote.setBatchingAllowed(allowed);
+        }
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            getDelegate().close(status);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static RemoteEndpoint.Basic basicRemote(WebSocketSession session) {
+        WebSocketSession unwrapped = WebSocketSessionDecorator.unwrap(session);
+        if (unwrapped instanceof NativeWebSocketSession nativeSession) {
+            Session standard = nativeSession.getNativeSession(Session.class);
+            if (standard != null) {
+                return standard.getBasicRemote();
+            }
+        }
+        return null;
+    }
+
+    /** A queued frame; the writer and a dropping sender race to take it, and only the winner counts it. */
+    private static final class QueuedFrame {
+        private static final AtomicIntegerFieldUpdater<QueuedFrame> TAKEN =
+                AtomicIntegerFieldUpdater.newUpdater(QueuedFrame.class, "taken");
+
+        private final WebSocketMessage<?> message;
+        private final boolean droppable;
+        private volatile int taken;
+
+        private QueuedFrame(WebSocketMessage<?> message, boolean droppable) {
+            this.message = message;
+            this.droppable = droppable;
+        }
+
+        private boolean take() {
+            return TAKEN.compareAndSet(this, 0, 1);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package vito.outbound;
+
+/**
+ * What a session's outbound queue does when its reader falls behind. The drop
+ * policies apply to broadcasts from other sessions; replies to the session's
+ * own messages are queued regardless, up to the reply limit, past which the
+ * session is closed whatever the policy.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Discard the longest-waiting broadcasts to make room for the new frame, or
+     * every queued broadcast when a send has been blocked past the time limit.
+     */
+    DROP_OLDEST,
+    /** Discard a new broadcast and keep what is already queued. */
+    DROP_NEWEST,
+    /** Close the session with the configured status code. */
+    CLOSE
+}
@@ -0,0 +1,127 @@
+package vito.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets per session and per userId. A session's bucket lives in its
+ * session state; user buckets are kept in a map that a sweeper thread prunes
+ * of buckets idle long enough to have refilled, which is lossless because a
+ * new bucket starts full. The map holds at most maxUsers buckets: past that,
+ * new users are only limited per session until the sweeper frees room.
+ */
+@Component
+public class RateLimiter {
+    private final boolean enabled;
+    private final int sessionBurst;
+    private final double sessionRefill;
+    private final int userBurst;
+    private final double userRefill;
+    private final int maxUsers;
+    private final ConcurrentHashMap<String, TokenBucket> users;
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder sessionLimited = new LongAdder();
+    private final LongAdder userLimited = new LongAdder();
+    private final LongAdder untrackedUsers = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public RateLimiter(@Value("${chat.ratelimit.enabled:true}") boolean enabled,
+                       @Value("${chat.ratelimit.session.burst:2000}") int sessionBurst,
+                       @Value("${chat.ratelimit.session.per-second:1000}") double sessionRefill,
+                       @Value("${chat.ratelimit.user.burst:200}") int userBurst,
+                       @Value("${chat.ratelimit.user.per-second:100}") double userRefill,
+                       @Value("${chat.ratelimit.user.max-entries:200000}") int maxUsers,
+                       @Value("${chat.ratelimit.user.idle-ms:60000}") long idleMs) {
+        this.enabled = enabled;
+        this.sessionBurst = sessionBurst;
+        this.sessionRefill = sessionRefill;
+        this.userBurst = userBurst;
+        this.userRefill = userRefill;
+        this.maxUsers = maxUsers;
+        this.users = new ConcurrentHashMap<>(Math.min(maxUsers, 1 << 16));
+        if (enabled) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-ratelimit-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(idleMs / 2, 1);
+            sweeper.scheduleWithFixedDelay(() -> evictIdle(idleMs), period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    /** A bucket for a new session; null when rate limiting is disabled. */
+    public TokenBucket newSessionBucket() {
+        return enabled ? new TokenBucket(sessionBurst, sessionRefill, System.nanoTime()) : null;
+    }
+
+    public boolean tryAcquireSession(TokenBucket sessionBucket) {
+        if (sessionBucket == null || sessionBucket.tryAcquire(System.nanoTime())) {
+            return true;
+        }
+        sessionLimited.increment();
+        return false;
+    }
+
+    public boolean tryAcquireUser(String userId) {
+        if (!enabled) {
+            return true;
+        }
+        long now = System.nanoTime();
+        TokenBucket bucket = users.get(userId);
+        if (bucket == null) {
+            if (users.size() >= maxUsers) {
+                untrackedUsers.increment();
+                return true;
+            }
+            bucket = users.computeIfAbsent(userId, id -> new TokenBucket(userBurst, userRefill, now));
+        }
+        if (bucket.tryAcquire(now)) {
+            return true;
+        }
+        userLimited.increment();
+        return false;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedUsers", users.size());
+        stats.put("maxTrackedUsers", maxUsers);
+        stats.put("sessionLimited", sessionLimited.sum());
+        stats.put("userLimited", userLimited.sum());
+        stats.put("untrackedUserMessages", untrackedUsers.sum());
+        stats.put("evictedUsers", evicted.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    // a bucket full for idleMs is indistinguishable from a new one
+    private void evictIdle(long idleMs) {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMs);
+        users.values().removeIf(bucket -> {
+            if (bucket.isFull(cutoff)) {
+                evicted.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+}
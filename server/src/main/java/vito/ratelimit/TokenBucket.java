@@ -0,0 +1,56 @@
+package vito.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Lock-free token bucket holding up to burst tokens, refilled at a fixed rate.
+ * The whole state is one long, the time at which the bucket will be full again
+ * (the generic cell rate algorithm), so taking a token is a single CAS and
+ * the bucket needs no refill thread.
+ */
+public final class TokenBucket {
+    private static final VarHandle FULL_AT;
+
+    static {
+        try {
+            FULL_AT = MethodHandles.lookup().findVarHandle(TokenBucket.class, "fullAtNanos", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    // a field with a VarHandle rather than an AtomicLong: one object per bucket for 100k users
+    private volatile long fullAtNanos;
+
+    /**
+     * @param burst           tokens available to a client that has been idle
+     * @param refillPerSecond tokens added per second, up to burst
+     */
+    public TokenBucket(int burst, double refillPerSecond, long nowNanos) {
+        this.nanosPerToken = Math.max(1L, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = nanosPerToken * burst;
+        this.fullAtNanos = nowNanos;
+    }
+
+    /** Takes one token if one is available at nowNanos. */
+    public boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long fullAt = (long) FULL_AT.getVolatile(this);
+            long next = Math.max(fullAt - nowNanos, 0L) + nanosPerToken;
+            if (next > burstNanos) {
+                return false;
+            }
+            if (FULL_AT.compareAndSet(this, fullAt, nowNanos + next)) {
+                return true;
+            }
+        }
+    }
+
+    /** True if the bucket has refilled completely, so dropping it loses nothing. */
+    public boolean isFull(long nowNanos) {
+        return (long) FULL_AT.getVolatile(this) - nowNanos <= 0;
+    }
+}
@@ -0,0 +1,283 @@
+package vito.reactive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vito.codec.BinaryChatCodec;
+import vito.codec.ChatMessageDecoder;
+import vito.codec.MalformedFrameException;
+import vito.codec.ReplyEncoder;
+import vito.codec.ResponseEncoder;
+import vito.codec.WireProtocol;
+import vito.config.RoomHandshakeInterceptor;
+import vito.dedup.DedupCache;
+import vito.model.BroadcastMessage;
+import vito.model.ChatMessage;
+import vito.model.ChatMessageBatch;
+import vito.model.MessageType;
+import vito.ratelimit.RateLimiter;
+import vito.ratelimit.TokenBucket;
+import vito.validator.MessageValidator;
+import vito.validator.ValidationResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The /chat/{roomId} protocol on the WebFlux event loop, with the same decoder,
+ * validator and encoders as the servlet handler. Each reply is produced while
+ * the inbound frame is handled and written through the same outbound stream, so
+ * a client that stops reading its acks stops being read (end-to-end
+ * backpressure). Room broadcasts are buffered per member and dropped for that
+ * member when its buffer is full. Batch frames get one batch ack with a
+ * result per message, as on the servlet engine.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveChatHandler implements WebSocketHandler {
+    private static final int BROADCAST_BUFFER_SIZE = 256;
+    private static final String RATE_LIMITED = "Rate limit exceeded";
+
+    private final MessageValidator messageValidator;
+    private final ObjectMapper objectMapper;
+    private final ChatMessageDecoder chatMessageDecoder;
+    private final ResponseEncoder responseEncoder;
+    private final BinaryChatCodec binaryChatCodec;
+    private final RateLimiter rateLimiter;
+    private final DedupCache dedupCache;
+    private final int maxBatchSize;
+    private final ConcurrentHashMap<Integer, Set<ReactiveMember>> rooms = new ConcurrentHashMap<>();
+
+    public ReactiveChatHandler(MessageValidator messageValidator, ObjectMapper objectMapper,
+                               ChatMessageDecoder chatMessageDecoder, ResponseEncoder responseEncoder,
+                               BinaryChatCodec binaryChatCodec, RateLimiter rateLimiter, DedupCache dedupCache,
+                               @Value("${chat.batch.max-size:256}") int maxBatchSize) {
+        this.messageValidator = messageValidator;
+        this.objectMapper = objectMapper;
+        this.chatMessageDecoder = chatMessageDecoder;
+        this.responseEncoder = responseEncoder;
+        this.binaryChatCodec = binaryChatCodec;
+        this.rateLimiter = rateLimiter;
+        this.dedupCache = dedupCache;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(WireProtocol.JSON, WireProtocol.BINARY);
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        int roomId = RoomHandshakeInterceptor.parseRoomId(session.getHandshakeInfo().getUri().getPath());
+        if (roomId <= 0) {
+            return session.close(CloseStatus.POLICY_VIOLATION.withReason("Invalid room id"));
+        }
+        ReactiveMember member = new ReactiveMember(session,
+                WireProtocol.BINARY.equals(session.getHandshakeInfo().getSubProtocol()), BROADCAST_BUFFER_SIZE);
+        Set<ReactiveMember> room = rooms.computeIfAbsent(roomId, id -> ConcurrentHashMap.newKeySet());
+        room.add(member);
+        // frames of one session arrive one at a time, so a single holder and batch are reused
+        ChatMessage holder = new ChatMessage();
+        ChatMessageBatch batch = new ChatMessageBatch();
+        TokenBucket rateLimit = rateLimiter.newSessionBucket();
+        // the frame's buffer is released after onNext, so decoding happens synchronously in map()
+        Flux<WebSocketMessage> replies = session.receive()
+                .map(frame -> handleFrame(member, roomId, room, holder, batch, rateLimit, frame))
+                .doFinally(signal -> member.complete());
+        return session.send(Flux.merge(replies, member.broadcasts()))
+                .doFinally(signal -> room.remove(member));
+    }
+
+    private WebSocketMessage handleFrame(ReactiveMember member, int roomId, Set<ReactiveMember> room,
+                                         ChatMessage chatMessage, ChatMessageBatch batch, TokenBucket rateLimit,
+                                         WebSocketMessage frame) {
+        DataBuffer payload = frame.getPayload();
+        ReplyEncoder replies;
+        boolean batched;
+        try {
+            if (frame.getType() == WebSocketMessage.Type.BINARY) {
+                replies = binaryChatCodec;
+                ByteBuffer bytes = ByteBuffer.allocate(payload.readableByteCount());
+                payload.toByteBuffer(bytes);
+                batched = BinaryChatCodec.isBatch(bytes);
+                if (batched) {
+                    binaryChatCodec.decodeBatch(bytes, batch, maxBatchSize);
+                } else {
+                    binaryChatCodec.decode(bytes, chatMessage);
+                }
+            } else {
+                replies = responseEncoder;
+                batched = isBatch(payload);
+                if (batched) {
+                    chatMessageDecoder.decodeBatch(payload.asInputStream(), batch, maxBatchSize);
+                } else {
+                    chatMessageDecoder.decode(payload.asInputStream(), chatMessage);
+                }
+            }
+        } catch (JsonProcessingException | MalformedFrameException e) {
+            return toReactive(member.session(), frame.getType() == WebSocketMessage.Type.BINARY
+                    ? binaryChatCodec.parseError() : responseEncoder.parseError());
+        } catch (IOException e) {
+            return toReactive(member.session(), responseEncoder.parseError());
+        }
+        if (batched) {
+            return toReactive(member.session(), handleBatch(member, roomId, room, batch, rateLimit, replies));
+        }
+        return toReactive(member.session(), handleChatMessage(member, roomId, room, chatMessage, rateLimit, replies));
+    }
+
+    private org.springframework.web.socket.WebSocketMessage<?> handleChatMessage(ReactiveMember member, int roomId,
+            Set<ReactiveMember> room, ChatMessage chatMessage, TokenBucket rateLimit, ReplyEncoder replies) {
+        String messageId = chatMessage.getMessageId();
+        if (!rateLimiter.tryAcquireSession(rateLimit)) {
+            return replies.rateLimited(RATE_LIMITED, messageId);
+        }
+        ValidationResult result = messageValidator.validate(chatMessage);
+        if (!result.isValid()) {
+            return replies.error(result.getMessage(), messageId);
+        }
+        DedupCache.Reply original = messageId == null ? null : dedupCache.get(chatMessage.getUserId(), messageId);
+        if (original != null) {
+            return ack(replies, original.getType(), original.getMessage(), messageId);
+        }
+        if (!rateLimiter.tryAcquireUser(chatMessage.getUserId())) {
+            return replies.rateLimited(RATE_LIMITED, messageId);
+        }
+        org.springframework.web.socket.WebSocketMessage<?> response =
+                ack(replies, chatMessage.getMessageType(), chatMessage.getMessage(), messageId);
+        apply(member, roomId, room, chatMessage);
+        return response;
+    }
+
+    // same checks per message as handleChatMessage, answered by one batch ack frame
+    private org.springframework.web.socket.WebSocketMessage<?> handleBatch(ReactiveMember member, int roomId,
+            Set<ReactiveMember> room, ChatMessageBatch batch, TokenBucket rateLimit, ReplyEncoder replies) {
+        ReplyEncoder.Batch acks = replies.batch(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ChatMessage chatMessage = batch.get(i);
+            String messageId = chatMessage.getMessageId();
+            if (!rateLimiter.tryAcquireSession(rateLimit)) {
+                acks.rateLimited(RATE_LIMITED, messageId);
+                continue;
+            }
+            ValidationResult result = messageValidator.validate(chatMessage);
+            if (!result.isValid()) {
+                acks.error(result.getMessage(), messageId);
+                continue;
+            }
+            DedupCache.Reply original = messageId == null ? null : dedupCache.get(chatMessage.getUserId(), messageId);
+            if (original != null) {
+                ack(acks, original.getType(), original.getMessage(), messageId);
+                continue;
+            }
+            if (!rateLimiter.tryAcquireUser(chatMessage.getUserId())) {
+                acks.rateLimited(RATE_LIMITED, messageId);
+                continue;
+            }
+            ack(acks, chatMessage.getMessageType(), chatMessage.getMessage(), messageId);
+            apply(member, roomId, room, chatMessage);
+        }
+        return acks.finish();
+    }
+
+    private void apply(ReactiveMember member, int roomId, Set<ReactiveMember> room, ChatMessage chatMessage) {
+        if (chatMessage.getMessageType() == MessageType.TEXT) {
+            broadcast(room, member, new BroadcastMessage(roomId, chatMessage));
+        }
+        String messageId = chatMessage.getMessageId();
+        if (messageId != null) {
+            dedupCache.put(chatMessage.getUserId(), messageId, chatMessage.getMessageType(), chatMessage.getMessage());
+        }
+    }
+
+    /** True if the text frame's first non-whitespace byte opens a JSON array. */
+    private static boolean isBatch(DataBuffer payload) {
+        int end = payload.readPosition() + payload.readableByteCount();
+        for (int i = payload.readPosition(); i < end; i++) {
+            byte b = payload.getByte(i);
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b == '[';
+            }
+        }
+        return false;
+    }
+
+    private static org.springframework.web.socket.WebSocketMessage<?> ack(ReplyEncoder replies, MessageType type,
+                                                                          String message, String messageId) {
+        switch (type) {
+            case JOIN:
+                return replies.joined(message, messageId);
+            case LEAVE:
+                return replies.left(message, messageId);
+            default:
+                return replies.ok(message, messageId);
+        }
+    }
+
+    // encoded at most once per wire format; every recipient wraps the same bytes without copying
+    private void broadcast(Set<ReactiveMember> room, ReactiveMember sender, BroadcastMessage message) {
+        byte[] json = null;
+        byte[] binary = null;
+        for (ReactiveMember member : room) {
+            if (member == sender) {
+                continue;
+            }
+            WebSocketSession session = member.session();
+            if (member.isBinary()) {
+                if (binary == null) {
+                    ByteBuffer encoded = binaryChatCodec.broadcast(message).getPayload();
+                    binary = new byte[encoded.remaining()];
+                    encoded.get(binary);
+                }
+                member.offer(new WebSocketMessage(WebSocketMessage.Type.BINARY,
+                        session.bufferFactory().wrap(binary)));
+            } else {
+                if (json == null) {
+                    try {
+                        json = objectMapper.writeValueAsBytes(message);
+                    } catch (JsonProcessingException e) {
+                        return;
+                    }
+                }
+                member.offer(new WebSocketMessage(WebSocketMessage.Type.TEXT, session.bufferFactory().wrap(json)));
+            }
+        }
+    }
+
+    private static void ack(ReplyEncoder.Batch acks, MessageType type, String message, String messageId) {
+        switch (type) {
+            case JOIN:
+                acks.joined(message, messageId);
+                break;
+            case LEAVE:
+                acks.left(message, messageId);
+                break;
+            default:
+                acks.ok(message, messageId);
+                break;
+        }
+    }
+
+    private static WebSocketMessage toReactive(WebSocketSession session,
+                                               org.springframework.web.socket.WebSocketMessage<?> reply) {
+        if (reply instanceof BinaryMessage binaryReply) {
+            return session.binaryMessage(factory -> factory.wrap(binaryReply.getPayload()));
+        }
+        return session.textMessage(((TextMessage) reply).getPayload());
+    }
+}
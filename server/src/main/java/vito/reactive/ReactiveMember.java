@@ -0,0 +1,53 @@
+package vito.reactive;
+
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+/**
+ * One connection in a reactive room. Broadcasts from other members go through a
+ * bounded buffer that the session's outbound stream drains at the speed of the
+ * socket; when the buffer is full the broadcast is dropped for this member only.
+ */
+class ReactiveMember {
+    private final WebSocketSession session;
+    private final boolean binary;
+    private final Sinks.Many<WebSocketMessage> broadcasts;
+
+    ReactiveMember(WebSocketSession session, boolean binary, int bufferSize) {
+        this.session = session;
+        this.binary = binary;
+        this.broadcasts = Sinks.many().unicast().onBackpressureBuffer(Queues.<WebSocketMessage>get(bufferSize).get());
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    Flux<WebSocketMessage> broadcasts() {
+        return broadcasts.asFlux();
+    }
+
+    /** Returns false if the message was dropped because this member's buffer is full or closed. */
+    boolean offer(WebSocketMessage message) {
+        for (;;) {
+            Sinks.EmitResult result = broadcasts.tryEmitNext(message);
+            // several rooms' senders may emit at once; the sink needs them one at a time
+            if (result == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+                continue;
+            }
+            return result.isSuccess();
+        }
+    }
+
+    void complete() {
+        broadcasts.tryEmitComplete();
+    }
+}
@@ -0,0 +1,21 @@
+package vito.reactive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+/** Maps /chat/{roomId} to the reactive handler when running on WebFlux (-Preactive). */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebSocketConfig {
+
+    @Bean
+    public HandlerMapping chatHandlerMapping(ReactiveChatHandler reactiveChatHandler) {
+        // ahead of annotated controllers such as /health
+        return new SimpleUrlHandlerMapping(Map.of("/chat/*", reactiveChatHandler), -1);
+    }
+}
@@ -0,0 +1,77 @@
+package vito.room;
+
+import org.springframework.web.socket.WebSocketSession;
+import vito.codec.BroadcastFrame;
+import vito.outbound.OutboundQueue;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Members of one chat room. Membership changes and broadcasts may run
+ * concurrently; a broadcast sees the members present while it iterates.
+ */
+public class Room {
+    private final int id;
+    private final Set<WebSocketSession> members = ConcurrentHashMap.newKeySet();
+    private final LongAdder messages = new LongAdder();
+    private final RoomHistory history;
+
+    public Room(int id, RoomHistory history) {
+        this.id = id;
+        this.history = history;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void join(WebSocketSession session) {
+        members.add(session);
+    }
+
+    public void leave(WebSocketSession session) {
+        members.remove(session);
+    }
+
+    public RoomHistory getHistory() {
+        return history;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /** Counts a valid message sent in this room. */
+    public void recordMessage() {
+        messages.increment();
+    }
+
+    public long messageCount() {
+        return messages.sum();
+    }
+
+    /**
+     * Queues the frame for every open member except the sender, encoding it once per
+     * wire format in use. A slow or failing member does not hold up the others.
+     */
+    public void broadcast(BroadcastFrame frame, WebSocketSession sender) {
+        for (WebSocketSession member : members) {
+            if (member == sender || !member.isOpen()) {
+                continue;
+            }
+            try {
+                // queued as droppable: a reader that falls behind loses broadcasts, never its own acks
+                if (member instanceof OutboundQueue outbound) {
+                    outbound.sendBroadcast(frame.encodedFor(member));
+                } else {
+                    member.sendMessage(frame.encodedFor(member));
+                }
+            } catch (IOException ignored) {
+                // the member's own close callback removes it from the room
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package vito.room;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The last messages of a room, kept off-heap in their encoded broadcast form
+ * (JSON and binary) so a joining session gets them without re-serializing.
+ * The ring is a direct buffer of fixed capacity, allocated on the first message.
+ * Each entry is {@code textLength:i32 | binaryLength:i32 | text | binary} and
+ * may wrap around the end.
+ *
+ * <p>One thread writes at a time: appenders queue their entry, and whichever
+ * appender wins the writing flag drains the queue. Readers take no lock. They
+ * copy entries out, then check whether the writer has since reserved the bytes
+ * or index slots they read (seqlock-style), and drop any entry that was
+ * overwritten during the copy.
+ */
+public final class RoomHistory {
+    private static final int HEADER_BYTES = 8;
+
+    private final int capacity;
+    private final long[] positions;
+    private final Queue<ByteBuffer[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private volatile ByteBuffer ring;
+    // end of the bytes the writer has claimed; bytes before reserved - capacity may be overwritten
+    private volatile long reserved;
+    // number of entries whose bytes and position are complete
+    private volatile long published;
+
+    /**
+     * @param capacity  off-heap bytes for this room
+     * @param maxEntries most entries kept and replayed
+     */
+    public RoomHistory(int capacity, int maxEntries) {
+        this.capacity = capacity;
+        this.positions = new long[maxEntries];
+    }
+
+    /** Bytes allocated off-heap; 0 until the first message. */
+    public int allocatedBytes() {
+        return ring == null ? 0 : capacity;
+    }
+
+    /** Entries currently retained, at most maxEntries. */
+    public int size() {
+        return (int) Math.min(published, positions.length);
+    }
+
+    /**
+     * Adds a message in both encodings. Entries larger than the ring are not kept.
+     * Never blocks: if another thread is writing, it writes this entry too.
+     */
+    public void append(ByteBuffer text, ByteBuffer binary) {
+        if (positions.length == 0 || HEADER_BYTES + text.remaining() + binary.remaining() > capacity) {
+            return;
+        }
+        pending.add(new ByteBuffer[] {text.duplicate(), binary.duplicate()});
+        // recheck after releasing the flag: an entry queued meanwhile may have seen writing == true
+        while (!pending.isEmpty() && writing.compareAndSet(false, true)) {
+            try {
+                ByteBuffer[] entry;
+                while ((entry = pending.poll()) != null) {
+                    write(entry[0], entry[1]);
+                }
+            } finally {
+                writing.set(false);
+            }
+        }
+    }
+
+    private void write(ByteBuffer text, ByteBuffer binary) {
+        ByteBuffer data = ring;
+        if (data == null) {
+            data = ByteBuffer.allocateDirect(capacity);
+            ring = data;
+        }
+        int textLength = text.remaining();
+        int binaryLength = binary.remaining();
+        long position = reserved;
+        reserved = position + HEADER_BYTES + textLength + binaryLength;
+        // readers must see the reservation before any of the bytes it covers change
+        VarHandle.storeStoreFence();
+        long at = position;
+        at = putInt(data, at, textLength);
+        at = putInt(data, at, binaryLength);
+        at = put(data, at, text);
+        put(data, at, binary);
+        long sequence = published;
+        positions[(int) (sequence % positions.length)] = position;
+        published = sequence + 1;
+    }
+
+    /**
+     * Copies the retained entries in one encoding, oldest first.
+     *
+     * @param binary true for the binary broadcast frames, false for JSON
+     */
+    public List<byte[]> recent(boolean binary) {
+        ByteBuffer data = ring;
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        long end = published;
+        long start = Math.max(0, end - positions.length);
+        List<byte[]> copies = new ArrayList<>((int) (end - start));
+        long[] copiedFrom = new long[(int) (end - start)];
+        for (long sequence = start; sequence < end; sequence++) {
+            long position = positions[(int) (sequence % positions.length)];
+            copiedFrom[(int) (sequence - start)] = position;
+            int textLength = getInt(data, position);
+            int binaryLength = getInt(data, position + 4);
+            if (textLength < 0 || binaryLength < 0 || HEADER_BYTES + (long) textLength + binaryLength > capacity) {
+                // torn read; the check below discards it
+                copies.add(null);
+                continue;
+            }
+            long from = position + HEADER_BYTES + (binary ? textLength : 0);
+            copies.add(get(data, from, binary ? binaryLength : textLength));
+        }
+        // the copies above must complete before the writer's progress is re-read
+        VarHandle.loadLoadFence();
+        long oldestIntactByte = reserved - capacity;
+        long oldestIntactSlot = published - positions.length;
+        List<byte[]> intact = new ArrayList<>(copies.size());
+        for (int i = 0; i < copies.size(); i++) {
+            byte[] copy = copies.get(i);
+            if (copy != null && start + i >= oldestIntactSlot && copiedFrom[i] >= oldestIntactByte) {
+                intact.add(copy);
+            }
+        }
+        return intact;
+    }
+
+    private long putInt(ByteBuffer data, long at, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            data.put(index(at++), (byte) (value >>> shift));
+        }
+        return at;
+    }
+
+    private long put(ByteBuffer data, long at, ByteBuffer source) {
+        int length = source.remaining();
+        int index = index(at);
+        int first = Math.min(length, capacity - index);
+        data.put(index, source, source.position(), first);
+        data.put(0, source, source.position() + first, length - first);
+        return at + length;
+    }
+
+    private int getInt(ByteBuffer data, long at) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (data.get(index(at + i)) & 0xFF);
+        }
+        return value;
+    }
+
+    private byte[] get(ByteBuffer data, long at, int length) {
+        byte[] copy = new byte[length];
+        int index = index(at);
+        int first = Math.min(length, capacity - index);
+        data.get(index, copy, 0, first);
+        data.get(0, copy, first, length - first);
+        return copy;
+    }
+
+    private int index(long at) {
+        return (int) (at % capacity);
+    }
+}
@@ -0,0 +1,61 @@
+package vito.room;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rooms keyed by the integer id from /chat/{roomId}. A room is created on first
+ * join and kept afterwards, so a session never joins a room that was concurrently
+ * discarded.
+ */
+@Component
+public class RoomRegistry {
+    private final ConcurrentHashMap<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final int historyBytes;
+    private final int historyMessages;
+
+    public RoomRegistry(@Value("${chat.history.bytes-per-room:65536}") int historyBytes,
+                        @Value("${chat.history.messages:50}") int historyMessages) {
+        this.historyBytes = historyBytes;
+        this.historyMessages = historyMessages;
+    }
+
+    public Room join(int roomId, WebSocketSession session) {
+        Room room = rooms.computeIfAbsent(roomId, id -> new Room(id, new RoomHistory(historyBytes, historyMessages)));
+        room.join(session);
+        return room;
+    }
+
+    public Room get(int roomId) {
+        return rooms.get(roomId);
+    }
+
+    public int roomCount() {
+        return rooms.size();
+    }
+
+    public Collection<Room> rooms() {
+        return rooms.values();
+    }
+
+    public Map<String, Object> historyStats() {
+        long allocated = 0;
+        long retained = 0;
+        for (Room room : rooms.values()) {
+            allocated += room.getHistory().allocatedBytes();
+            retained += room.getHistory().size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxMessagesPerRoom", historyMessages);
+        stats.put("bytesPerRoom", historyBytes);
+        stats.put("offHeapBytes", allocated);
+        stats.put("retainedMessages", retained);
+        return stats;
+    }
+}
@@ -0,0 +1,108 @@
+package vito.session;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Joined users by room and sessions by userId, kept in step with JOIN, LEAVE and
+ * connection close. Joins and leaves are O(1) updates of per-key entries in
+ * concurrent maps; readers iterate without locking and never block a writer.
+ * A user counts once per room however many of their sessions joined it.
+ */
+@Component
+public class PresenceRegistry {
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<String, Integer>> roomUsers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<SessionState>> userSessions;
+
+    public PresenceRegistry(@Value("${chat.presence.expected-users:100000}") int expectedUsers) {
+        // sized up front so 100k users do not trigger a chain of table resizes
+        this.userSessions = new ConcurrentHashMap<>(expectedUsers);
+    }
+
+    /**
+     * Marks the session present in its room as userId. A session that joined
+     * before under another userId leaves that identity first; one that has
+     * already closed is ignored.
+     */
+    public void join(SessionState state, String userId) {
+        synchronized (state) {
+            if (state.isClosed() || userId.equals(state.getUserId())) {
+                return;
+            }
+            remove(state);
+            state.setUserId(userId);
+            roomUsers.computeIfAbsent(state.getRoom().getId(), id -> new ConcurrentHashMap<>())
+                    .merge(userId, 1, Integer::sum);
+            userSessions.compute(userId, (id, sessions) -> {
+                Set<SessionState> joined = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+                joined.add(state);
+                return joined;
+            });
+        }
+    }
+
+    public void leave(SessionState state) {
+        synchronized (state) {
+            remove(state);
+        }
+    }
+
+    /** Leaves and keeps the session from joining again; called once the connection closed. */
+    public void close(SessionState state) {
+        synchronized (state) {
+            state.markClosed();
+            remove(state);
+        }
+    }
+
+    private void remove(SessionState state) {
+        String userId = state.getUserId();
+        if (userId == null) {
+            return;
+        }
+        state.setUserId(null);
+        ConcurrentHashMap<String, Integer> users = roomUsers.get(state.getRoom().getId());
+        if (users != null) {
+            users.computeIfPresent(userId, (id, count) -> count == 1 ? null : count - 1);
+        }
+        userSessions.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(state);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    /** The joined sessions of a user across all rooms. */
+    public Set<SessionState> sessionsOf(String userId) {
+        Set<SessionState> sessions = userSessions.get(userId);
+        return sessions == null ? Collections.emptySet() : Collections.unmodifiableSet(sessions);
+    }
+
+    public int userCount() {
+        return userSessions.size();
+    }
+
+    /** Lists at most limit users of the room; the counts cover the whole room. */
+    public PresenceSnapshot snapshot(int roomId, int limit) {
+        ConcurrentHashMap<String, Integer> users = roomUsers.get(roomId);
+        if (users == null) {
+            return new PresenceSnapshot(roomId, 0, 0, Collections.emptyList(), false);
+        }
+        List<String> listed = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        int userCount = 0;
+        int sessionCount = 0;
+        for (Map.Entry<String, Integer> entry : users.entrySet()) {
+            if (userCount++ < limit) {
+                listed.add(entry.getKey());
+            }
+            sessionCount += entry.getValue();
+        }
+        return new PresenceSnapshot(roomId, userCount, sessionCount, listed, userCount > listed.size());
+    }
+}
@@ -0,0 +1,41 @@
+package vito.session;
+
+import java.util.List;
+
+/** Who is in a room at the moment it was read; weakly consistent with concurrent joins and leaves. */
+public class PresenceSnapshot {
+    private final int roomId;
+    private final int userCount;
+    private final int sessionCount;
+    private final List<String> users;
+    private final boolean truncated;
+
+    public PresenceSnapshot(int roomId, int userCount, int sessionCount, List<String> users, boolean truncated) {
+        this.roomId = roomId;
+        this.userCount = userCount;
+        this.sessionCount = sessionCount;
+        this.users = users;
+        this.truncated = truncated;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    public List<String> getUsers() {
+        return users;
+    }
+
+    /** True if the room has more users than the listing limit. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
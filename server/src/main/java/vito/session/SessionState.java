@@ -0,0 +1,100 @@
+package vito.session;
+
+import org.springframework.web.socket.WebSocketSession;
+import vito.dispatch.SerialExecutor;
+import vito.model.ChatMessage;
+import vito.model.ChatMessageBatch;
+import vito.outbound.OutboundQueue;
+import vito.ratelimit.TokenBucket;
+import vito.room.Room;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Per-connection state of the chat handler, kept under a single session
+ * attribute instead of one boxed attribute per field. The dispatch executor
+ * handles a session's frames one at a time, so the handler-owned fields need
+ * no synchronization. The presence fields are changed under this object's
+ * monitor by {@link PresenceRegistry} and may be read from any thread.
+ */
+public final class SessionState {
+    public static final String ATTRIBUTE = "chatSession";
+
+    private final OutboundQueue outbound;
+    private final Room room;
+    private final SerialExecutor dispatch;
+    private final TokenBucket rateLimit;
+    // frames of one session are handled one at a time, so single holders are reused
+    private final ChatMessage inbound = new ChatMessage();
+    private final ChatMessageBatch batch = new ChatMessageBatch();
+    private CompletableFuture<?> pendingReply;
+    private volatile String userId;
+    private volatile boolean closed;
+
+    public SessionState(OutboundQueue outbound, Room room, SerialExecutor dispatch, TokenBucket rateLimit) {
+        this.outbound = outbound;
+        this.room = room;
+        this.dispatch = dispatch;
+        this.rateLimit = rateLimit;
+    }
+
+    public static SessionState of(WebSocketSession session) {
+        return (SessionState) session.getAttributes().get(ATTRIBUTE);
+    }
+
+    /** The session wrapped in its outbound queue; every write goes through here. */
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public SerialExecutor getDispatch() {
+        return dispatch;
+    }
+
+    /** The session's token bucket; null when rate limiting is disabled. */
+    public TokenBucket getRateLimit() {
+        return rateLimit;
+    }
+
+    public ChatMessage getInbound() {
+        return inbound;
+    }
+
+    public ChatMessageBatch getBatch() {
+        return batch;
+    }
+
+    /** The last reply still waiting for the message log, or null. */
+    public CompletableFuture<?> getPendingReply() {
+        return pendingReply;
+    }
+
+    public void setPendingReply(CompletableFuture<?> pendingReply) {
+        this.pendingReply = pendingReply;
+    }
+
+    /** The userId of the last JOIN, or null if the session has not joined or has left. */
+    public String getUserId() {
+        return userId;
+    }
+
+    public boolean isJoined() {
+        return userId != null;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    void markClosed() {
+        this.closed = true;
+    }
+}
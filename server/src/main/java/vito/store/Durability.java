@@ -0,0 +1,11 @@
+package vito.store;
+
+/** When a message's ack may go out, relative to the message log. */
+public enum Durability {
+    /** Right away; the record is written by the committer later. */
+    NONE,
+    /** Once the record is written to the log file; fsync runs on an interval. */
+    BATCHED,
+    /** Once the record's group commit has been fsynced. */
+    FSYNC
+}
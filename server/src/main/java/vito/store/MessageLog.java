@@ -0,0 +1,319 @@
+package vito.store;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Durable per-room message log with group commit. Handler threads hand records
+ * to a single committer thread. The committer collects every append that
+ * arrives within the group commit window, writes each touched room's records
+ * with one call, and fsyncs each touched room once per group (FSYNC) or at most
+ * once per fsync interval (BATCHED). Then it completes the appends'
+ * futures, so acks wait for exactly the configured {@link Durability}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class MessageLog {
+    private static final Logger log = LoggerFactory.getLogger(MessageLog.class);
+    private static final String ROOM_DIRECTORY_PREFIX = "room-";
+    private static final int MAX_GROUP = 4096;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Durability durability;
+    private final long windowNanos;
+    private final long fsyncIntervalNanos;
+    private final long segmentBytes;
+    private final BlockingQueue<Append> appends;
+    private final Map<Integer, RoomLog> rooms = new HashMap<>();
+    private final Thread committer;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean running = true;
+    private long lastSyncNanos = System.nanoTime();
+
+    public MessageLog(@Value("${chat.log.enabled:false}") boolean enabled,
+                      @Value("${chat.log.dir:data/log}") String directory,
+                      @Value("${chat.log.durability:batched}") String durability,
+                      @Value("${chat.log.group-commit-window-ms:1}") long windowMs,
+                      @Value("${chat.log.fsync-interval-ms:100}") long fsyncIntervalMs,
+                      @Value("${chat.log.segment-bytes:67108864}") long segmentBytes,
+                      @Value("${chat.log.queue-capacity:65536}") int queueCapacity) throws IOException {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.durability = Durability.valueOf(durability.trim().toUpperCase());
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.segmentBytes = segmentBytes;
+        this.appends = new ArrayBlockingQueue<>(queueCapacity);
+        if (enabled) {
+            recoverRooms();
+            this.committer = new Thread(this::commitLoop, "chat-log-committer");
+            committer.setDaemon(true);
+            committer.start();
+        } else {
+            this.committer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Queues a record for the room's log. Blocks while the committer is
+     * queueCapacity records behind, which pushes back on the handler.
+     *
+     * @return completes once the record meets the configured durability; null
+     *         when the ack need not wait (logging disabled or durability NONE)
+     */
+    public CompletableFuture<Void> append(int roomId, ByteBuffer record) {
+        if (!enabled) {
+            return null;
+        }
+        CompletableFuture<Void> done = durability == Durability.NONE ? null : new CompletableFuture<>();
+        try {
+            appends.put(new Append(roomId, record.duplicate(), done));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.incrementAndGet();
+            if (done != null) {
+                done.completeExceptionally(e);
+            }
+        }
+        return done;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("durability", durability);
+        long recordCount = records.get();
+        long groupCount = groups.get();
+        stats.put("records", recordCount);
+        stats.put("groupCommits", groupCount);
+        stats.put("recordsPerGroup", groupCount == 0 ? 0.0 : (double) recordCount / groupCount);
+        stats.put("fsyncs", fsyncs.get());
+        stats.put("failures", failures.get());
+        stats.put("queued", appends.size());
+        return stats;
+    }
+
+    private void commitLoop() {
+        List<Append> group = new ArrayList<>();
+        List<RoomLog> touched = new ArrayList<>();
+        while (running || !appends.isEmpty()) {
+            try {
+                Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    syncIfDue();
+                    continue;
+                }
+                group.add(first);
+                collect(group);
+                commit(group, touched);
+            } catch (InterruptedException e) {
+                running = false;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    // waits up to the window after the first append, so concurrent writers share one write and fsync
+    private void collect(List<Append> group) throws InterruptedException {
+        long deadline = System.nanoTime() + windowNanos;
+        while (group.size() < MAX_GROUP) {
+            appends.drainTo(group, MAX_GROUP - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || group.size() >= MAX_GROUP) {
+                return;
+            }
+            Append next = appends.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    /**
+     * Appends, writes and (FSYNC) syncs the group room by room. Each append
+     * completes on its own outcome: a room whose write fails fails only its
+     * records that did not reach the file, and records that did are acked, so a
+     * client never retries a message the log already holds.
+     */
+    private void commit(List<Append> group, List<RoomLog> touched) {
+        touched.clear();
+        for (Append append : group) {
+            try {
+                RoomLog roomLog = roomLog(append.roomId);
+                append.sequence = roomLog.append(append.record);
+                append.roomLog = roomLog;
+                append.epoch = roomLog.epoch();
+                if (!roomLog.inGroup) {
+                    roomLog.inGroup = true;
+                    touched.add(roomLog);
+                }
+            } catch (IOException e) {
+                append.failure = e;
+                failed(e);
+            }
+        }
+        for (RoomLog roomLog : touched) {
+            roomLog.inGroup = false;
+            try {
+                roomLog.write();
+                if (durability == Durability.FSYNC && roomLog.sync()) {
+                    fsyncs.incrementAndGet();
+                }
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+        if (durability == Durability.FSYNC) {
+            lastSyncNanos = System.nanoTime();
+        } else {
+            syncIfDue();
+        }
+        records.addAndGet(group.size());
+        groups.incrementAndGet();
+        for (Append append : group) {
+            if (append.done == null) {
+                continue;
+            }
+            if (isCommitted(append)) {
+                append.done.complete(null);
+            } else {
+                append.done.completeExceptionally(append.failure != null ? append.failure
+                        : new IOException("Record not written to the log of room " + append.roomId));
+            }
+        }
+    }
+
+    private boolean isCommitted(Append append) {
+        RoomLog roomLog = append.roomLog;
+        if (roomLog == null || roomLog.epoch() != append.epoch) {
+            return false;
+        }
+        long committed = durability == Durability.FSYNC ? roomLog.syncedSequence() : roomLog.writtenSequence();
+        return append.sequence < committed;
+    }
+
+    private void failed(IOException e) {
+        failures.incrementAndGet();
+        log.error("Message log commit failed", e);
+    }
+
+    // BATCHED and NONE: everything written is forced at most once per interval
+    private void syncIfDue() {
+        if (durability == Durability.FSYNC || System.nanoTime() - lastSyncNanos < fsyncIntervalNanos) {
+            return;
+        }
+        try {
+            sync(rooms.values());
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            log.error("Message log fsync failed", e);
+        }
+    }
+
+    private void sync(Iterable<RoomLog> logs) throws IOException {
+        for (RoomLog roomLog : logs) {
+            if (roomLog.sync()) {
+                fsyncs.incrementAndGet();
+            }
+        }
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private RoomLog roomLog(int roomId) throws IOException {
+        RoomLog roomLog = rooms.get(roomId);
+        if (roomLog == null) {
+            roomLog = RoomLog.open(directory.resolve(ROOM_DIRECTORY_PREFIX + roomId), segmentBytes);
+            rooms.put(roomId, roomLog);
+        }
+        return roomLog;
+    }
+
+    // opens every existing room log up front so torn tails are truncated before new appends
+    private void recoverRooms() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> roomIds = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(ROOM_DIRECTORY_PREFIX))
+                    .forEach(name -> {
+                        try {
+                            roomIds.add(Integer.parseInt(name.substring(ROOM_DIRECTORY_PREFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                            // not a room directory
+                        }
+                    });
+        }
+        for (int roomId : roomIds) {
+            RoomLog roomLog = roomLog(roomId);
+            log.info("Recovered message log of room {} ({} records)", roomId, roomLog.nextSequence());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (committer == null) {
+            return;
+        }
+        running = false;
+        committer.join(TimeUnit.SECONDS.toMillis(10));
+        for (RoomLog roomLog : rooms.values()) {
+            try {
+                roomLog.close();
+            } catch (IOException e) {
+                log.warn("Closing a room log failed", e);
+            }
+        }
+    }
+
+    private static final class Append {
+        private final int roomId;
+        private final ByteBuffer record;
+        private final CompletableFuture<Void> done;
+        // set by the committer
+        private RoomLog roomLog;
+        private long sequence;
+        private long epoch;
+        private IOException failure;
+
+        private Append(int roomId, ByteBuffer record, CompletableFuture<Void> done) {
+            this.roomId = roomId;
+            this.record = record;
+            this.done = done;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package vito.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of one room, split into segment files named after the
+ * sequence number of their first record. Each record is
+ * {@code length:i32 | crc32c:i32 | payload}. Appends are gathered in a buffer
+ * and written with one call per group commit. A record is identified by its
+ * sequence number and the log's epoch, which changes whenever buffered records
+ * are dropped after a failed write, so a reused sequence number is never taken
+ * for a record that was written. Only the {@link MessageLog} committer thread
+ * touches a RoomLog, so nothing here is synchronized.
+ */
+final class RoomLog {
+    static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private FileChannel segment;
+    private long segmentSize;
+    private long nextSequence;
+    // records below these sequence numbers are in the file, and forced to disk
+    private long writtenSequence;
+    private long syncedSequence;
+    private long epoch;
+    private boolean dirty;
+    // set by the committer while this log is part of the group being committed
+    boolean inGroup;
+
+    private RoomLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the room's log, creating the directory if needed. The last segment is
+     * scanned and truncated at the first torn or corrupt record, so a crash in the
+     * middle of a write leaves no partial record behind.
+     */
+    static RoomLog open(Path directory, long segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        RoomLog log = new RoomLog(directory, segmentBytes);
+        List<Long> bases = segmentBases(directory);
+        if (bases.isEmpty()) {
+            log.openSegment(0);
+        } else {
+            long base = bases.get(bases.size() - 1);
+            log.segment = FileChannel.open(segmentPath(directory, base), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            log.recover(base);
+        }
+        return log;
+    }
+
+    long nextSequence() {
+        return nextSequence;
+    }
+
+    long writtenSequence() {
+        return writtenSequence;
+    }
+
+    long syncedSequence() {
+        return syncedSequence;
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Buffers one record; it reaches the file on the next {@link #write()}.
+     *
+     * @return the record's sequence number
+     */
+    long append(ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        if (segmentSize > 0 && segmentSize + pending.position() + HEADER_BYTES + length > segmentBytes) {
+            roll();
+        }
+        ensurePending(HEADER_BYTES + length);
+        crc.reset();
+        crc.update(payload.duplicate());
+        pending.putInt(length);
+        pending.putInt((int) crc.getValue());
+        pending.put(payload.duplicate());
+        return nextSequence++;
+    }
+
+    /**
+     * Writes the buffered records. If the write fails part-way, the records that
+     * reached the file whole are kept and the rest are dropped, so the file never
+     * ends in a torn record and a record reported as failed is never written
+     * later. The buffer is empty afterwards either way.
+     */
+    void write() throws IOException {
+        int length = pending.position();
+        if (length == 0) {
+            return;
+        }
+        ByteBuffer out = pending.duplicate();
+        out.flip();
+        int written = 0;
+        try {
+            while (out.hasRemaining()) {
+                written += segment.write(out, segmentSize + written);
+            }
+        } finally {
+            keepWritten(written);
+        }
+    }
+
+    /** Forces written records to disk; returns false if nothing was written since the last sync. */
+    boolean sync() throws IOException {
+        if (!dirty) {
+            return false;
+        }
+        long sequence = writtenSequence;
+        segment.force(false);
+        dirty = false;
+        syncedSequence = sequence;
+        return true;
+    }
+
+    void close() throws IOException {
+        write();
+        sync();
+        segment.close();
+    }
+
+    private void roll() throws IOException {
+        write();
+        sync();
+        segment.close();
+        openSegment(nextSequence);
+    }
+
+    private void openSegment(long base) throws IOException {
+        segment = FileChannel.open(segmentPath(directory, base), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentSize = 0;
+        nextSequence = base;
+        writtenSequence = base;
+        syncedSequence = base;
+        // a leftover file of the same name would be a segment that never got a valid record
+        segment.truncate(0);
+    }
+
+    private void recover(long base) throws IOException {
+        long size = segment.size();
+        long valid = 0;
+        long records = 0;
+        if (size > 0) {
+            MappedByteBuffer data = segment.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            while (data.remaining() >= HEADER_BYTES) {
+                int start = data.position();
+                int length = data.getInt();
+                int checksum = data.getInt();
+                if (length < 0 || length > data.remaining()) {
+                    break;
+                }
+                ByteBuffer payload = data.slice(data.position(), length);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                data.position(start + HEADER_BYTES + length);
+                valid = data.position();
+                records++;
+            }
+        }
+        if (valid < size) {
+            segment.truncate(valid);
+            segment.force(true);
+        }
+        segmentSize = valid;
+        nextSequence = base + records;
+        writtenSequence = nextSequence;
+        syncedSequence = nextSequence;
+    }
+
+    // the first written bytes of the buffer are in the file; keeps the whole records among them
+    private void keepWritten(int written) {
+        int length = pending.position();
+        int whole = written;
+        long records = nextSequence - writtenSequence;
+        if (written < length) {
+            whole = 0;
+            records = 0;
+            while (whole + HEADER_BYTES <= written && whole + HEADER_BYTES + pending.getInt(whole) <= written) {
+                whole += HEADER_BYTES + pending.getInt(whole);
+                records++;
+            }
+        }
+        pending.clear();
+        if (whole > 0) {
+            segmentSize += whole;
+            writtenSequence += records;
+            dirty = true;
+        }
+        if (written < length) {
+            nextSequence = writtenSequence;
+            epoch++;
+            if (whole < written) {
+                try {
+                    segment.truncate(segmentSize);
+                } catch (IOException ignored) {
+                    // the next write starts at segmentSize anyway, and recovery cuts a torn tail
+                }
+            }
+        }
+    }
+
+    private void ensurePending(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    private static List<Long> segmentBases(Path directory) throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                            // not a segment
+                        }
+                    });
+        }
+        bases.sort(null);
+        return bases;
+    }
+
+    static Path segmentPath(Path directory, long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,75 @@
+package vito.validator;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import vito.model.ChatMessage;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs Bean Validation over the constraints declared on {@link ChatMessage}, the
+ * contract {@link MessageValidator} implements by hand. Not a bean: it is the
+ * reference the hand-written checks are tested and benchmarked against. Bean
+ * Validation returns an unordered set, so violations are put in field
+ * declaration order, then annotation order within a field.
+ */
+public class BeanMessageValidator {
+    private static final Comparator<ConstraintViolation<ChatMessage>> DECLARATION_ORDER =
+            Comparator.<ConstraintViolation<ChatMessage>>comparingInt(v -> fieldOf(v).ordinal())
+                    .thenComparingInt(BeanMessageValidator::annotationIndex);
+
+    private final Validator validator;
+
+    public BeanMessageValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    public ValidationResult validate(ChatMessage message) {
+        Set<ConstraintViolation<ChatMessage>> violations = validator.validate(message);
+        if (violations.isEmpty()) {
+            return ValidationResult.success();
+        }
+        List<ConstraintViolation<ChatMessage>> ordered = new ArrayList<>(violations);
+        ordered.sort(DECLARATION_ORDER);
+        StringBuilder errors = new StringBuilder();
+        int violated = 0;
+        for (ConstraintViolation<ChatMessage> violation : ordered) {
+            if (errors.length() > 0) {
+                errors.append("; ");
+            }
+            errors.append(String.format("Field '%s': %s", violation.getPropertyPath(), violation.getMessage()));
+            violated |= fieldOf(violation).bit();
+        }
+        return ValidationResult.failure(errors.toString(), violated);
+    }
+
+    private static ValidationField fieldOf(ConstraintViolation<ChatMessage> violation) {
+        String name = violation.getPropertyPath().toString();
+        for (ValidationField field : ValidationField.VALUES) {
+            if (field.getFieldName().equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalStateException("No ValidationField for '" + name + "'");
+    }
+
+    private static int annotationIndex(ConstraintViolation<ChatMessage> violation) {
+        Class<? extends Annotation> type = violation.getConstraintDescriptor().getAnnotation().annotationType();
+        try {
+            Annotation[] declared = ChatMessage.class
+                    .getDeclaredField(violation.getPropertyPath().toString()).getDeclaredAnnotations();
+            for (int i = 0; i < declared.length; i++) {
+                if (declared[i].annotationType() == type) {
+                    return i;
+                }
+            }
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+        return Integer.MAX_VALUE;
+    }
+}
@@ -1,33 +1,126 @@
 package vito.validator;
 
-import jakarta.validation.ConstraintViolation;
-import jakarta.validation.Validator;
 import vito.model.ChatMessage;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
-import java.util.stream.Collectors;
-
+/**
+ * Checks a {@link ChatMessage} against the constraints declared on its fields
+ * with plain char loops instead of Bean Validation. Error strings are the
+ * ones Bean Validation produces: "Field '&lt;name&gt;': &lt;message&gt;", joined
+ * by "; ". Bean Validation reports violations as an unordered set; here they
+ * come in field declaration order, then annotation order, the same order
+ * {@link BeanMessageValidator} sorts them into. MessageValidatorTest holds the
+ * two to identical results. A valid message allocates nothing.
+ */
 @Component
 public class MessageValidator {
+    private static final int USER_ID_MAX_DIGITS = 6;
+    private static final String USER_ID_MAX = "100000";
+    private static final int USERNAME_MIN = 3;
+    private static final int USERNAME_MAX = 20;
+    private static final int MESSAGE_MIN = 1;
+    private static final int MESSAGE_MAX = 500;
+    private static final int MESSAGE_ID_MAX = 64;
 
-    private final Validator validator;
+    public ValidationResult validate(ChatMessage message) {
+        String userId = message.getUserId();
+        String username = message.getUserName();
+        String text = message.getMessage();
+        if (userId != null && isValidUserId(userId)
+                && username != null && isValidUsernameLength(username) && isAlphanumeric(username)
+                && text != null && text.length() >= MESSAGE_MIN && text.length() <= MESSAGE_MAX
+                && message.getTimestamp() != null
+                && message.getMessageType() != null
+                && (message.getMessageId() == null || message.getMessageId().length() <= MESSAGE_ID_MAX)) {
+            return ValidationResult.success();
+        }
+        return describeViolations(message);
+    }
 
-    public MessageValidator(Validator validator) {
-        this.validator = validator;
+    private static ValidationResult describeViolations(ChatMessage message) {
+        StringBuilder errors = new StringBuilder(64);
+        int violated = 0;
+        String userId = message.getUserId();
+        if (userId == null) {
+            violated |= appendViolation(errors, ValidationField.USER_ID, "userId cannot be null");
+        } else if (!isValidUserId(userId)) {
+            violated |= appendViolation(errors, ValidationField.USER_ID, "userId must be between 1 and 100000");
+        }
+        String username = message.getUserName();
+        if (username == null) {
+            violated |= appendViolation(errors, ValidationField.USERNAME, "username cannot be null");
+        } else {
+            if (!isValidUsernameLength(username)) {
+                violated |= appendViolation(errors, ValidationField.USERNAME,
+                        "username must be between 3 and 20 characters");
+            }
+            if (!isAlphanumeric(username)) {
+                violated |= appendViolation(errors, ValidationField.USERNAME, "username must be alphanumeric");
+            }
+        }
+        String text = message.getMessage();
+        if (text == null) {
+            violated |= appendViolation(errors, ValidationField.MESSAGE, "message cannot be null");
+        } else if (text.length() < MESSAGE_MIN || text.length() > MESSAGE_MAX) {
+            violated |= appendViolation(errors, ValidationField.MESSAGE,
+                    "message must be between 1 and 500 characters");
+        }
+        if (message.getTimestamp() == null) {
+            violated |= appendViolation(errors, ValidationField.TIMESTAMP, "timestamp cannot be null");
+        }
+        if (message.getMessageType() == null) {
+            violated |= appendViolation(errors, ValidationField.MESSAGE_TYPE, "messageType cannot be null");
+        }
+        if (message.getMessageId() != null && message.getMessageId().length() > MESSAGE_ID_MAX) {
+            violated |= appendViolation(errors, ValidationField.MESSAGE_ID,
+                    "messageId must be at most 64 characters");
+        }
+        return ValidationResult.failure(errors.toString(), violated);
     }
 
-    public ValidationResult validate(ChatMessage message) {
-        Set<ConstraintViolation<ChatMessage>> violations = validator.validate(message);
+    private static int appendViolation(StringBuilder errors, ValidationField field, String message) {
+        if (errors.length() > 0) {
+            errors.append("; ");
+        }
+        errors.append("Field '").append(field.getFieldName()).append("': ").append(message);
+        return field.bit();
+    }
 
-        if (violations.isEmpty()) {
-            return ValidationResult.success();
+    // same language as ^[1-9]\d{0,4}$|^100000$
+    static boolean isValidUserId(String userId) {
+        int length = userId.length();
+        if (length == 0 || length > USER_ID_MAX_DIGITS) {
+            return false;
+        }
+        char first = userId.charAt(0);
+        if (first < '1' || first > '9') {
+            return false;
         }
+        for (int i = 1; i < length; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return length < USER_ID_MAX_DIGITS || USER_ID_MAX.equals(userId);
+    }
 
-        String errorMessage = violations.stream()
-                .map(v -> String.format("Field '%s': %s", v.getPropertyPath().toString(), v.getMessage()))
-                .collect(Collectors.joining("; "));
+    static boolean isValidUsernameLength(String username) {
+        return username.length() >= USERNAME_MIN && username.length() <= USERNAME_MAX;
+    }
 
-        return ValidationResult.failure(errorMessage);
+    // same language as ^[a-zA-Z0-9]+$
+    static boolean isAlphanumeric(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                return false;
+            }
+        }
+        return true;
     }
 }
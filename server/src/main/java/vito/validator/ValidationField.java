@@ -0,0 +1,27 @@
+package vito.validator;
+
+/** The validated fields of a chat message, in declaration order. */
+public enum ValidationField {
+    USER_ID("userId"),
+    USERNAME("username"),
+    MESSAGE("message"),
+    TIMESTAMP("timestamp"),
+    MESSAGE_TYPE("messageType"),
+    MESSAGE_ID("messageId");
+
+    public static final ValidationField[] VALUES = values();
+
+    private final String fieldName;
+
+    ValidationField(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -1,12 +1,18 @@
 package vito.validator;
 
+import java.util.Objects;
+
 public class ValidationResult {
+    private static final ValidationResult SUCCESS = new ValidationResult(true, null, 0);
+
     private final boolean valid;
     private final String message;
+    private final int violatedFields;
 
-    private ValidationResult(boolean valid, String message) {
+    private ValidationResult(boolean valid, String message, int violatedFields) {
         this.valid = valid;
         this.message = message;
+        this.violatedFields = violatedFields;
     }
 
     public boolean isValid() {
@@ -17,11 +23,43 @@ public class ValidationResult {
         return message;
     }
 
+    public boolean violates(ValidationField field) {
+        return (violatedFields & field.bit()) != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ValidationResult)) {
+            return false;
+        }
+        ValidationResult other = (ValidationResult) o;
+        return valid == other.valid && violatedFields == other.violatedFields
+                && Objects.equals(message, other.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(valid, message, violatedFields);
+    }
+
+    @Override
+    public String toString() {
+        return valid ? "ValidationResult[valid]"
+                : "ValidationResult[" + message + ", fields=" + Integer.toBinaryString(violatedFields) + "]";
+    }
+
     public static ValidationResult success() {
-        return new ValidationResult(true, null);
+        return SUCCESS;
     }
 
     public static ValidationResult failure(String message) {
-        return new ValidationResult(false, message);
+        return new ValidationResult(false, message, 0);
+    }
+
+    static ValidationResult failure(String message, int violatedFields) {
+        return new ValidationResult(false, message, violatedFields);
     }
 }
@@ -0,0 +1,103 @@
+package vito.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import vito.codec.BinaryChatCodec;
+import vito.codec.BroadcastFrame;
+import vito.model.BroadcastMessage;
+import vito.model.ChatMessage;
+import vito.model.MessageType;
+import vito.room.Room;
+import vito.room.RoomRegistry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClusterRelayTest {
+    private static final int ROOM_ID = 7;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final BinaryChatCodec binaryChatCodec = new BinaryChatCodec();
+    private final InProcessBus.Network network = new InProcessBus.Network();
+    private final Node nodeA = new Node();
+    private final Node nodeB = new Node();
+
+    @AfterEach
+    void shutdown() {
+        nodeA.relay.shutdown();
+        nodeB.relay.shutdown();
+    }
+
+    @Test
+    void broadcastReachesMembersOnTheOtherNode() throws Exception {
+        nodeA.join();
+        nodeB.join();
+
+        nodeA.relay.publish(frame("hello from A"));
+
+        assertEquals(1, nodeB.received.size());
+        assertTrue(nodeB.received.get(0).contains("hello from A"), nodeB.received.get(0));
+        assertEquals(1L, nodeB.relay.stats().get("delivered"));
+    }
+
+    @Test
+    void originatingNodeDoesNotGetItsOwnMessageBack() throws Exception {
+        nodeA.join();
+        nodeB.join();
+
+        nodeA.relay.publish(frame("hello from A"));
+
+        assertEquals(List.of(), nodeA.received);
+        assertEquals(0L, nodeA.relay.stats().get("delivered"));
+    }
+
+    @Test
+    void unsubscribeStopsDelivery() throws Exception {
+        nodeA.join();
+        Room roomB = nodeB.join();
+        nodeA.relay.publish(frame("first"));
+
+        // the last local member leaves, so node B unsubscribes from the room
+        roomB.leave(nodeB.member);
+        nodeB.relay.memberLeft(roomB);
+        nodeA.relay.publish(frame("second"));
+
+        assertEquals(1, nodeB.received.size());
+        assertEquals(1L, nodeB.relay.stats().get("delivered"));
+    }
+
+    private BroadcastFrame frame(String text) {
+        ChatMessage message = new ChatMessage("1", "user1", text, Instant.now(), MessageType.TEXT);
+        return new BroadcastFrame(new BroadcastMessage(ROOM_ID, message), objectMapper, binaryChatCodec);
+    }
+
+    /** One chat node: its own room registry and relay on the shared in-process network, and one JSON member. */
+    private final class Node {
+        final RoomRegistry roomRegistry = new RoomRegistry(65536, 50);
+        final ClusterRelay relay = new ClusterRelay(ClusterBusType.IN_PROCESS, new InProcessBus(network),
+                roomRegistry, objectMapper, binaryChatCodec);
+        final WebSocketSession member = mock(WebSocketSession.class);
+        final List<String> received = new ArrayList<>();
+
+        Room join() throws Exception {
+            when(member.isOpen()).thenReturn(true);
+            doAnswer(invocation -> received.add(((TextMessage) invocation.getArgument(0)).getPayload()))
+                    .when(member).sendMessage(any());
+            Room room = roomRegistry.join(ROOM_ID, member);
+            relay.memberJoined(room);
+            return room;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package vito.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Runs a TcpBus on an ephemeral port against a peer written with plain sockets,
+ * so every record is checked byte for byte: {@code kind:u8 | roomId:i32 | length:i32 | payload}.
+ */
+class TcpBusTest {
+    private static final int HELLO = 0;
+    private static final int SUBSCRIBE = 1;
+    private static final int MESSAGE = 3;
+    private static final int ROOM_ID = 7;
+    private static final String PEER_ID = "test-peer";
+
+    private final BlockingQueue<Delivery> delivered = new ArrayBlockingQueue<>(16);
+    private ServerSocket peerServer;
+    private Socket inbound;
+    private Socket outbound;
+    private TcpBus bus;
+
+    @AfterEach
+    void shutdown() throws IOException {
+        if (bus != null) {
+            bus.close();
+        }
+        for (Closeable closeable : new Closeable[] {inbound, outbound, peerServer}) {
+            if (closeable != null) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Test
+    void exchangesHelloSubscriptionsAndMessages() throws Exception {
+        peerServer = new ServerSocket(0);
+        bus = new TcpBus(0, List.of(new InetSocketAddress("localhost", peerServer.getLocalPort())), 16, 8, 50);
+        bus.subscribe(ROOM_ID);
+        bus.start((roomId, frame) -> {
+            byte[] payload = new byte[frame.remaining()];
+            frame.get(payload);
+            delivered.add(new Delivery(roomId, payload));
+        });
+
+        // the bus dials the peer: HELLO with its node id, answered by ours, then its whole room set
+        inbound = peerServer.accept();
+        inbound.setSoTimeout(5000);
+        DataInputStream fromBus = new DataInputStream(inbound.getInputStream());
+        DataOutputStream toBusReply = new DataOutputStream(inbound.getOutputStream());
+        Record hello = read(fromBus);
+        assertEquals(HELLO, hello.kind);
+        assertEquals(0, hello.roomId);
+        String busId = new String(hello.payload, StandardCharsets.UTF_8);
+        assertEquals(bus.stats().get("nodeId"), busId);
+        write(toBusReply, HELLO, 0, PEER_ID.getBytes(StandardCharsets.UTF_8));
+        toBusReply.flush();
+        Record subscribe = read(fromBus);
+        assertEquals(SUBSCRIBE, subscribe.kind);
+        assertEquals(ROOM_ID, subscribe.roomId);
+        assertEquals(0, subscribe.payload.length);
+
+        // the peer dials the bus: HELLO both ways, then the peer's subscription and a broadcast
+        outbound = new Socket("localhost", bus.getLocalPort());
+        outbound.setSoTimeout(5000);
+        DataOutputStream toBus = new DataOutputStream(outbound.getOutputStream());
+        DataInputStream replies = new DataInputStream(outbound.getInputStream());
+        write(toBus, HELLO, 0, PEER_ID.getBytes(StandardCharsets.UTF_8));
+        toBus.flush();
+        Record helloBack = read(replies);
+        assertEquals(HELLO, helloBack.kind);
+        assertEquals(busId, new String(helloBack.payload, StandardCharsets.UTF_8));
+        write(toBus, SUBSCRIBE, ROOM_ID, new byte[0]);
+        write(toBus, MESSAGE, ROOM_ID, new byte[] {1, 2, 3});
+        toBus.flush();
+
+        Delivery delivery = delivered.poll(5, TimeUnit.SECONDS);
+        assertNotNull(delivery);
+        assertEquals(ROOM_ID, delivery.roomId);
+        assertArrayEquals(new byte[] {1, 2, 3}, delivery.payload);
+
+        // the subscription was read before the broadcast above, so this reaches the peer
+        bus.publish(ROOM_ID, ByteBuffer.wrap(new byte[] {9, 8}));
+        Record message = read(fromBus);
+        assertEquals(MESSAGE, message.kind);
+        assertEquals(ROOM_ID, message.roomId);
+        assertArrayEquals(new byte[] {9, 8}, message.payload);
+    }
+
+    private static void write(DataOutputStream out, int kind, int roomId, byte[] payload) throws IOException {
+        out.writeByte(kind);
+        out.writeInt(roomId);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    private static Record read(DataInputStream in) throws IOException {
+        int kind = in.readUnsignedByte();
+        int roomId = in.readInt();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new Record(kind, roomId, payload);
+    }
+
+    private record Record(int kind, int roomId, byte[] payload) {
+    }
+
+    private record Delivery(int roomId, byte[] payload) {
+    }
+}
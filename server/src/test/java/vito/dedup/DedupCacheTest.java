@@ -0,0 +1,43 @@
+package vito.dedup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import vito.model.MessageType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DedupCacheTest {
+    private final DedupCache cache = new DedupCache(true, 32, 60_000, 1000);
+
+    @AfterEach
+    void shutdown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void retryWithAttemptNumberGetsTheOriginalAck() {
+        cache.put("7", "run-1", MessageType.TEXT, "hello");
+        DedupCache.Reply reply = cache.get("7", "run-1#2");
+        assertNotNull(reply);
+        assertEquals("hello", reply.getMessage());
+        assertNull(cache.get("8", "run-1#2"));
+    }
+
+    @Test
+    void retryProcessedFirstIsRememberedForTheOtherAttempts() {
+        cache.put("7", "run-1#1", MessageType.TEXT, "hello");
+        assertNotNull(cache.get("7", "run-1"));
+        assertNotNull(cache.get("7", "run-1#3"));
+    }
+
+    @Test
+    void keyStripsOnlyANumericAttempt() {
+        assertEquals("run-1", DedupCache.key("run-1#12"));
+        assertEquals("run-1#", DedupCache.key("run-1#"));
+        assertEquals("run#x", DedupCache.key("run#x"));
+        assertEquals("a#b", DedupCache.key("a#b#3"));
+        assertEquals("plain", DedupCache.key("plain"));
+    }
+}
@@ -0,0 +1,141 @@
+package vito.outbound;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboundQueueTest {
+    private final Queue<Runnable> writers = new ArrayDeque<>();
+    private final List<String> sent = new ArrayList<>();
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private OutboundPipeline pipeline;
+
+    @AfterEach
+    void shutdown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void dropOldestDropsBroadcastsAndKeepsReplies() throws Exception {
+        OutboundQueue queue = queue(2, 10_000, "drop-oldest");
+        queue.sendBroadcast(frame("b1"));
+        queue.sendMessage(frame("r1"));
+        // full: b1 goes to make room
+        queue.sendMessage(frame("r2"));
+        // full of replies: the new broadcast is the one dropped
+        queue.sendBroadcast(frame("b2"));
+        queue.sendMessage(frame("r3"));
+
+        drain();
+        assertEquals(List.of("r1", "r2", "r3"), sent);
+        assertEquals(0, queue.depth());
+    }
+
+    @Test
+    void dropNewestDropsOnlyBroadcasts() throws Exception {
+        OutboundQueue queue = queue(1, 10_000, "drop-newest");
+        queue.sendMessage(frame("r1"));
+        queue.sendBroadcast(frame("b1"));
+        queue.sendMessage(frame("r2"));
+
+        drain();
+        assertEquals(List.of("r1", "r2"), sent);
+    }
+
+    @Test
+    void stuckSendDropsEveryQueuedBroadcast() throws Exception {
+        OutboundQueue queue = queue(100, 0, "drop-oldest");
+        queue.sendMessage(frame("r0"));
+        queue.sendBroadcast(frame("b1"));
+        queue.sendMessage(frame("r1"));
+        queue.sendBroadcast(frame("b2"));
+        // while r0 is being written past the (zero) time limit, another broadcast arrives
+        doAnswer(invocation -> {
+            String payload = ((TextMessage) invocation.getArgument(0)).getPayload();
+            sent.add(payload);
+            if (payload.equals("r0")) {
+                long start = System.nanoTime();
+                while (System.nanoTime() == start) {
+                    Thread.onSpinWait();
+                }
+                queue.sendBroadcast(frame("b3"));
+            }
+            return null;
+        }).when(session).sendMessage(any());
+
+        drain();
+        assertEquals(List.of("r0", "r1", "b3"), sent);
+        assertEquals(2, ((Number) pipeline.stats().get("droppedOldest")).intValue());
+    }
+
+    @Test
+    void replyLimitClosesUnderDropPolicies() throws Exception {
+        OutboundQueue queue = queue(1, 3, 10_000, "drop-oldest");
+        queue.sendMessage(frame("r1"));
+        queue.sendMessage(frame("r2"));
+        queue.sendMessage(frame("r3"));
+        queue.sendMessage(frame("r4"));
+        queue.sendMessage(frame("r5"));
+
+        verify(session, never()).close(any());
+        drain();
+        verify(session).close(new CloseStatus(1008, "Slow consumer"));
+        assertEquals(List.of(), sent);
+        assertEquals(0, queue.depth());
+        assertEquals(1L, pipeline.stats().get("closedSlowConsumers"));
+    }
+
+    @Test
+    void closePolicyClosesOnTheWriterPool() throws Exception {
+        OutboundQueue queue = queue(1, 10_000, "close");
+        queue.sendBroadcast(frame("b1"));
+        queue.sendBroadcast(frame("b2"));
+        queue.sendBroadcast(frame("b3"));
+
+        // the producer only queued the close
+        verify(session, never()).close(any());
+        drain();
+        verify(session).close(new CloseStatus(1008, "Slow consumer"));
+        assertEquals(1L, pipeline.stats().get("closedSlowConsumers"));
+    }
+
+    private OutboundQueue queue(int queueLimit, long sendTimeLimitMs, String policy) throws Exception {
+        return queue(queueLimit, 4096, sendTimeLimitMs, policy);
+    }
+
+    private OutboundQueue queue(int queueLimit, int replyLimit, long sendTimeLimitMs, String policy)
+            throws Exception {
+        pipeline = new OutboundPipeline(queueLimit, replyLimit, sendTimeLimitMs, policy, 1008, 64, 1);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> sent.add(((TextMessage) invocation.getArgument(0)).getPayload()))
+                .when(session).sendMessage(any());
+        return new OutboundQueue(session, pipeline, writers::add);
+    }
+
+    private void drain() {
+        Runnable writer;
+        while ((writer = writers.poll()) != null) {
+            writer.run();
+        }
+    }
+
+    private static WebSocketMessage<?> frame(String payload) {
+        return new TextMessage(payload);
+    }
+}
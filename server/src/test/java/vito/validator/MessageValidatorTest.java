@@ -0,0 +1,131 @@
+package vito.validator;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import vito.model.ChatMessage;
+import vito.model.MessageType;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageValidatorTest {
+    private static final String[] USER_IDS = {
+            null, "", "0", "1", "01", "9", "10", "99999", "100000", "100001", "999999", "1000000",
+            "12a", "-1", "+1", " 1", "1 ", "1\n", "\uFF11", "\u0661"
+    };
+    private static final String[] USERNAMES = {
+            null, "", "a", "ab", "abc", "Abc123", repeat('z', 20), repeat('z', 21),
+            "ab_c", "ab c", "ab-", "caf\u00e9", "\uFF41bc", "abc\n", "!"
+    };
+    private static final String[] MESSAGES = {null, "", "x", repeat('m', 500), repeat('m', 501), "\uD83D\uDE00"};
+    private static final Instant[] TIMESTAMPS = {null, Instant.EPOCH};
+    private static final MessageType[] TYPES = {null, MessageType.TEXT};
+    private static final String[] MESSAGE_IDS = {null, "", repeat('i', 64), repeat('i', 65)};
+
+    private static ValidatorFactory factory;
+    private static BeanMessageValidator reference;
+    private final MessageValidator validator = new MessageValidator();
+
+    @BeforeAll
+    static void startBeanValidation() {
+        factory = Validation.buildDefaultValidatorFactory();
+        reference = new BeanMessageValidator(factory.getValidator());
+    }
+
+    @AfterAll
+    static void stopBeanValidation() {
+        factory.close();
+    }
+
+    static Stream<Arguments> boundaryMessages() {
+        List<Arguments> cases = new ArrayList<>();
+        for (String userId : USER_IDS) {
+            cases.add(Arguments.of(message(userId, "alice", "hello", Instant.EPOCH, MessageType.TEXT, null)));
+        }
+        for (String username : USERNAMES) {
+            cases.add(Arguments.of(message("42", username, "hello", Instant.EPOCH, MessageType.JOIN, null)));
+        }
+        for (String text : MESSAGES) {
+            cases.add(Arguments.of(message("42", "alice", text, Instant.EPOCH, MessageType.LEAVE, null)));
+        }
+        for (String messageId : MESSAGE_IDS) {
+            cases.add(Arguments.of(message("42", "alice", "hello", Instant.EPOCH, MessageType.TEXT, messageId)));
+        }
+        cases.add(Arguments.of(message("42", "alice", "hello", null, MessageType.TEXT, null)));
+        cases.add(Arguments.of(message("42", "alice", "hello", Instant.EPOCH, null, null)));
+        cases.add(Arguments.of(message(null, null, null, null, null, null)));
+        cases.add(Arguments.of(message("0", "a!", "", null, null, repeat('i', 65))));
+        return cases.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("boundaryMessages")
+    void matchesBeanValidation(ChatMessage message) {
+        assertEquals(reference.validate(message), validator.validate(message));
+    }
+
+    @Test
+    void matchesBeanValidationForEveryCombination() {
+        for (String userId : USER_IDS) {
+            for (String username : USERNAMES) {
+                for (String text : MESSAGES) {
+                    for (Instant timestamp : TIMESTAMPS) {
+                        for (MessageType type : TYPES) {
+                            for (String messageId : MESSAGE_IDS) {
+                                ChatMessage message = message(userId, username, text, timestamp, type, messageId);
+                                assertEquals(reference.validate(message), validator.validate(message),
+                                        () -> describe(message));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesBeanValidationForEveryUserIdUpToSevenDigits() {
+        ChatMessage message = message(null, "alice", "hello", Instant.EPOCH, MessageType.TEXT, null);
+        for (int id = 0; id <= 1_000_000; id++) {
+            message.setUserId(Integer.toString(id));
+            assertEquals(reference.validate(message), validator.validate(message), message::getUserId);
+        }
+    }
+
+    @Test
+    void validMessageSharesTheSuccessResult() {
+        ChatMessage message = message("100000", "alice", "hello", Instant.EPOCH, MessageType.TEXT, "m-1");
+        ValidationResult result = validator.validate(message);
+        assertTrue(result.isValid());
+        assertSame(ValidationResult.success(), result);
+    }
+
+    private static ChatMessage message(String userId, String username, String text, Instant timestamp,
+                                       MessageType type, String messageId) {
+        ChatMessage message = new ChatMessage(userId, username, text, timestamp, type);
+        message.setMessageId(messageId);
+        return message;
+    }
+
+    private static String describe(ChatMessage message) {
+        return Arrays.asList(message.getUserId(), message.getUserName(), message.getMessage(),
+                message.getTimestamp(), message.getMessageType(), message.getMessageId()).toString();
+    }
+
+    private static String repeat(char c, int count) {
+        return String.valueOf(c).repeat(count);
+    }
+}